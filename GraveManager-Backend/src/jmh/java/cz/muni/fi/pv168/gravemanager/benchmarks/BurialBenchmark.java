@@ -0,0 +1,129 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManager;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GuardedCemeteryManager;
+import cz.muni.fi.pv168.gravemanager.backend.StripedLockCemeteryManager;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares burial engines under contention: 32 threads repeatedly bury
+ * their bodies into few popular graves with small capacity and exhume them
+ * again. There are more bodies than places in these graves, so the graves
+ * are usually full or nearly full and many burials are rejected. The score
+ * is the number of attempted burials and exhumations per second, the
+ * secondary results count them by outcome. Derby needs long time to warm up,
+ * so this benchmark uses more warmup iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 3)
+@Measurement(iterations = 20, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(32)
+public class BurialBenchmark {
+
+    private static final int POPULAR_GRAVES = 4;
+    private static final int GRAVE_CAPACITY = 3;
+    private static final int BODIES_PER_THREAD = 2;
+
+    @State(Scope.Benchmark)
+    public static class Engine {
+
+        /**
+         * checkThenAct is {@link cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl},
+         * guarded is {@link GuardedCemeteryManager}, striped is
+         * {@link StripedLockCemeteryManager} on top of CemeteryManagerImpl.
+         */
+        @Param({"checkThenAct", "guarded", "striped"})
+        public String engine;
+
+        CemeteryManager manager;
+        Grave[] popularGraves = new Grave[POPULAR_GRAVES];
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryDataset dataset) {
+            switch (engine) {
+                case "checkThenAct":
+                    manager = dataset.cemeteryManager;
+                    break;
+                case "guarded":
+                    manager = new GuardedCemeteryManager(dataset.getDataSource());
+                    break;
+                case "striped":
+                    manager = new StripedLockCemeteryManager(dataset.cemeteryManager);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown engine " + engine);
+            }
+            for (int i = 0; i < POPULAR_GRAVES; i++) {
+                popularGraves[i] = dataset.createGrave(GRAVE_CAPACITY);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Bodies {
+
+        List<Body> bodies;
+        // grave of each body or null when the body is not buried
+        Grave[] graves = new Grave[BODIES_PER_THREAD];
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryDataset dataset) {
+            bodies = dataset.createBodies(BODIES_PER_THREAD);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+
+        public long burials;
+        public long rejectedBurials;
+        public long exhumations;
+    }
+
+    @Benchmark
+    public void buryOrExhume(Engine engine, Bodies bodies, Outcomes outcomes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(BODIES_PER_THREAD);
+        Body body = bodies.bodies.get(i);
+        Grave grave = bodies.graves[i];
+        if (grave != null) {
+            engine.manager.removeBodyFromGrave(body, grave);
+            bodies.graves[i] = null;
+            outcomes.exhumations++;
+            return;
+        }
+        grave = engine.popularGraves[random.nextInt(POPULAR_GRAVES)];
+        try {
+            engine.manager.putBodyIntoGrave(body, grave);
+        } catch (IllegalEntityException ex) {
+            // the grave is full
+            outcomes.rejectedBurials++;
+            return;
+        }
+        bodies.graves[i] = grave;
+        outcomes.burials++;
+    }
+}
@@ -0,0 +1,224 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.PooledDataSource;
+import cz.muni.fi.pv168.common.ProfilingDataSource;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DataSourceFactory;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManagerImpl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * In-memory Derby database shared by all benchmark threads. The database is
+ * filled with given number of bodies and half as many graves before each
+ * trial. Graves are placed in rows of 1000 graves and have capacity from 1
+ * to 4. The first 80 % of graves contain one body each, so the remaining
+ * graves are empty and some of the occupied graves are full. Bodies have
+ * Czech first names and surnames followed by number. The data are generated
+ * from fixed seed, so each run works with the same dataset.
+ */
+@State(Scope.Benchmark)
+public class CemeteryDataset {
+
+    private static final long SEED = 42;
+    private static final int GRAVES_IN_ROW = 1000;
+    private static final LocalDate FIRST_BIRTH = LocalDate.of(1900, 1, 1);
+    private static final AtomicInteger databaseCounter = new AtomicInteger();
+
+    static final String[] FIRST_NAMES = {
+        "Jan", "Jiří", "Petr", "Josef", "Pavel", "Martin", "Tomáš", "Jaroslav", "Miroslav", "František",
+        "Marie", "Jana", "Eva", "Hana", "Anna", "Lenka", "Kateřina", "Lucie", "Věra", "Alena"
+    };
+    static final String[] SURNAMES = {
+        "Novák", "Svoboda", "Novotný", "Dvořák", "Černý", "Procházka", "Kučera", "Veselý", "Horák", "Němec",
+        "Pokorný", "Marek", "Pospíšil", "Hájek", "Jelínek", "Král", "Růžička", "Beneš", "Fiala", "Sedláček",
+        "Doležal", "Zeman", "Kolář", "Navrátil", "Čermák", "Vaněk", "Urban", "Blažek", "Kříž", "Kovář"
+    };
+
+    /**
+     * Number of bodies in the database.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int bodies;
+
+    /**
+     * DataSource used by the managers, direct Derby DataSource or
+     * {@link PooledDataSource} created by {@link DataSourceFactory}. Value
+     * profiled (not run by default, use -p dataSource=profiled) wraps the pool
+     * into {@link ProfilingDataSource} and prints statistics of the statements
+     * executed by the benchmark at the end of the trial.
+     */
+    @Param({"direct", "pooled"})
+    public String dataSource;
+
+    private String databaseName;
+    private DataSource ds;
+
+    GraveManagerImpl graveManager;
+    BodyManagerImpl bodyManager;
+    CemeteryManagerImpl cemeteryManager;
+    long[] graveIds;
+    long[] bodyIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        databaseName = "memory:gravemgr-bench-" + databaseCounter.incrementAndGet();
+        switch (dataSource) {
+            case "direct":
+                EmbeddedDataSource embeddedDs = new EmbeddedDataSource();
+                embeddedDs.setDatabaseName(databaseName);
+                embeddedDs.setCreateDatabase("create");
+                ds = embeddedDs;
+                break;
+            case "pooled":
+                ds = DataSourceFactory.createDerbyDataSource(databaseName);
+                break;
+            case "profiled":
+                ds = new ProfilingDataSource(DataSourceFactory.createDerbyDataSource(databaseName));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown dataSource " + dataSource);
+        }
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemDefaultZone());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+        fill();
+        if (ds instanceof ProfilingDataSource) {
+            ((ProfilingDataSource) ds).reset();
+        }
+    }
+
+    private void fill() throws SQLException {
+        Random random = new Random(SEED);
+
+        List<Grave> graves = new ArrayList<>();
+        for (int i = 0; i < bodies / 2; i++) {
+            graves.add(newGrave(i / GRAVES_IN_ROW, i % GRAVES_IN_ROW, 1 + random.nextInt(4)));
+        }
+        graveManager.createGraves(graves);
+        graveIds = graves.stream().mapToLong(Grave::getId).toArray();
+
+        List<Body> bodyList = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                    + SURNAMES[random.nextInt(SURNAMES.length)] + " " + i;
+            bodyList.add(newBody(name, random));
+        }
+        bodyManager.createBodies(bodyList);
+        bodyIds = bodyList.stream().mapToLong(Body::getId).toArray();
+
+        // Burying through CemeteryManager would take too long for large
+        // datasets; ids are contiguous, so i-th body goes to i-th grave
+        int buried = graveIds.length * 4 / 5;
+        if (buried == 0) {
+            return;
+        }
+        try (Connection conn = ds.getConnection();
+             PreparedStatement bodySt = conn.prepareStatement(
+                     "UPDATE Body SET graveId = id - ? WHERE id BETWEEN ? AND ?");
+             PreparedStatement graveSt = conn.prepareStatement(
+                     "UPDATE Grave SET occupied = 1 WHERE id BETWEEN ? AND ?")) {
+            bodySt.setLong(1, bodyIds[0] - graveIds[0]);
+            bodySt.setLong(2, bodyIds[0]);
+            bodySt.setLong(3, bodyIds[buried - 1]);
+            bodySt.executeUpdate();
+            graveSt.setLong(1, graveIds[0]);
+            graveSt.setLong(2, graveIds[buried - 1]);
+            graveSt.executeUpdate();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (ds instanceof ProfilingDataSource) {
+            System.out.println();
+            ((ProfilingDataSource) ds).getStatementStats().stream().limit(10).forEach(System.out::println);
+        }
+        if (ds.isWrapperFor(PooledDataSource.class)) {
+            ds.unwrap(PooledDataSource.class).close();
+        }
+        try {
+            DriverManager.getConnection("jdbc:derby:" + databaseName + ";drop=true").close();
+        } catch (SQLException ex) {
+            // Derby reports successfully dropped database by exception
+        }
+    }
+
+    DataSource getDataSource() {
+        return ds;
+    }
+
+    /**
+     * Returns id of random grave from the dataset.
+     */
+    long randomGraveId(Random random) {
+        return graveIds[random.nextInt(graveIds.length)];
+    }
+
+    /**
+     * Creates given number of new unburied bodies.
+     */
+    List<Body> createBodies(int count) {
+        Random random = new Random(SEED);
+        List<Body> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(newBody("Extra body " + i, random));
+        }
+        bodyManager.createBodies(result);
+        return result;
+    }
+
+    /**
+     * Creates new grave with given capacity outside of the regular rows.
+     */
+    Grave createGrave(int capacity) {
+        Grave grave = newGrave(Integer.MAX_VALUE, 0, capacity);
+        graveManager.createGraves(Collections.singletonList(grave));
+        return grave;
+    }
+
+    static Grave newGrave(int row, int column, int capacity) {
+        Grave grave = new Grave();
+        grave.setRow(row);
+        grave.setColumn(column);
+        grave.setCapacity(capacity);
+        grave.setNote("Grave " + row + "/" + column);
+        return grave;
+    }
+
+    private static Body newBody(String name, Random random) {
+        Body body = new Body();
+        body.setName(name);
+        body.setGender(random.nextBoolean() ? Gender.MALE : Gender.FEMALE);
+        body.setBorn(FIRST_BIRTH.plusDays(random.nextInt(80 * 365)));
+        body.setDied(body.getBorn().plusDays(random.nextInt(40 * 365)));
+        body.setVampire(random.nextInt(100) == 0);
+        return body;
+    }
+}
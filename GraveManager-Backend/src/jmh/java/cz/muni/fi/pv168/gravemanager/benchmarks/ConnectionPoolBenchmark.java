@@ -0,0 +1,65 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares direct and pooled DataSource (-p dataSource=direct,pooled) under
+ * high contention, when 16 or 32 threads borrow connections at once. The
+ * borrow variants only obtain and close the connection, the getGrave
+ * variants also execute the shortest query used by the managers, so the
+ * connection handling is the major part of their time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConnectionPoolBenchmark {
+
+    @Benchmark
+    @Threads(16)
+    public boolean borrowConnection16(CemeteryDataset dataset) throws SQLException {
+        return borrowConnection(dataset);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean borrowConnection32(CemeteryDataset dataset) throws SQLException {
+        return borrowConnection(dataset);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Grave getGrave16(CemeteryDataset dataset) {
+        return getGrave(dataset);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Grave getGrave32(CemeteryDataset dataset) {
+        return getGrave(dataset);
+    }
+
+    private static boolean borrowConnection(CemeteryDataset dataset) throws SQLException {
+        try (Connection conn = dataset.getDataSource().getConnection()) {
+            return conn.getAutoCommit();
+        }
+    }
+
+    private static Grave getGrave(CemeteryDataset dataset) {
+        return dataset.graveManager.getGrave(dataset.randomGraveId(ThreadLocalRandom.current()));
+    }
+}
@@ -0,0 +1,174 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of modifying operations.
+ *
+ * Putting and removing of bodies changes the state of the database, so these
+ * benchmarks run in single shot mode: each iteration handles {@link #BATCH}
+ * bodies prepared by untimed iteration setup and the score is the time of the
+ * whole batch. Each thread uses its own bodies, the contended variant puts
+ * them into one grave shared by 8 threads.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ModificationBenchmark {
+
+    static final int BATCH = 500;
+
+    /**
+     * Bodies of single thread together with the grave for them.
+     */
+    static class Burials {
+
+        private final CemeteryDataset dataset;
+        private final Grave grave;
+        private final List<Body> bodies;
+        private int buried;
+
+        Burials(CemeteryDataset dataset, Grave grave) {
+            this.dataset = dataset;
+            this.grave = grave;
+            this.bodies = dataset.createBodies(BATCH);
+        }
+
+        void putNext() {
+            dataset.cemeteryManager.putBodyIntoGrave(bodies.get(buried), grave);
+            buried++;
+        }
+
+        void removeNext() {
+            buried--;
+            dataset.cemeteryManager.removeBodyFromGrave(bodies.get(buried), grave);
+        }
+
+        void unburyAll() {
+            while (buried > 0) {
+                removeNext();
+            }
+        }
+
+        void buryAll() {
+            if (buried < bodies.size()) {
+                dataset.cemeteryManager.putBodiesIntoGrave(
+                        new ArrayList<>(bodies.subList(buried, bodies.size())), grave);
+                buried = bodies.size();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class UnburiedBodies {
+
+        Burials burials;
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryDataset dataset) {
+            burials = new Burials(dataset, dataset.createGrave(BATCH));
+        }
+
+        @Setup(Level.Iteration)
+        public void unburyAll() {
+            burials.unburyAll();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BuriedBodies {
+
+        Burials burials;
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryDataset dataset) {
+            burials = new Burials(dataset, dataset.createGrave(BATCH));
+        }
+
+        @Setup(Level.Iteration)
+        public void buryAll() {
+            burials.buryAll();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedGrave {
+
+        Grave grave;
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryDataset dataset) {
+            grave = dataset.createGrave(Integer.MAX_VALUE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BodiesForSharedGrave {
+
+        Burials burials;
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryDataset dataset, SharedGrave sharedGrave) {
+            burials = new Burials(dataset, sharedGrave.grave);
+        }
+
+        @Setup(Level.Iteration)
+        public void unburyAll() {
+            burials.unburyAll();
+        }
+    }
+
+    /**
+     * Creates new grave in each call, so the table grows during the benchmark.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Grave createGrave(CemeteryDataset dataset) {
+        Grave grave = CemeteryDataset.newGrave(Integer.MAX_VALUE - 1, 0, 1);
+        dataset.graveManager.createGrave(grave);
+        return grave;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public void putBodyIntoGrave(UnburiedBodies bodies) {
+        bodies.burials.putNext();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public void removeBodyFromGrave(BuriedBodies bodies) {
+        bodies.burials.removeNext();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    @Threads(8)
+    public void putBodyIntoSharedGrave(BodiesForSharedGrave bodies) {
+        bodies.burials.putNext();
+    }
+}
@@ -0,0 +1,77 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.BodyNameIndex;
+import cz.muni.fi.pv168.gravemanager.backend.NameIndexedBodyManager;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares searching bodies by name with SQL LIKE over the normalized name
+ * column and with in-memory {@link BodyNameIndex}.
+ * Each invocation searches for random surname prefix without diacritics
+ * (e.g. "dvor") and returns at most 20 bodies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NameSearchBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @State(Scope.Benchmark)
+    public static class Search {
+
+        /**
+         * sql is {@link cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl},
+         * index is {@link NameIndexedBodyManager} on top of it.
+         */
+        @Param({"sql", "index"})
+        public String search;
+
+        BodyManager manager;
+        String[] prefixes;
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryDataset dataset) {
+            switch (search) {
+                case "sql":
+                    manager = dataset.bodyManager;
+                    break;
+                case "index":
+                    manager = new NameIndexedBodyManager(dataset.bodyManager);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown search " + search);
+            }
+            prefixes = new String[CemeteryDataset.SURNAMES.length];
+            for (int i = 0; i < prefixes.length; i++) {
+                String surname = BodyNameIndex.normalize(CemeteryDataset.SURNAMES[i]);
+                prefixes[i] = surname.substring(0, Math.min(4, surname.length()));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Body> findBodiesByName(Search search) {
+        String prefix = search.prefixes[ThreadLocalRandom.current().nextInt(search.prefixes.length)];
+        return search.manager.findBodiesByName(prefix, LIMIT);
+    }
+}
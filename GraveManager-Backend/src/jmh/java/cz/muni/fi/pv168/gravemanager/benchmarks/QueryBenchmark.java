@@ -0,0 +1,174 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyQuery;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryStatisticsImpl;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.OccupancyReport;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of read only operations. The contended variants run the same
+ * operation from 8 threads at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class QueryBenchmark {
+
+    @Benchmark
+    public Grave getGrave(CemeteryDataset dataset) {
+        return dataset.graveManager.getGrave(dataset.randomGraveId(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Grave getGraveContended(CemeteryDataset dataset) {
+        return dataset.graveManager.getGrave(dataset.randomGraveId(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Body> findAllBodies(CemeteryDataset dataset) {
+        return dataset.bodyManager.findAllBodies();
+    }
+
+    /**
+     * Reads the same data as {@link #findAllBodies(CemeteryDataset)}, compare
+     * both with -prof gc to see the allocation difference.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void streamAllBodies(CemeteryDataset dataset, Blackhole blackhole) {
+        try (Stream<Body> bodies = dataset.bodyManager.streamAllBodies()) {
+            bodies.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * Finds unburied vampires who died in the 1950s, which are well below 1 %
+     * of all bodies, with the query evaluated by the database.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Body> findBodiesByQuery(CemeteryDataset dataset) {
+        return dataset.bodyManager.findBodies(new BodyQuery()
+                .vampire(true)
+                .diedBetween(LocalDate.of(1950, 1, 1), LocalDate.of(1959, 12, 31))
+                .buried(false));
+    }
+
+    /**
+     * The same search as {@link #findBodiesByQuery(CemeteryDataset)} done by
+     * filtering all bodies in Java. Buried state is not part of Body, so
+     * this variant checks only vampire flag and date of death.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Body> findBodiesByFilteringAll(CemeteryDataset dataset) {
+        LocalDate from = LocalDate.of(1950, 1, 1);
+        LocalDate to = LocalDate.of(1959, 12, 31);
+        return dataset.bodyManager.findAllBodies().stream()
+                .filter(body -> body.isVampire() && body.getDied() != null
+                        && !body.getDied().isBefore(from) && !body.getDied().isAfter(to))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Grave> findGravesWithSomeFreeSpace(CemeteryDataset dataset) {
+        return dataset.cemeteryManager.findGravesWithSomeFreeSpace();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(8)
+    public List<Grave> findGravesWithSomeFreeSpaceContended(CemeteryDataset dataset) {
+        return dataset.cemeteryManager.findGravesWithSomeFreeSpace();
+    }
+
+    /**
+     * Reads the plot map of the whole cemetery by single query.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<Grave, List<Body>> findAllGravesWithBodies(CemeteryDataset dataset) {
+        return dataset.cemeteryManager.findAllGravesWithBodies();
+    }
+
+    /**
+     * Reads the same plot map as {@link #findAllGravesWithBodies(CemeteryDataset)}
+     * with one query per grave.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<Grave, List<Body>> findBodiesInEachGrave(CemeteryDataset dataset) {
+        Map<Grave, List<Body>> result = new LinkedHashMap<>();
+        for (Grave grave : dataset.graveManager.findAllGraves()) {
+            result.put(grave, dataset.cemeteryManager.findBodiesInGrave(grave));
+        }
+        return result;
+    }
+
+    /**
+     * Reads 100 random graves with their bodies by single query.
+     */
+    @Benchmark
+    public Map<Grave, List<Body>> findGravesWithBodies(CemeteryDataset dataset) {
+        return dataset.cemeteryManager.findGravesWithBodies(randomGraveIds(dataset, 100));
+    }
+
+    /**
+     * The same as {@link #findGravesWithBodies(CemeteryDataset)} with two
+     * queries per grave.
+     */
+    @Benchmark
+    public Map<Grave, List<Body>> findBodiesInEachOfGraves(CemeteryDataset dataset) {
+        Map<Grave, List<Body>> result = new LinkedHashMap<>();
+        for (long id : randomGraveIds(dataset, 100)) {
+            Grave grave = dataset.graveManager.getGrave(id);
+            result.put(grave, dataset.cemeteryManager.findBodiesInGrave(grave));
+        }
+        return result;
+    }
+
+    private static List<Long> randomGraveIds(CemeteryDataset dataset, int count) {
+        Random random = ThreadLocalRandom.current();
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(dataset.randomGraveId(random));
+        }
+        return ids;
+    }
+
+    /**
+     * Computes occupancy of all rows, columns and 10x10 blocks, as the
+     * dashboard does on each refresh.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public OccupancyReport getOccupancyReport(CemeteryDataset dataset) {
+        return new CemeteryStatisticsImpl(dataset.getDataSource()).getOccupancyReport(10);
+    }
+}
@@ -0,0 +1,177 @@
+package cz.muni.fi.pv168.common;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Factory of executors for running blocking service calls asynchronously.
+ */
+public final class AsyncExecutors {
+
+    private AsyncExecutors() {
+    }
+
+    /**
+     * Creates executor, which runs at most maxConcurrency tasks at once. Other
+     * tasks wait until some running task finishes. The number of concurrent
+     * tasks should not be higher than the number of available database
+     * connections.
+     *
+     * On JDK 21 and newer, each task runs in its own virtual thread. On older
+     * JDKs, the tasks run in the pool of maxConcurrency daemon threads.
+     *
+     * @param maxConcurrency maximal number of tasks running at once
+     * @return new executor, which should be shut down when it is not needed
+     */
+    public static ExecutorService newBoundedExecutor(int maxConcurrency) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency is not positive number");
+        ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+        if (virtualThreadExecutor != null) {
+            return new ConcurrencyLimitingExecutor(virtualThreadExecutor, maxConcurrency);
+        }
+        return newPlatformThreadExecutor(maxConcurrency);
+    }
+
+    /**
+     * Runs given operation by given executor. Unlike
+     * {@link CompletableFuture#supplyAsync(Supplier, Executor)}, the returned
+     * future is completed exceptionally directly with the exception thrown by
+     * the operation, not wrapped into CompletionException. This is also the
+     * case when the executor rejects the operation.
+     *
+     * @param operation operation to run
+     * @param executor executor used for running the operation
+     * @return future completed with the result of the operation
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> operation, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(operation.get());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Runs given operation by given executor, see
+     * {@link #supplyAsync(Supplier, Executor)}.
+     *
+     * @param operation operation to run
+     * @param executor executor used for running the operation
+     * @return future completed when the operation finishes
+     */
+    public static CompletableFuture<Void> runAsync(Runnable operation, Executor executor) {
+        return supplyAsync(() -> {
+            operation.run();
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Creates executor with fixed pool of daemon threads.
+     *
+     * @param threads number of threads
+     * @return new executor
+     */
+    public static ExecutorService newPlatformThreadExecutor(int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("threads is not positive number");
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory threadFactory = task -> {
+            Thread thread = new Thread(task, "async-service-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * Returns Executors.newVirtualThreadPerTaskExecutor() if it is available.
+     * It is called by reflection, so that the code can be compiled and run on
+     * older JDKs.
+     *
+     * @return new executor or null if virtual threads are not supported
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Executor limiting the number of concurrently running tasks of another
+     * executor. The tasks wait for the permit in the thread of the target
+     * executor, so the caller is never blocked.
+     */
+    static class ConcurrencyLimitingExecutor extends AbstractExecutorService {
+
+        private final ExecutorService target;
+        private final Semaphore permits;
+
+        ConcurrencyLimitingExecutor(ExecutorService target, int maxConcurrency) {
+            this.target = target;
+            this.permits = new Semaphore(maxConcurrency, true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (task == null) throw new NullPointerException("task is null");
+            target.execute(() -> {
+                // the task must not be skipped, otherwise its future would
+                // never be completed
+                permits.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            target.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return target.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return target.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return target.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return target.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of CSV records as described in RFC 4180. Fields are
+ * separated by commas and they can be enclosed in double quotes; quoted
+ * fields can contain commas, line breaks and doubled double quotes. Only the
+ * current record is kept in memory.
+ *
+ * This class is not thread safe.
+ */
+public class CsvReader {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private int line = 1;
+    private int recordLine;
+    private int pushedBack = EOF - 1;
+
+    /**
+     * Creates new reader.
+     *
+     * @param reader reader with CSV data
+     * @param maxRecordLength maximal number of characters of one record, which
+     * protects from reading the whole input into memory when some quote is
+     * not terminated
+     */
+    public CsvReader(Reader reader, int maxRecordLength) {
+        if (reader == null) throw new IllegalArgumentException("reader is null");
+        if (maxRecordLength <= 0) throw new IllegalArgumentException("maxRecordLength is not positive number");
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * Reads next record. Empty lines are skipped.
+     *
+     * @return fields of the record, or null when there are no more records
+     * @throws IOException when reading of the input fails
+     * @throws IllegalArgumentException when quoted field is not terminated
+     * or the record is too long
+     */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == EOF) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int length = 0;
+        boolean quoted = false;
+        while (true) {
+            if (++length > maxRecordLength) {
+                throw new IllegalArgumentException("Record at line " + recordLine + " is longer than "
+                        + maxRecordLength + " characters");
+            }
+            if (quoted) {
+                if (c == EOF) {
+                    throw new IllegalArgumentException("Unterminated quoted field in record at line " + recordLine);
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        // doubled quote is escaped quote
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == EOF) {
+                break;
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                break;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Returns line number where the last record returned by
+     * {@link #readRecord()} starts.
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (pushedBack != EOF - 1) {
+            c = pushedBack;
+            pushedBack = EOF - 1;
+        } else {
+            c = reader.read();
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pushedBack == EOF - 1) {
+            pushedBack = reader.read();
+        }
+        return pushedBack;
+    }
+}
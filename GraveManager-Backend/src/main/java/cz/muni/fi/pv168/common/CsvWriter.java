@@ -0,0 +1,71 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer of CSV records as described in RFC 4180, which can be read by
+ * {@link CsvReader}. Fields containing commas, double quotes or line breaks
+ * are enclosed in double quotes, null fields are written as empty strings.
+ *
+ * This class is not thread safe.
+ */
+public class CsvWriter {
+
+    private final Writer writer;
+
+    /**
+     * Creates new writer.
+     *
+     * @param writer target writer, it should be buffered
+     */
+    public CsvWriter(Writer writer) {
+        if (writer == null) throw new IllegalArgumentException("writer is null");
+        this.writer = writer;
+    }
+
+    /**
+     * Writes one record terminated by CRLF.
+     *
+     * @param fields fields of the record
+     * @throws IOException when writing fails
+     */
+    public void writeRecord(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(fields[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        if (!needsQuotes(field)) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -7,7 +7,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Scanner;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Some DB tools.
@@ -40,23 +45,161 @@ public class DBUtils {
     }
 
     /**
-     * Executes SQL script.
+     * Locks given table in exclusive mode until the end of current transaction.
+     * Autocommit mode must be disabled on given connection.
      *
-     * @param ds datasource
-     * @param is InputStream obtained by getClass().getResourceAsStream()
+     * @param conn connection with active transaction
+     * @param table name of the table to be locked
      * @throws SQLException when operation fails
      */
-    public static void executeSqlScript(DataSource ds, InputStream is) throws SQLException, IOException {
-        try (Connection c = ds.getConnection()) {
-            Scanner s = new Scanner(is).useDelimiter(";");
-            while (s.hasNext()) {
-                String sql = s.next().trim();
-                if (sql.isEmpty()) continue;
-                try (PreparedStatement st1 = c.prepareStatement(sql)) {
-                    st1.execute();
+    public static void lockTableExclusively(Connection conn, String table) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("LOCK TABLE " + table + " IN EXCLUSIVE MODE");
+        }
+    }
+
+    /**
+     * Locks given table in share mode until the end of current transaction,
+     * so other transactions can read the table but can't modify it.
+     * Autocommit mode must be disabled on given connection.
+     *
+     * @param conn connection with active transaction
+     * @param table name of the table to be locked
+     * @throws SQLException when operation fails
+     */
+    public static void lockTableShared(Connection conn, String table) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("LOCK TABLE " + table + " IN SHARE MODE");
+        }
+    }
+
+    /**
+     * Executes batch of inserts prepared with Statement.RETURN_GENERATED_KEYS
+     * and returns keys generated for inserted rows in the order in which they
+     * were added to the batch.
+     *
+     * Derby returns only the key of the last inserted row after
+     * executeBatch(), so the other keys are derived from it. This is reliable
+     * only when no other transaction inserts into the same table at the same
+     * time, therefore the caller must hold exclusive lock on the table (see
+     * {@link #lockTableExclusively(Connection, String)}).
+     *
+     * @param st statement with prepared batch of single row inserts
+     * @param rows number of rows in the batch
+     * @return keys of inserted rows
+     * @throws SQLException when operation fails
+     */
+    public static long[] executeInsertBatch(PreparedStatement st, int rows) throws SQLException {
+        int[] counts = st.executeBatch();
+        if (counts.length != rows) {
+            throw new SQLException("Batch inserted " + counts.length + " rows instead of " + rows);
+        }
+        for (int count : counts) {
+            if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+                throw new SQLException("Batch statement inserted " + count + " rows instead of 1");
+            }
+        }
+        long lastId = getId(st.getGeneratedKeys());
+        long[] ids = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            ids[i] = lastId - rows + 1 + i;
+        }
+        return ids;
+    }
+
+    /**
+     * Executes given query and returns its rows as a lazily populated stream.
+     * Rows are fetched from the database as the stream is consumed, so the
+     * memory consumption does not depend on the number of rows. Given 
+     * statement and connection are owned by the returned stream and they are
+     * released when the stream is closed, therefore the stream must be closed
+     * (preferably with try-with-resources statement).
+     *
+     * SQLException thrown during fetching or closing is wrapped into 
+     * {@link ServiceFailureException}.
+     *
+     * @param <T> type of the stream elements
+     * @param conn connection used for executing the query
+     * @param st prepared query with all parameters set
+     * @param mapper mapper converting rows to stream elements
+     * @return stream of entities, which must be closed after use
+     * @throws SQLException when the query can't be executed
+     */
+    public static <T> Stream<T> stream(Connection conn, PreparedStatement st, RowMapper<T> mapper) throws SQLException {
+        ResultSet rs = st.executeQuery();
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.mapRow(rs));
+                    return true;
+                } catch (SQLException ex) {
+                    throw new ServiceFailureException("Error when fetching rows from DB", ex);
                 }
             }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            // all resources are closed even when some of them fails
+            SQLException failure = close(null, rs::close);
+            failure = close(failure, st::close);
+            failure = close(failure, conn::close);
+            if (failure != null) {
+                throw new ServiceFailureException("Error when closing the query", failure);
+            }
+        });
+    }
+
+    /**
+     * Closes resource and returns the first failure, following failures are
+     * added to it as suppressed exceptions.
+     */
+    private static SQLException close(SQLException failure, SqlCloseable resource) {
+        try {
+            resource.close();
+        } catch (SQLException ex) {
+            if (failure == null) {
+                return ex;
+            }
+            failure.addSuppressed(ex);
+        }
+        return failure;
+    }
+
+    private interface SqlCloseable {
+
+        void close() throws SQLException;
+    }
+
+    /**
+     * Closes given connection and ignores any failure. This method is intended
+     * for releasing the connection when some other exception is being handled.
+     *
+     * @param conn connection to be closed, could be null
+     */
+    public static void closeQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ex) {
+                // the original exception is more important
+            }
         }
     }
 
+    /**
+     * Executes SQL script in single transaction.
+     *
+     * @param ds datasource
+     * @param is InputStream obtained by getClass().getResourceAsStream()
+     * @throws SQLException when operation fails
+     * @see SqlScriptExecutor
+     */
+    public static void executeSqlScript(DataSource ds, InputStream is) throws SQLException, IOException {
+        new SqlScriptExecutor(ds).execute(is);
+    }
+
 }
@@ -0,0 +1,168 @@
+package cz.muni.fi.pv168.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of single service method: number of calls, number of failed calls
+ * by exception type and histogram of latencies. Failed calls are included in
+ * the number of calls and in the latencies. This class is thread safe.
+ */
+public class MethodMetrics implements MethodMetricsMBean {
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder serviceFailures = new LongAdder();
+    private final LongAdder illegalEntityErrors = new LongAdder();
+    private final LongAdder validationErrors = new LongAdder();
+    private final LongAdder otherErrors = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public MethodMetrics(String name) {
+        if (name == null) throw new IllegalArgumentException("name is null");
+        this.name = name;
+    }
+
+    /**
+     * Returns name of the method.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Calls given operation and records its latency and result.
+     *
+     * @param operation operation to be measured
+     * @return result of the operation
+     */
+    public <T> T call(Supplier<T> operation) {
+        long start = System.nanoTime();
+        try {
+            T result = operation.get();
+            recordSuccess(start);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            recordFailure(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Runs given operation and records its latency and result.
+     *
+     * @param operation operation to be measured
+     */
+    public void run(Runnable operation) {
+        long start = System.nanoTime();
+        try {
+            operation.run();
+            recordSuccess(start);
+        } catch (RuntimeException | Error ex) {
+            recordFailure(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Records successful call.
+     *
+     * @param startNanos value of {@link System#nanoTime()} when the call started
+     */
+    public void recordSuccess(long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+        calls.increment();
+    }
+
+    /**
+     * Records failed call.
+     *
+     * @param startNanos value of {@link System#nanoTime()} when the call started
+     * @param failure exception thrown by the call
+     */
+    public void recordFailure(long startNanos, Throwable failure) {
+        latencies.record(System.nanoTime() - startNanos);
+        calls.increment();
+        if (failure instanceof ServiceFailureException) {
+            serviceFailures.increment();
+        } else if (failure instanceof IllegalEntityException) {
+            illegalEntityErrors.increment();
+        } else if (failure instanceof ValidationException) {
+            validationErrors.increment();
+        } else {
+            otherErrors.increment();
+        }
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getServiceFailures() {
+        return serviceFailures.sum();
+    }
+
+    @Override
+    public long getIllegalEntityErrors() {
+        return illegalEntityErrors.sum();
+    }
+
+    @Override
+    public long getValidationErrors() {
+        return validationErrors.sum();
+    }
+
+    @Override
+    public long getOtherErrors() {
+        return otherErrors.sum();
+    }
+
+    @Override
+    public double getMeanLatency() {
+        return latencies.getMean() / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getP50Latency() {
+        return toMicros(latencies.getPercentile(0.5));
+    }
+
+    @Override
+    public long getP99Latency() {
+        return toMicros(latencies.getPercentile(0.99));
+    }
+
+    @Override
+    public long getP999Latency() {
+        return toMicros(latencies.getPercentile(0.999));
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return toMicros(latencies.getMax());
+    }
+
+    /**
+     * Returns histogram of latencies in nanoseconds.
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        serviceFailures.reset();
+        illegalEntityErrors.reset();
+        validationErrors.reset();
+        otherErrors.reset();
+        latencies.reset();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
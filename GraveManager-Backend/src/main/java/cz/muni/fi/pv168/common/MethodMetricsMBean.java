@@ -0,0 +1,29 @@
+package cz.muni.fi.pv168.common;
+
+/**
+ * JMX interface of {@link MethodMetrics}. Latencies are in microseconds.
+ */
+public interface MethodMetricsMBean {
+
+    long getCalls();
+
+    long getServiceFailures();
+
+    long getIllegalEntityErrors();
+
+    long getValidationErrors();
+
+    long getOtherErrors();
+
+    double getMeanLatency();
+
+    long getP50Latency();
+
+    long getP99Latency();
+
+    long getP999Latency();
+
+    long getMaxLatency();
+
+    void reset();
+}
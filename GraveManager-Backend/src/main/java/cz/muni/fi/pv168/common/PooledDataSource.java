@@ -0,0 +1,567 @@
+package cz.muni.fi.pv168.common;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * DataSource which keeps pool of physical connections obtained from another
+ * DataSource and hands them out repeatedly. Connection returned from
+ * {@link #getConnection()} is a proxy, which returns the physical connection
+ * back to the pool when it is closed.
+ *
+ * The number of connections is limited by maxSize; when all connections are
+ * borrowed, {@link #getConnection()} waits up to maxWait milliseconds for
+ * returned connection. Borrowing and returning the connection is lock-free
+ * except of waiting for exhausted pool. Connections which were idle for
+ * longer than validation interval are validated before they are handed out.
+ *
+ * Connections borrowed for longer than leak detection threshold are reported
+ * to the logger together with the stack trace of the borrower.
+ *
+ * Each connection keeps bounded LRU cache of prepared statements, so the
+ * statements prepared by {@link Connection#prepareStatement(String)} or
+ * {@link Connection#prepareStatement(String, int)} are reused by subsequent
+ * borrowers with the same SQL. Closing of such statement returns it back to
+ * the cache.
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(PooledDataSource.class.getName());
+
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 30_000;
+    private static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 5_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private final DataSource target;
+    private final int minSize;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+    private volatile long validationIntervalMillis = DEFAULT_VALIDATION_INTERVAL_MILLIS;
+    private volatile long leakDetectionThresholdMillis;
+    private volatile int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder invalidCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final StatementCache.Metrics statementCacheMetrics = new StatementCache.Metrics();
+
+    /**
+     * Creates new pool. No connection is opened until the first call of
+     * {@link #getConnection()}, which opens minSize connections.
+     *
+     * @param target DataSource providing physical connections
+     * @param minSize number of connections opened in advance
+     * @param maxSize maximal number of connections
+     */
+    public PooledDataSource(DataSource target, int minSize, int maxSize) {
+        if (target == null) throw new IllegalArgumentException("target is null");
+        if (minSize < 0) throw new IllegalArgumentException("minSize is negative");
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize is not positive number");
+        if (minSize > maxSize) throw new IllegalArgumentException("minSize is greater than maxSize");
+        this.target = target;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Sets how long {@link #getConnection()} waits for a connection when all
+     * connections are borrowed.
+     *
+     * @param maxWaitMillis timeout in milliseconds
+     */
+    public void setMaxWait(long maxWaitMillis) {
+        if (maxWaitMillis < 0) throw new IllegalArgumentException("maxWait is negative");
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Sets how long the connection could be idle before it is validated again.
+     *
+     * @param validationIntervalMillis interval in milliseconds, zero means
+     * that the connection is validated each time it is borrowed
+     */
+    public void setValidationInterval(long validationIntervalMillis) {
+        if (validationIntervalMillis < 0) throw new IllegalArgumentException("validationInterval is negative");
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    /**
+     * Sets how long the connection could be borrowed before it is reported
+     * as leaked.
+     *
+     * @param leakDetectionThresholdMillis threshold in milliseconds, zero
+     * disables the leak detection
+     */
+    public void setLeakDetectionThreshold(long leakDetectionThresholdMillis) {
+        if (leakDetectionThresholdMillis < 0) throw new IllegalArgumentException("leakDetectionThreshold is negative");
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+    }
+
+    /**
+     * Sets maximal number of prepared statements cached for each connection.
+     * The size is applied to connections opened after this call.
+     *
+     * @param statementCacheSize number of statements, zero disables caching
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) throw new IllegalArgumentException("statementCacheSize is negative");
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", ex);
+        }
+        long waitNanos = System.nanoTime() - start;
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        if (!acquired) {
+            timeoutCount.increment();
+            checkForLeaks();
+            throw new SQLException("No connection available within " + maxWaitMillis + " ms, "
+                    + borrowed.size() + " connections are borrowed");
+        }
+        try {
+            if (!warmedUp.get() && warmedUp.compareAndSet(false, true)) {
+                warmUp();
+            }
+            PooledConnection connection = takeIdleConnection();
+            while (connection == null) {
+                connection = createConnection();
+                if (connection == null) {
+                    // The pool is full, but we hold the permit, so some other
+                    // connection is just being returned
+                    Thread.yield();
+                    connection = takeIdleConnection();
+                }
+            }
+            connection.borrow(leakDetectionThresholdMillis > 0);
+            borrowed.add(connection);
+            borrowCount.increment();
+            return connection.proxy;
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections are always opened with the same credentials");
+    }
+
+    /**
+     * Takes valid idle connection, invalid connections are closed.
+     */
+    private PooledConnection takeIdleConnection() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (connection.isValid(validationIntervalMillis)) {
+                return connection;
+            }
+            invalidCount.increment();
+            discard(connection);
+        }
+        return null;
+    }
+
+    private void warmUp() throws SQLException {
+        PooledConnection connection;
+        while (size.get() < minSize && (connection = createConnection()) != null) {
+            idle.offerLast(connection);
+        }
+    }
+
+    /**
+     * Opens new physical connection.
+     *
+     * @return new connection or null if the pool already has maxSize connections
+     */
+    private PooledConnection createConnection() throws SQLException {
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                return null;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        try {
+            PooledConnection connection = new PooledConnection(target.getConnection());
+            createdCount.increment();
+            return connection;
+        } catch (SQLException | RuntimeException ex) {
+            size.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        borrowed.remove(connection);
+        long threshold = leakDetectionThresholdMillis;
+        if (threshold > 0 && connection.borrowedMillis() > threshold) {
+            logger.log(Level.WARNING, "Connection was borrowed for " + connection.borrowedMillis()
+                    + " ms", connection.borrowStackTrace);
+        }
+        try {
+            if (closed || connection.broken || !connection.reset()) {
+                discard(connection);
+            } else {
+                idle.offerFirst(connection);
+            }
+        } finally {
+            permits.release();
+        }
+        if (closed) {
+            closeIdleConnections();
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        size.decrementAndGet();
+        if (connection.statementCache != null) {
+            connection.statementCache.closeAll();
+        }
+        try {
+            connection.physical.close();
+        } catch (SQLException ex) {
+            logger.log(Level.FINE, "Failed to close discarded connection", ex);
+        }
+    }
+
+    /**
+     * Reports all connections, which are borrowed for longer than leak
+     * detection threshold, to the logger. This is called automatically when
+     * {@link #getConnection()} times out.
+     *
+     * @return number of leaked connections found
+     */
+    public int checkForLeaks() {
+        long threshold = leakDetectionThresholdMillis;
+        if (threshold <= 0) {
+            return 0;
+        }
+        int leaks = 0;
+        for (PooledConnection connection : borrowed) {
+            if (connection.borrowedMillis() > threshold) {
+                leaks++;
+                logger.log(Level.WARNING, "Possible connection leak, connection is borrowed for "
+                        + connection.borrowedMillis() + " ms", connection.borrowStackTrace);
+            }
+        }
+        leakCount.add(leaks);
+        return leaks;
+    }
+
+    /**
+     * Closes all idle connections and prevents borrowing of new connections.
+     * Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdleConnections();
+    }
+
+    private void closeIdleConnections() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * Returns number of currently open physical connections.
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns number of currently borrowed connections.
+     */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Returns number of connections waiting in the pool.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns number of successful {@link #getConnection()} calls.
+     */
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * Returns number of physical connections opened by this pool.
+     */
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    /**
+     * Returns number of idle connections discarded because of failed
+     * validation.
+     */
+    public long getInvalidCount() {
+        return invalidCount.sum();
+    }
+
+    /**
+     * Returns number of {@link #getConnection()} calls which timed out.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * Returns number of leaks reported by {@link #checkForLeaks()}.
+     */
+    public long getLeakCount() {
+        return leakCount.sum();
+    }
+
+    /**
+     * Returns total time spent by waiting for a connection.
+     */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    /**
+     * Returns the longest time spent by waiting for a connection.
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * Returns number of prepared statements served from statement caches.
+     */
+    public long getStatementCacheHitCount() {
+        return statementCacheMetrics.hitCount.sum();
+    }
+
+    /**
+     * Returns number of prepared statements which were not found in
+     * statement caches and had to be prepared.
+     */
+    public long getStatementCacheMissCount() {
+        return statementCacheMetrics.missCount.sum();
+    }
+
+    /**
+     * Returns number of statements removed from statement caches because of
+     * size limit.
+     */
+    public long getStatementCacheEvictionCount() {
+        return statementCacheMetrics.evictionCount.sum();
+    }
+
+    /**
+     * Returns ratio of prepared statements served from statement caches,
+     * or zero if no statement was prepared yet.
+     */
+    public double getStatementCacheHitRate() {
+        long hits = getStatementCacheHitCount();
+        long total = hits + getStatementCacheMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return logger;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+
+    /**
+     * Physical connection managed by the pool together with its proxy handed
+     * out to the borrowers.
+     */
+    private class PooledConnection implements InvocationHandler {
+
+        private final Connection physical;
+        private final Connection proxy;
+        private final StatementCache statementCache;
+        private final AtomicBoolean returned = new AtomicBoolean(true);
+        private volatile boolean broken;
+        private volatile long borrowedAt;
+        private volatile long lastUsedAt = System.nanoTime();
+        private volatile Throwable borrowStackTrace;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(PooledDataSource.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+            int cacheSize = statementCacheSize;
+            this.statementCache = cacheSize > 0
+                    ? new StatementCache(physical, proxy, cacheSize, statementCacheMetrics)
+                    : null;
+        }
+
+        void borrow(boolean recordStackTrace) {
+            borrowedAt = System.nanoTime();
+            borrowStackTrace = recordStackTrace ? new Throwable("Connection borrowed here") : null;
+            returned.set(false);
+        }
+
+        long borrowedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - borrowedAt);
+        }
+
+        boolean isValid(long validationIntervalMillis) {
+            if (System.nanoTime() - lastUsedAt < TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis)) {
+                return true;
+            }
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Restores default state of the connection, so that the next borrower
+         * gets the same connection as from the target DataSource.
+         */
+        boolean reset() {
+            try {
+                if (statementCache != null) {
+                    statementCache.releaseAll();
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                physical.clearWarnings();
+                lastUsedAt = System.nanoTime();
+                return true;
+            } catch (SQLException ex) {
+                logger.log(Level.FINE, "Failed to reset returned connection", ex);
+                return false;
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    // concurrent close calls must not release the connection twice
+                    if (returned.compareAndSet(false, true)) {
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    if (returned.get()) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        if (statementCache != null && method.getName().equals("prepareStatement")) {
+                            Class<?>[] types = method.getParameterTypes();
+                            if (types.length == 1) {
+                                return statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                            }
+                            if (types.length == 2 && types[1] == int.class) {
+                                return statementCache.prepare((String) args[0], (Integer) args[1]);
+                            }
+                        }
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException ex) {
+                        Throwable cause = ex.getCause();
+                        if (cause instanceof SQLException) {
+                            String sqlState = ((SQLException) cause).getSQLState();
+                            // SQL state class 08 means connection exception
+                            if (sqlState != null && sqlState.startsWith("08")) {
+                                broken = true;
+                            }
+                        }
+                        throw cause;
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,630 @@
+package cz.muni.fi.pv168.common;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * DataSource which measures time spent in JDBC calls of connections obtained
+ * from another DataSource. Each execution of a statement is timed from the
+ * execute call until its result set is exhausted or closed, so the time
+ * includes fetching of rows but not the processing of rows by the caller.
+ * Commits and rollbacks are timed as well.
+ *
+ * Executions are aggregated by SQL shape, which is the SQL text with literals
+ * replaced by {@code ?} and with normalized whitespace, see
+ * {@link #getStatementStats()}. Executions taking longer than slow statement
+ * threshold are reported to the logger named {@link #SLOW_STATEMENT_LOGGER}
+ * together with their SQL text, number of bind parameters, number of rows
+ * and the calling method, which is the first method on the stack outside of
+ * JDBC and of the JDBC helpers of this package (usually a method of some
+ * manager).
+ *
+ * This class is thread safe, but the connections, statements and result sets
+ * are not (the same as those of the target DataSource).
+ */
+public class ProfilingDataSource implements DataSource {
+
+    /**
+     * Name of the logger receiving slow statements.
+     */
+    public static final String SLOW_STATEMENT_LOGGER = ProfilingDataSource.class.getName() + ".slow";
+
+    private static final Logger logger = Logger.getLogger(ProfilingDataSource.class.getName());
+    private static final Logger slowLogger = Logger.getLogger(SLOW_STATEMENT_LOGGER);
+
+    private static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 100;
+    // statements with literals inlined could have unlimited number of texts
+    private static final int MAX_CACHED_SQL = 1000;
+
+    private final DataSource target;
+    private final ConcurrentMap<String, SqlInfo> sqlInfos = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StatementStats> stats = new ConcurrentHashMap<>();
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD_MILLIS);
+
+    public ProfilingDataSource(DataSource target) {
+        if (target == null) throw new IllegalArgumentException("target is null");
+        this.target = target;
+    }
+
+    /**
+     * Sets how long the execution of a statement could take before it is
+     * reported to the slow statement logger. Default is 100 ms.
+     *
+     * @param thresholdMillis threshold in milliseconds, zero means that all
+     * executions are reported
+     */
+    public void setSlowStatementThreshold(long thresholdMillis) {
+        if (thresholdMillis < 0) throw new IllegalArgumentException("slowStatementThreshold is negative");
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Returns statistics of all executed SQL shapes, ordered by total time
+     * descending, so the statement which dominates is the first one.
+     */
+    public List<StatementStats> getStatementStats() {
+        List<StatementStats> result = new ArrayList<>(stats.values());
+        result.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+        return result;
+    }
+
+    /**
+     * Removes all collected statistics.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new ConnectionHandler(target.getConnection()).proxy;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return new ConnectionHandler(target.getConnection(username, password)).proxy;
+    }
+
+    private SqlInfo sqlInfo(String sql) {
+        SqlInfo info = sqlInfos.get(sql);
+        if (info == null) {
+            info = new SqlInfo(sql);
+            if (sqlInfos.size() < MAX_CACHED_SQL) {
+                sqlInfos.putIfAbsent(sql, info);
+            }
+        }
+        return info;
+    }
+
+    private void record(String sql, String shape, int parameters, long rows, long nanos, boolean failed) {
+        stats.computeIfAbsent(shape, StatementStats::new).record(nanos, rows, failed);
+        if (nanos >= slowThresholdNanos && slowLogger.isLoggable(Level.INFO)) {
+            slowLogger.info(String.format(Locale.ROOT,
+                    "Slow statement took %.3f ms, rows=%d, parameters=%d, failed=%b, caller=%s: %s",
+                    nanos / 1e6, rows, parameters, failed, findCaller(new Throwable().getStackTrace()), sql));
+        }
+    }
+
+    /**
+     * Returns the first method on the stack which is not part of JDBC or of
+     * JDBC helpers, in the form {@code SimpleClassName.method}.
+     */
+    static String findCaller(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (isClassOf(className, ProfilingDataSource.class)
+                    || isClassOf(className, PooledDataSource.class)
+                    || isClassOf(className, StatementCache.class)
+                    || isClassOf(className, DBUtils.class)
+                    || className.startsWith("java.")
+                    || className.startsWith("javax.")
+                    || className.startsWith("jdk.")
+                    || className.startsWith("sun.")
+                    || className.startsWith("com.sun.")
+                    || className.startsWith("org.apache.derby.")
+                    || className.contains("$Proxy")) {
+                continue;
+            }
+            return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+        }
+        return "unknown";
+    }
+
+    private static boolean isClassOf(String className, Class<?> type) {
+        // nested classes and lambdas are part of the class as well
+        return className.startsWith(type.getName())
+                && (className.length() == type.getName().length() || className.charAt(type.getName().length()) == '$');
+    }
+
+    /**
+     * Returns SQL with string and numeric literals replaced by {@code ?},
+     * comments removed and whitespace collapsed to single spaces, so the
+     * statements differing only in inlined values have the same shape.
+     *
+     * @param sql SQL statement
+     * @return shape of the statement
+     */
+    static String shape(String sql) {
+        return new SqlInfo(sql).shape;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return logger;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+
+    /**
+     * Aggregated executions of single SQL shape.
+     */
+    public static class StatementStats {
+
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        void record(long nanos, long rows, boolean failed) {
+            latencies.record(nanos);
+            totalNanos.add(nanos);
+            this.rows.add(rows);
+            count.increment();
+            if (failed) {
+                errorCount.increment();
+            }
+        }
+
+        /**
+         * Returns shape of the SQL, or COMMIT or ROLLBACK for transaction
+         * ends.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Returns number of executions.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns number of executions which threw an exception.
+         */
+        public long getErrorCount() {
+            return errorCount.sum();
+        }
+
+        /**
+         * Returns number of rows fetched by queries or affected by updates.
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * Returns total time of all executions.
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * Returns histogram of execution times in nanoseconds.
+         */
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d x %.3f ms (total %.3f ms, p99 %.3f ms), rows=%d, errors=%d: %s",
+                    getCount(), latencies.getMean() / 1e6, getTotalNanos() / 1e6,
+                    latencies.getPercentile(0.99) / 1e6, getRows(), getErrorCount(), sql);
+        }
+    }
+
+    /**
+     * Shape and number of bind parameters of SQL text.
+     */
+    private static class SqlInfo {
+
+        final String shape;
+        final int parameters;
+
+        SqlInfo(String sql) {
+            StringBuilder result = new StringBuilder(sql.length());
+            int count = 0;
+            boolean space = false;
+            int i = 0;
+            while (i < sql.length()) {
+                char c = sql.charAt(i);
+                int start = i;
+                if (c == '\'') {
+                    // string literal, quotes inside are doubled
+                    i++;
+                    while (i < sql.length()) {
+                        if (sql.charAt(i) == '\'') {
+                            if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    i++;
+                    space = append(result, "?", space);
+                } else if (c == '"') {
+                    int end = sql.indexOf('"', i + 1);
+                    i = end < 0 ? sql.length() : end + 1;
+                    space = append(result, sql.substring(start, i), space);
+                } else if (c == '-' && sql.startsWith("--", i)) {
+                    int end = sql.indexOf('\n', i);
+                    i = end < 0 ? sql.length() : end + 1;
+                    space = true;
+                } else if (c == '/' && sql.startsWith("/*", i)) {
+                    int end = sql.indexOf("*/", i + 2);
+                    i = end < 0 ? sql.length() : end + 2;
+                    space = true;
+                } else if (Character.isWhitespace(c)) {
+                    i++;
+                    space = true;
+                } else if (Character.isDigit(c)) {
+                    while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                        i++;
+                    }
+                    space = append(result, "?", space);
+                } else if (Character.isLetter(c) || c == '_') {
+                    // identifiers or keywords, which could contain digits
+                    while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i))
+                            || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+                        i++;
+                    }
+                    space = append(result, sql.substring(start, i), space);
+                } else {
+                    if (c == '?') {
+                        count++;
+                    }
+                    i++;
+                    space = append(result, String.valueOf(c), space);
+                }
+            }
+            this.shape = result.toString();
+            this.parameters = count;
+        }
+
+        private static boolean append(StringBuilder result, String token, boolean space) {
+            if (space && result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(token);
+            return false;
+        }
+    }
+
+    /**
+     * Single execution of a statement, which is recorded when it is finished.
+     */
+    private class Execution {
+
+        private final String sql;
+        private final SqlInfo info;
+        private final int parameters;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        Execution(String sql, int parameters) {
+            this.sql = sql;
+            this.info = sqlInfo(sql);
+            this.parameters = parameters;
+        }
+
+        void finish(boolean failed) {
+            if (!finished) {
+                finished = true;
+                record(sql, info.shape, parameters, rows, nanos, failed);
+            }
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection physical;
+        private final Connection proxy;
+
+        ConnectionHandler(Connection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "createStatement":
+                    return new StatementHandler(this.proxy, (Statement) ProfilingDataSource.invoke(physical, method, args),
+                            null, Statement.class).proxy;
+                case "prepareStatement":
+                    return new StatementHandler(this.proxy, (Statement) ProfilingDataSource.invoke(physical, method, args),
+                            (String) args[0], PreparedStatement.class).proxy;
+                case "prepareCall":
+                    return new StatementHandler(this.proxy, (Statement) ProfilingDataSource.invoke(physical, method, args),
+                            (String) args[0], CallableStatement.class).proxy;
+                case "commit":
+                case "rollback":
+                    Execution execution = new Execution(method.getName().toUpperCase(Locale.ROOT), 0);
+                    long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        Object result = ProfilingDataSource.invoke(physical, method, args);
+                        failed = false;
+                        return result;
+                    } finally {
+                        execution.nanos = System.nanoTime() - start;
+                        execution.finish(failed);
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProfilingConnection[" + physical + "]";
+                default:
+                    return ProfilingDataSource.invoke(physical, method, args);
+            }
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Connection connectionProxy;
+        private final Statement physical;
+        private final Statement proxy;
+        private final String sql;
+        private String batchSql;
+        private int batchSize;
+        private Execution pending;
+
+        StatementHandler(Connection connectionProxy, Statement physical, String sql, Class<? extends Statement> type) {
+            this.connectionProxy = connectionProxy;
+            this.physical = physical;
+            this.sql = sql;
+            this.proxy = (Statement) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+                    new Class<?>[]{type}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "executeQuery":
+                    return execute(method, args, true);
+                case "execute":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    return execute(method, args, false);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return executeBatch(method, args);
+                case "getResultSet": {
+                    ResultSet rs = (ResultSet) ProfilingDataSource.invoke(physical, method, args);
+                    return rs == null || pending == null ? rs : new ResultSetHandler(this.proxy, rs, pending).proxy;
+                }
+                case "addBatch":
+                    if (args != null) {
+                        batchSql = (String) args[0];
+                    }
+                    ProfilingDataSource.invoke(physical, method, args);
+                    batchSize++;
+                    return null;
+                case "clearBatch":
+                    batchSize = 0;
+                    return ProfilingDataSource.invoke(physical, method, args);
+                case "close":
+                    finishPending();
+                    return ProfilingDataSource.invoke(physical, method, args);
+                case "getConnection":
+                    return connectionProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProfilingStatement[" + physical + "]";
+                default:
+                    return ProfilingDataSource.invoke(physical, method, args);
+            }
+        }
+
+        private Object execute(Method method, Object[] args, boolean query) throws Throwable {
+            finishPending();
+            boolean inlineSql = args != null && args.length > 0 && args[0] instanceof String;
+            String executed = inlineSql ? (String) args[0] : sql;
+            Execution execution = new Execution(executed, inlineSql ? 0 : sqlInfo(executed).parameters);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = ProfilingDataSource.invoke(physical, method, args);
+            } catch (Throwable ex) {
+                execution.nanos = System.nanoTime() - start;
+                execution.finish(true);
+                throw ex;
+            }
+            execution.nanos = System.nanoTime() - start;
+            if (query) {
+                // the execution is finished when its result set is exhausted or closed
+                pending = execution;
+                return new ResultSetHandler(this.proxy, (ResultSet) result, execution).proxy;
+            }
+            if (result instanceof Boolean) {
+                if ((Boolean) result) {
+                    pending = execution;
+                    return result;
+                }
+                execution.rows = Math.max(0, physical.getUpdateCount());
+            } else {
+                execution.rows = ((Number) result).longValue();
+            }
+            execution.finish(false);
+            return result;
+        }
+
+        private Object executeBatch(Method method, Object[] args) throws Throwable {
+            finishPending();
+            String executed = sql != null ? sql : batchSql;
+            int parameters = sql != null ? sqlInfo(sql).parameters * batchSize : 0;
+            batchSize = 0;
+            if (executed == null) {
+                return ProfilingDataSource.invoke(physical, method, args);
+            }
+            Execution execution = new Execution(executed, parameters);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = ProfilingDataSource.invoke(physical, method, args);
+                if (result instanceof int[]) {
+                    for (int count : (int[]) result) {
+                        execution.rows += Math.max(0, count);
+                    }
+                } else {
+                    for (long count : (long[]) result) {
+                        execution.rows += Math.max(0, count);
+                    }
+                }
+                failed = false;
+                return result;
+            } finally {
+                execution.nanos = System.nanoTime() - start;
+                execution.finish(failed);
+            }
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish(false);
+                pending = null;
+            }
+        }
+    }
+
+    private class ResultSetHandler implements InvocationHandler {
+
+        private final Statement statementProxy;
+        private final ResultSet physical;
+        private final ResultSet proxy;
+        private final Execution execution;
+
+        ResultSetHandler(Statement statementProxy, ResultSet physical, Execution execution) {
+            this.statementProxy = statementProxy;
+            this.physical = physical;
+            this.execution = execution;
+            this.proxy = (ResultSet) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    long start = System.nanoTime();
+                    boolean hasRow;
+                    try {
+                        hasRow = (Boolean) ProfilingDataSource.invoke(physical, method, args);
+                    } catch (Throwable ex) {
+                        execution.nanos += System.nanoTime() - start;
+                        execution.finish(true);
+                        throw ex;
+                    }
+                    execution.nanos += System.nanoTime() - start;
+                    if (hasRow) {
+                        execution.rows++;
+                    } else {
+                        execution.finish(false);
+                    }
+                    return hasRow;
+                }
+                case "close":
+                    execution.finish(false);
+                    return ProfilingDataSource.invoke(physical, method, args);
+                case "getStatement":
+                    return statementProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProfilingResultSet[" + physical + "]";
+                default:
+                    return ProfilingDataSource.invoke(physical, method, args);
+            }
+        }
+    }
+}
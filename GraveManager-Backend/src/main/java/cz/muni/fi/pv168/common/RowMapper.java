@@ -0,0 +1,24 @@
+package cz.muni.fi.pv168.common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps current row of the ResultSet to an entity.
+ *
+ * @param <T> type of the entity
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Creates entity from the current row of given result set. This method
+     * must not move the cursor.
+     *
+     * @param rs result set positioned at the row to be mapped
+     * @return entity created from the current row
+     * @throws SQLException when operation fails
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+
+}
@@ -0,0 +1,134 @@
+package cz.muni.fi.pv168.common;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of all methods of single service. The metrics can be published as
+ * JMX MBeans, one per method, named
+ * {@code <domain>:type=<service>,method=<method>}, for example
+ * {@code cz.muni.fi.pv168:type=GraveManager,method=createGrave}.
+ *
+ * Methods are registered when the metrics are created, so the lookup of
+ * {@link MethodMetrics} is not synchronized. This class is thread safe.
+ */
+public class ServiceMetrics {
+
+    public static final String DEFAULT_DOMAIN = "cz.muni.fi.pv168";
+
+    private final String domain;
+    private final String service;
+    private final Map<String, MethodMetrics> methods = new LinkedHashMap<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+
+    /**
+     * Creates metrics of given methods.
+     *
+     * @param domain JMX domain of the MBeans
+     * @param service name of the service, which is used as MBean type
+     * @param methodNames names of the measured methods
+     */
+    public ServiceMetrics(String domain, String service, String... methodNames) {
+        if (domain == null) throw new IllegalArgumentException("domain is null");
+        if (service == null) throw new IllegalArgumentException("service is null");
+        this.domain = domain;
+        this.service = service;
+        for (String methodName : methodNames) {
+            methods.put(methodName, new MethodMetrics(methodName));
+        }
+    }
+
+    /**
+     * Returns name of the service.
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * Returns metrics of given method.
+     *
+     * @param methodName name of the method
+     * @return metrics of the method
+     * @throws IllegalArgumentException when there is no such method
+     */
+    public MethodMetrics method(String methodName) {
+        MethodMetrics metrics = methods.get(methodName);
+        if (metrics == null) throw new IllegalArgumentException("unknown method " + methodName);
+        return metrics;
+    }
+
+    /**
+     * Returns metrics of all methods in the order they were given to the
+     * constructor.
+     */
+    public Collection<MethodMetrics> getMethods() {
+        return Collections.unmodifiableCollection(methods.values());
+    }
+
+    /**
+     * Resets metrics of all methods.
+     */
+    public void reset() {
+        methods.values().forEach(MethodMetrics::reset);
+    }
+
+    /**
+     * Registers MBeans of all methods into given server, usually
+     * {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}.
+     *
+     * @param server MBean server
+     * @throws IllegalStateException when MBeans with the same name are
+     * already registered, e.g. by other instance of the same service
+     * @throws JMException when registration fails
+     */
+    public synchronized void registerMBeans(MBeanServer server) throws JMException {
+        if (server == null) throw new IllegalArgumentException("server is null");
+        if (!registeredNames.isEmpty()) throw new IllegalStateException("MBeans are already registered");
+        try {
+            for (MethodMetrics metrics : methods.values()) {
+                ObjectName name = objectName(metrics.getName());
+                server.registerMBean(metrics, name);
+                registeredNames.add(name);
+            }
+        } catch (InstanceAlreadyExistsException ex) {
+            unregisterMBeans(server);
+            throw new IllegalStateException("MBeans of " + service + " are already registered", ex);
+        } catch (JMException ex) {
+            unregisterMBeans(server);
+            throw ex;
+        }
+    }
+
+    /**
+     * Unregisters MBeans registered by {@link #registerMBeans(MBeanServer)}.
+     *
+     * @param server MBean server used for registration
+     * @throws JMException when unregistration fails
+     */
+    public synchronized void unregisterMBeans(MBeanServer server) throws JMException {
+        if (server == null) throw new IllegalArgumentException("server is null");
+        for (ObjectName name : registeredNames) {
+            try {
+                server.unregisterMBean(name);
+            } catch (InstanceNotFoundException ex) {
+                // already unregistered by somebody else
+            }
+        }
+        registeredNames.clear();
+    }
+
+    private ObjectName objectName(String methodName) throws MalformedObjectNameException {
+        return new ObjectName(domain + ":type=" + service + ",method=" + methodName);
+    }
+}
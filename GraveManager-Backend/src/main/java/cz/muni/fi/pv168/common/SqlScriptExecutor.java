@@ -0,0 +1,323 @@
+package cz.muni.fi.pv168.common;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes SQL scripts. The script is read and split into statements
+ * by {@link SqlScriptParser} while it is executed, so the whole script is
+ * never kept in memory.
+ *
+ * All statements are executed in single transaction, so either the whole
+ * script succeeds or nothing is changed. Statements which do not return
+ * result set are sent to the database in batches, queries and procedure
+ * calls are executed one by one.
+ *
+ * The result contains only totals and the slowest statement, so it does not
+ * grow with the script. The timing of each statement can be obtained by
+ * {@link #setStatementListener(Consumer)}.
+ */
+public class SqlScriptExecutor {
+
+    private static final Logger logger = Logger.getLogger(SqlScriptExecutor.class.getName());
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final DataSource dataSource;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private Consumer<ExecutedStatement> statementListener;
+
+    public SqlScriptExecutor(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Sets maximal number of statements sent to the database in one batch.
+     *
+     * @param batchSize number of statements, 1 means that each statement is
+     * executed separately and its time is measured exactly
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize is not positive number");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets listener which is notified about each executed statement in the
+     * order of the script. The listener is called before the transaction is
+     * committed, so the script can still fail after that.
+     *
+     * @param statementListener listener or null when no listener is used
+     */
+    public void setStatementListener(Consumer<ExecutedStatement> statementListener) {
+        this.statementListener = statementListener;
+    }
+
+    /**
+     * Executes SQL script encoded in UTF-8.
+     *
+     * @param is InputStream with the script, e.g. obtained by
+     * getClass().getResourceAsStream()
+     * @return number of executed statements and their timing
+     * @throws SQLException when some statement fails, the exception message
+     * contains the line of the failed statement
+     * @throws IOException when reading of the script fails
+     */
+    public ScriptResult execute(InputStream is) throws SQLException, IOException {
+        if (is == null) throw new IllegalArgumentException("input stream is null");
+        return execute(new InputStreamReader(is, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Executes SQL script.
+     *
+     * @param reader reader with the script
+     * @return number of executed statements and their timing
+     * @throws SQLException when some statement fails, the exception message
+     * contains the line of the failed statement
+     * @throws IOException when reading of the script fails
+     */
+    public ScriptResult execute(Reader reader) throws SQLException, IOException {
+        if (reader == null) throw new IllegalArgumentException("reader is null");
+        SqlScriptParser parser = new SqlScriptParser(reader instanceof BufferedReader ? reader : new BufferedReader(reader));
+        long start = System.nanoTime();
+        Progress executed = new Progress(statementListener);
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement st = conn.createStatement()) {
+                conn.setAutoCommit(false);
+                List<PendingStatement> batch = new ArrayList<>();
+                String sql;
+                while ((sql = parser.next()) != null) {
+                    PendingStatement pending = new PendingStatement(sql, parser.getStatementLine());
+                    if (isBatchable(sql)) {
+                        st.addBatch(sql);
+                        batch.add(pending);
+                        if (batch.size() >= batchSize) {
+                            executeBatch(st, batch, executed);
+                        }
+                    } else {
+                        executeBatch(st, batch, executed);
+                        executeSingle(st, pending, executed);
+                    }
+                }
+                executeBatch(st, batch, executed);
+                conn.commit();
+            } catch (Exception ex) {
+                //something failed, let's rollback
+                conn.rollback();
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
+        }
+        ScriptResult result = new ScriptResult(executed.count, executed.slowest, System.nanoTime() - start);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Executed " + result.getStatementCount() + " statements in "
+                    + TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()) + " ms");
+        }
+        return result;
+    }
+
+    private static void executeBatch(Statement st, List<PendingStatement> batch, Progress executed)
+            throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int[] counts;
+        try {
+            counts = st.executeBatch();
+        } catch (BatchUpdateException ex) {
+            int failed = Math.min(ex.getUpdateCounts() == null ? 0 : ex.getUpdateCounts().length, batch.size() - 1);
+            throw statementFailed(batch.get(failed), ex);
+        }
+        // the time of the batch is divided evenly among its statements
+        long elapsed = (System.nanoTime() - start) / batch.size();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingStatement pending = batch.get(i);
+            executed.add(new ExecutedStatement(pending.line, counts[i], elapsed));
+        }
+        batch.clear();
+    }
+
+    private static void executeSingle(Statement st, PendingStatement pending, Progress executed)
+            throws SQLException {
+        long start = System.nanoTime();
+        int updateCount;
+        try {
+            if (st.execute(pending.sql)) {
+                // the result of the query is not interesting
+                st.getResultSet().close();
+                updateCount = Statement.SUCCESS_NO_INFO;
+            } else {
+                updateCount = st.getUpdateCount();
+            }
+        } catch (SQLException ex) {
+            throw statementFailed(pending, ex);
+        }
+        executed.add(new ExecutedStatement(pending.line, updateCount, System.nanoTime() - start));
+    }
+
+    private static SQLException statementFailed(PendingStatement pending, SQLException cause) {
+        return new SQLException("Statement at line " + pending.line + " failed: " + pending.sql,
+                cause.getSQLState(), cause.getErrorCode(), cause);
+    }
+
+    /**
+     * Returns true for statements which do not return result set and can be
+     * executed in batch.
+     */
+    static boolean isBatchable(String sql) {
+        int end = 0;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        switch (sql.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "SELECT":
+            case "VALUES":
+            case "WITH":
+            case "CALL":
+            case "EXPLAIN":
+            case "":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static class PendingStatement {
+
+        private final String sql;
+        private final int line;
+
+        PendingStatement(String sql, int line) {
+            this.sql = sql;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Counts executed statements and passes them to the listener.
+     */
+    private static class Progress {
+
+        private final Consumer<ExecutedStatement> listener;
+        private int count;
+        private ExecutedStatement slowest;
+
+        Progress(Consumer<ExecutedStatement> listener) {
+            this.listener = listener;
+        }
+
+        void add(ExecutedStatement statement) {
+            count++;
+            if (slowest == null || statement.elapsedNanos > slowest.elapsedNanos) {
+                slowest = statement;
+            }
+            if (listener != null) {
+                listener.accept(statement);
+            }
+        }
+    }
+
+    /**
+     * Statement executed from the script. Its SQL is not kept, it can be
+     * found in the script by the line.
+     */
+    public static class ExecutedStatement {
+
+        private final int line;
+        private final int updateCount;
+        private final long elapsedNanos;
+
+        ExecutedStatement(int line, int updateCount, long elapsedNanos) {
+            this.line = line;
+            this.updateCount = updateCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns line of the script where the statement starts.
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Returns number of changed rows or {@link Statement#SUCCESS_NO_INFO}.
+         */
+        public int getUpdateCount() {
+            return updateCount;
+        }
+
+        /**
+         * Returns execution time of the statement. For statements executed in
+         * batch, this is the time of the whole batch divided by the number of
+         * its statements.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + " (" + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) + " us)";
+        }
+    }
+
+    /**
+     * Result of script execution.
+     */
+    public static class ScriptResult {
+
+        private final int statementCount;
+        private final ExecutedStatement slowestStatement;
+        private final long elapsedNanos;
+
+        ScriptResult(int statementCount, ExecutedStatement slowestStatement, long elapsedNanos) {
+            this.statementCount = statementCount;
+            this.slowestStatement = slowestStatement;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns number of executed statements.
+         */
+        public int getStatementCount() {
+            return statementCount;
+        }
+
+        /**
+         * Returns the statement with the longest execution time or null when
+         * the script contains no statements.
+         */
+        public ExecutedStatement getSlowestStatement() {
+            return slowestStatement;
+        }
+
+        /**
+         * Returns execution time of the whole script.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
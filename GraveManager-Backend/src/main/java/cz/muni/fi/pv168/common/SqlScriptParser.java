@@ -0,0 +1,173 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming parser which splits SQL script into statements. Statements are
+ * separated by semicolons; semicolons inside string literals, quoted
+ * identifiers and comments are ignored. Both {@code --} line comments and
+ * {@code /* *}{@code /} block comments are removed from returned statements.
+ *
+ * This class is not thread safe.
+ */
+class SqlScriptParser {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private int line = 1;
+    private int statementLine;
+    private int pushedBack = EOF - 1;
+
+    /**
+     * Creates new parser.
+     *
+     * @param reader reader with the script, it should be buffered
+     */
+    SqlScriptParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads next statement from the script.
+     *
+     * @return next statement without terminating semicolon, or null when
+     * there are no more statements
+     * @throws IOException when reading of the script fails
+     * @throws IllegalArgumentException when the script ends inside string
+     * literal, quoted identifier or block comment
+     */
+    String next() throws IOException {
+        StringBuilder sql = new StringBuilder();
+        statementLine = 0;
+        int c;
+        while ((c = read()) != EOF) {
+            switch (c) {
+                case ';':
+                    if (statementLine != 0) {
+                        return sql.toString().trim();
+                    }
+                    // empty statement
+                    break;
+                case '\'':
+                case '"':
+                    start();
+                    readQuoted(sql, (char) c);
+                    break;
+                case '-':
+                    if (peek() == '-') {
+                        skipLineComment();
+                        appendSeparator(sql);
+                    } else {
+                        start();
+                        sql.append('-');
+                    }
+                    break;
+                case '/':
+                    if (peek() == '*') {
+                        read();
+                        skipBlockComment();
+                        appendSeparator(sql);
+                    } else {
+                        start();
+                        sql.append('/');
+                    }
+                    break;
+                default:
+                    if (!Character.isWhitespace(c)) {
+                        start();
+                    }
+                    if (statementLine != 0) {
+                        sql.append((char) c);
+                    }
+            }
+        }
+        return statementLine != 0 ? sql.toString().trim() : null;
+    }
+
+    /**
+     * Returns line number where the last statement returned by
+     * {@link #next()} starts.
+     */
+    int getStatementLine() {
+        return statementLine;
+    }
+
+    private void start() {
+        if (statementLine == 0) {
+            statementLine = line;
+        }
+    }
+
+    private void appendSeparator(StringBuilder sql) {
+        // the comment separates tokens like whitespace
+        if (statementLine != 0) {
+            sql.append(' ');
+        }
+    }
+
+    private void readQuoted(StringBuilder sql, char quote) throws IOException {
+        int startLine = line;
+        sql.append(quote);
+        while (true) {
+            int c = read();
+            if (c == EOF) {
+                throw new IllegalArgumentException("Unterminated " + (quote == '\'' ? "string literal" : "quoted identifier")
+                        + " starting at line " + startLine);
+            }
+            sql.append((char) c);
+            if (c == quote) {
+                if (peek() == quote) {
+                    // doubled quote is escaped quote
+                    sql.append((char) read());
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != EOF && c != '\n');
+    }
+
+    private void skipBlockComment() throws IOException {
+        int startLine = line;
+        int previous = EOF;
+        while (true) {
+            int c = read();
+            if (c == EOF) {
+                throw new IllegalArgumentException("Unterminated comment starting at line " + startLine);
+            }
+            if (previous == '*' && c == '/') {
+                return;
+            }
+            previous = c;
+        }
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (pushedBack != EOF - 1) {
+            c = pushedBack;
+            pushedBack = EOF - 1;
+        } else {
+            c = reader.read();
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pushedBack == EOF - 1) {
+            pushedBack = reader.read();
+        }
+        return pushedBack;
+    }
+}
@@ -0,0 +1,271 @@
+package cz.muni.fi.pv168.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded LRU cache of prepared statements of single physical connection.
+ * Statements are keyed by SQL text and auto generated keys flag. Statement
+ * returned from {@link #prepare(String, int)} is a proxy, which returns the
+ * physical statement back to the cache when it is closed, so the next
+ * {@link #prepare(String, int)} with the same SQL does not have to prepare it
+ * again.
+ *
+ * This class is not thread safe, it is used only by the current borrower of
+ * the connection.
+ */
+class StatementCache {
+
+    private static final Logger logger = Logger.getLogger(StatementCache.class.getName());
+
+    /**
+     * Counters shared by all caches of the same pool.
+     */
+    static class Metrics {
+        final LongAdder hitCount = new LongAdder();
+        final LongAdder missCount = new LongAdder();
+        final LongAdder evictionCount = new LongAdder();
+    }
+
+    private final Connection physical;
+    private final Connection connectionProxy;
+    private final int maxSize;
+    private final Metrics metrics;
+    private final Map<String, CachedStatement> statements;
+
+    /**
+     * Creates new empty cache.
+     *
+     * @param physical connection used for preparing statements
+     * @param connectionProxy connection returned from {@link Statement#getConnection()}
+     * @param maxSize maximal number of cached statements
+     * @param metrics counters to be updated
+     */
+    @SuppressWarnings("serial") // the cache map is never serialized
+    StatementCache(Connection physical, Connection connectionProxy, int maxSize, Metrics metrics) {
+        this.physical = physical;
+        this.connectionProxy = connectionProxy;
+        this.maxSize = maxSize;
+        this.metrics = metrics;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    StatementCache.this.metrics.evictionCount.increment();
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cached statement for given SQL or prepares the new one. When the
+     * cached statement is still in use, new uncached statement is prepared.
+     *
+     * @param sql SQL statement
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or
+     * {@link Statement#NO_GENERATED_KEYS}
+     * @return prepared statement
+     * @throws SQLException when preparing of the statement fails
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            metrics.hitCount.increment();
+            cached.inUse = true;
+            return cached.proxy;
+        }
+        metrics.missCount.increment();
+        PreparedStatement st = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null) {
+            // The same statement is used twice at once
+            return st;
+        }
+        cached = new CachedStatement(key, st);
+        statements.put(key, cached);
+        return cached.proxy;
+    }
+
+    /**
+     * Returns all statements still in use back to the cache. This is called
+     * when the connection is returned to the pool.
+     */
+    void releaseAll() {
+        for (CachedStatement cached : new ArrayList<>(statements.values())) {
+            if (cached.inUse) {
+                cached.release();
+            }
+        }
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    void closeAll() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (it.hasNext()) {
+            CachedStatement cached = it.next();
+            it.remove();
+            cached.closePhysical();
+        }
+    }
+
+    /**
+     * Returns number of cached statements.
+     */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Physical statement stored in the cache together with its proxy handed
+     * out to the callers.
+     */
+    private class CachedStatement implements InvocationHandler {
+
+        private final String key;
+        private final PreparedStatement physical;
+        private final PreparedStatement proxy;
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private final int defaultQueryTimeout;
+        private final List<ResultSet> resultSets = new ArrayList<>();
+        private boolean inUse = true;
+        private boolean evicted;
+        private boolean modified;
+
+        CachedStatement(String key, PreparedStatement physical) throws SQLException {
+            this.key = key;
+            this.physical = physical;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+            this.defaultFetchSize = physical.getFetchSize();
+            this.defaultMaxRows = physical.getMaxRows();
+            this.defaultQueryTimeout = physical.getQueryTimeout();
+        }
+
+        /**
+         * Marks the statement as removed from the cache. The physical
+         * statement is closed immediately or when the caller closes it.
+         */
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closePhysical();
+            }
+        }
+
+        /**
+         * Restores default state of the statement and returns it to the cache.
+         */
+        void release() {
+            inUse = false;
+            if (evicted) {
+                closePhysical();
+                return;
+            }
+            try {
+                for (ResultSet rs : resultSets) {
+                    rs.close();
+                }
+                resultSets.clear();
+                physical.clearParameters();
+                physical.clearBatch();
+                physical.clearWarnings();
+                if (modified) {
+                    physical.setFetchSize(defaultFetchSize);
+                    physical.setMaxRows(defaultMaxRows);
+                    physical.setQueryTimeout(defaultQueryTimeout);
+                    modified = false;
+                }
+            } catch (SQLException ex) {
+                logger.log(Level.FINE, "Failed to reset cached statement", ex);
+                statements.remove(key);
+                closePhysical();
+            }
+        }
+
+        void closePhysical() {
+            evicted = true;
+            try {
+                physical.close();
+            } catch (SQLException ex) {
+                logger.log(Level.FINE, "Failed to close cached statement", ex);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || physical.isClosed();
+                case "getConnection":
+                    return connectionProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + physical + "]";
+                default:
+                    if (!inUse) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    if (method.getDeclaringClass() == Statement.class && method.getName().startsWith("set")) {
+                        onStatementSetting(method.getName());
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(physical, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                    if (result instanceof ResultSet) {
+                        resultSets.add((ResultSet) result);
+                    }
+                    return result;
+            }
+        }
+
+        private void onStatementSetting(String methodName) {
+            switch (methodName) {
+                case "setFetchSize":
+                case "setMaxRows":
+                case "setQueryTimeout":
+                    // restored when the statement is released
+                    modified = true;
+                    break;
+                default:
+                    // other settings are not restored, so the statement
+                    // could not be reused
+                    if (!evicted) {
+                        statements.remove(key);
+                        evicted = true;
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link BodyManager}. Each method starts the
+ * operation of the same name in the background and returns future completed
+ * with its result. When the operation throws an exception, the future is
+ * completed exceptionally with this exception.
+ */
+public interface AsyncBodyManager {
+
+    /**
+     * @see BodyManager#createBody(Body)
+     */
+    CompletableFuture<Void> createBody(Body body);
+
+    /**
+     * @see BodyManager#createBodies(Collection)
+     */
+    CompletableFuture<Void> createBodies(Collection<Body> bodies);
+
+    /**
+     * @see BodyManager#getBody(Long)
+     */
+    CompletableFuture<Body> getBody(Long id);
+
+    /**
+     * @see BodyManager#updateBody(Body)
+     */
+    CompletableFuture<Void> updateBody(Body body);
+
+    /**
+     * @see BodyManager#deleteBody(Body)
+     */
+    CompletableFuture<Void> deleteBody(Body body);
+
+    /**
+     * @see BodyManager#findAllBodies()
+     */
+    CompletableFuture<List<Body>> findAllBodies();
+
+    /**
+     * @see BodyManager#findBodies(Long, int)
+     */
+    CompletableFuture<List<Body>> findBodies(Long afterId, int limit);
+
+    /**
+     * @see BodyManager#findBodiesByName(String, int)
+     */
+    CompletableFuture<List<Body>> findBodiesByName(String prefix, int limit);
+
+    /**
+     * @see BodyManager#findBodies(BodyQuery)
+     */
+    CompletableFuture<List<Body>> findBodies(BodyQuery query);
+}
@@ -0,0 +1,73 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static cz.muni.fi.pv168.common.AsyncExecutors.runAsync;
+import static cz.muni.fi.pv168.common.AsyncExecutors.supplyAsync;
+
+/**
+ * This class implements AsyncBodyManager by running operations of blocking
+ * BodyManager by given executor.
+ *
+ * @see cz.muni.fi.pv168.common.AsyncExecutors#newBoundedExecutor(int)
+ */
+public class AsyncBodyManagerImpl implements AsyncBodyManager {
+
+    private final BodyManager delegate;
+    private final Executor executor;
+
+    public AsyncBodyManagerImpl(BodyManager delegate, Executor executor) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> createBody(Body body) {
+        return runAsync(() -> delegate.createBody(body), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> createBodies(Collection<Body> bodies) {
+        return runAsync(() -> delegate.createBodies(bodies), executor);
+    }
+
+    @Override
+    public CompletableFuture<Body> getBody(Long id) {
+        return supplyAsync(() -> delegate.getBody(id), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateBody(Body body) {
+        return runAsync(() -> delegate.updateBody(body), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteBody(Body body) {
+        return runAsync(() -> delegate.deleteBody(body), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findAllBodies() {
+        return supplyAsync(delegate::findAllBodies, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findBodies(Long afterId, int limit) {
+        return supplyAsync(() -> delegate.findBodies(afterId, limit), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findBodiesByName(String prefix, int limit) {
+        return supplyAsync(() -> delegate.findBodiesByName(prefix, limit), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findBodies(BodyQuery query) {
+        return supplyAsync(() -> delegate.findBodies(query), executor);
+    }
+}
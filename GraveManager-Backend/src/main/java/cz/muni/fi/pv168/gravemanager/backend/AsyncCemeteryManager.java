@@ -0,0 +1,70 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link CemeteryManager}. Each method starts the
+ * operation of the same name in the background and returns future completed
+ * with its result. When the operation throws an exception, the future is
+ * completed exceptionally with this exception.
+ */
+public interface AsyncCemeteryManager {
+
+    /**
+     * @see CemeteryManager#findGraveWithBody(Body)
+     */
+    CompletableFuture<Grave> findGraveWithBody(Body body);
+
+    /**
+     * @see CemeteryManager#findBodiesInGrave(Grave)
+     */
+    CompletableFuture<List<Body>> findBodiesInGrave(Grave grave);
+
+    /**
+     * @see CemeteryManager#findAllGravesWithBodies()
+     */
+    CompletableFuture<Map<Grave, List<Body>>> findAllGravesWithBodies();
+
+    /**
+     * @see CemeteryManager#findGravesWithBodies(Collection)
+     */
+    CompletableFuture<Map<Grave, List<Body>>> findGravesWithBodies(Collection<Long> graveIds);
+
+    /**
+     * @see CemeteryManager#findUnburiedBodies()
+     */
+    CompletableFuture<List<Body>> findUnburiedBodies();
+
+    /**
+     * @see CemeteryManager#findEmptyGraves()
+     */
+    CompletableFuture<List<Grave>> findEmptyGraves();
+
+    /**
+     * @see CemeteryManager#findGravesWithSomeFreeSpace()
+     */
+    CompletableFuture<List<Grave>> findGravesWithSomeFreeSpace();
+
+    /**
+     * @see CemeteryManager#findNearestGravesWithFreeSpace(int, int, int)
+     */
+    CompletableFuture<List<Grave>> findNearestGravesWithFreeSpace(int row, int col, int k);
+
+    /**
+     * @see CemeteryManager#putBodyIntoGrave(Body, Grave)
+     */
+    CompletableFuture<Void> putBodyIntoGrave(Body body, Grave grave);
+
+    /**
+     * @see CemeteryManager#putBodiesIntoGrave(List, Grave)
+     */
+    CompletableFuture<Void> putBodiesIntoGrave(List<Body> bodies, Grave grave);
+
+    /**
+     * @see CemeteryManager#removeBodyFromGrave(Body, Grave)
+     */
+    CompletableFuture<Void> removeBodyFromGrave(Body body, Grave grave);
+}
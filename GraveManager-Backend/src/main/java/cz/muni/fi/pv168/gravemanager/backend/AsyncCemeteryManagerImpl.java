@@ -0,0 +1,84 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static cz.muni.fi.pv168.common.AsyncExecutors.runAsync;
+import static cz.muni.fi.pv168.common.AsyncExecutors.supplyAsync;
+
+/**
+ * This class implements AsyncCemeteryManager by running operations of
+ * blocking CemeteryManager by given executor.
+ *
+ * @see cz.muni.fi.pv168.common.AsyncExecutors#newBoundedExecutor(int)
+ */
+public class AsyncCemeteryManagerImpl implements AsyncCemeteryManager {
+
+    private final CemeteryManager delegate;
+    private final Executor executor;
+
+    public AsyncCemeteryManagerImpl(CemeteryManager delegate, Executor executor) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Grave> findGraveWithBody(Body body) {
+        return supplyAsync(() -> delegate.findGraveWithBody(body), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findBodiesInGrave(Grave grave) {
+        return supplyAsync(() -> delegate.findBodiesInGrave(grave), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<Grave, List<Body>>> findAllGravesWithBodies() {
+        return supplyAsync(delegate::findAllGravesWithBodies, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<Grave, List<Body>>> findGravesWithBodies(Collection<Long> graveIds) {
+        return supplyAsync(() -> delegate.findGravesWithBodies(graveIds), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findUnburiedBodies() {
+        return supplyAsync(delegate::findUnburiedBodies, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findEmptyGraves() {
+        return supplyAsync(delegate::findEmptyGraves, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findGravesWithSomeFreeSpace() {
+        return supplyAsync(delegate::findGravesWithSomeFreeSpace, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findNearestGravesWithFreeSpace(int row, int col, int k) {
+        return supplyAsync(() -> delegate.findNearestGravesWithFreeSpace(row, col, k), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> putBodyIntoGrave(Body body, Grave grave) {
+        return runAsync(() -> delegate.putBodyIntoGrave(body, grave), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> putBodiesIntoGrave(List<Body> bodies, Grave grave) {
+        return runAsync(() -> delegate.putBodiesIntoGrave(bodies, grave), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeBodyFromGrave(Body body, Grave grave) {
+        return runAsync(() -> delegate.removeBodyFromGrave(body, grave), executor);
+    }
+}
@@ -0,0 +1,59 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link GraveManager}. Each method starts the
+ * operation of the same name in the background and returns future completed
+ * with its result. When the operation throws an exception, the future is
+ * completed exceptionally with this exception.
+ */
+public interface AsyncGraveManager {
+
+    /**
+     * @see GraveManager#createGrave(Grave)
+     */
+    CompletableFuture<Void> createGrave(Grave grave);
+
+    /**
+     * @see GraveManager#createGraves(Collection)
+     */
+    CompletableFuture<Void> createGraves(Collection<Grave> graves);
+
+    /**
+     * @see GraveManager#getGrave(Long)
+     */
+    CompletableFuture<Grave> getGrave(Long id);
+
+    /**
+     * @see GraveManager#updateGrave(Grave)
+     */
+    CompletableFuture<Void> updateGrave(Grave grave);
+
+    /**
+     * @see GraveManager#deleteGrave(Grave)
+     */
+    CompletableFuture<Void> deleteGrave(Grave grave);
+
+    /**
+     * @see GraveManager#findAllGraves()
+     */
+    CompletableFuture<List<Grave>> findAllGraves();
+
+    /**
+     * @see GraveManager#findGraves(Long, int)
+     */
+    CompletableFuture<List<Grave>> findGraves(Long afterId, int limit);
+
+    /**
+     * @see GraveManager#findGravesInRegion(int, int, int, int)
+     */
+    CompletableFuture<List<Grave>> findGravesInRegion(int rowFrom, int rowTo, int colFrom, int colTo);
+
+    /**
+     * @see GraveManager#findGraveAt(int, int)
+     */
+    CompletableFuture<Grave> findGraveAt(int row, int col);
+}
@@ -0,0 +1,73 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static cz.muni.fi.pv168.common.AsyncExecutors.runAsync;
+import static cz.muni.fi.pv168.common.AsyncExecutors.supplyAsync;
+
+/**
+ * This class implements AsyncGraveManager by running operations of blocking
+ * GraveManager by given executor.
+ *
+ * @see cz.muni.fi.pv168.common.AsyncExecutors#newBoundedExecutor(int)
+ */
+public class AsyncGraveManagerImpl implements AsyncGraveManager {
+
+    private final GraveManager delegate;
+    private final Executor executor;
+
+    public AsyncGraveManagerImpl(GraveManager delegate, Executor executor) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> createGrave(Grave grave) {
+        return runAsync(() -> delegate.createGrave(grave), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> createGraves(Collection<Grave> graves) {
+        return runAsync(() -> delegate.createGraves(graves), executor);
+    }
+
+    @Override
+    public CompletableFuture<Grave> getGrave(Long id) {
+        return supplyAsync(() -> delegate.getGrave(id), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateGrave(Grave grave) {
+        return runAsync(() -> delegate.updateGrave(grave), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteGrave(Grave grave) {
+        return runAsync(() -> delegate.deleteGrave(grave), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findAllGraves() {
+        return supplyAsync(delegate::findAllGraves, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findGraves(Long afterId, int limit) {
+        return supplyAsync(() -> delegate.findGraves(afterId, limit), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findGravesInRegion(int rowFrom, int rowTo, int colFrom, int colTo) {
+        return supplyAsync(() -> delegate.findGravesInRegion(rowFrom, rowTo, colFrom, colTo), executor);
+    }
+
+    @Override
+    public CompletableFuture<Grave> findGraveAt(int row, int col) {
+        return supplyAsync(() -> delegate.findGraveAt(row, col), executor);
+    }
+}
@@ -68,6 +68,23 @@ public class Body {
         this.vampire = vampire;
     }
 
+    /**
+     * Creates copy of this body. This is used by in-memory indexes to make
+     * sure that their content could not be modified by the caller.
+     *
+     * @return new body with the same attributes
+     */
+    Body copy() {
+        Body result = new Body();
+        result.setId(id);
+        result.setName(name);
+        result.setGender(gender);
+        result.setBorn(born);
+        result.setDied(died);
+        result.setVampire(vampire);
+        return result;
+    }
+
     @Override
     public String toString() {
         return "Body{"
@@ -3,7 +3,9 @@ package cz.muni.fi.pv168.gravemanager.backend;
 import cz.muni.fi.pv168.common.IllegalEntityException;
 import cz.muni.fi.pv168.common.ServiceFailureException;
 import cz.muni.fi.pv168.common.ValidationException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This service allows to manipulate with bodies.
@@ -25,6 +27,21 @@ public interface BodyManager {
      * @throws ServiceFailureException when db operation fails.
      */
     void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException;
+
+    /**
+     * Stores all given bodies into database in single transaction. Ids for 
+     * the new bodies are automatically generated and stored into id attribute
+     * of each body. Either all bodies are created or none of them.
+     * 
+     * @param bodies bodies to be created.
+     * @throws IllegalArgumentException when bodies collection is null or 
+     * contains null.
+     * @throws IllegalEntityException when some body has already assigned id.
+     * @throws ValidationException when some body breaks validation rules (see
+     * {@link #createBody(Body)}).
+     * @throws ServiceFailureException when db operation fails.
+     */
+    void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException;
     
     /**
      * Returns body with given id.
@@ -66,5 +83,63 @@ public interface BodyManager {
      * @throws ServiceFailureException when db operation fails.
      */
     List<Body> findAllBodies() throws ServiceFailureException;
+
+    /**
+     * Returns stream of all bodies in the database. Bodies are fetched from 
+     * the database lazily as the stream is consumed, so the memory consumption
+     * does not depend on the number of bodies. The stream holds the database
+     * connection until it is closed, therefore it must be always closed
+     * (preferably with try-with-resources statement).
+     * 
+     * @return stream of all bodies in database, which must be closed after use.
+     * @throws ServiceFailureException when db operation fails, including
+     * failures during consuming the stream.
+     */
+    Stream<Body> streamAllBodies() throws ServiceFailureException;
+
+    /**
+     * Returns one page of bodies ordered by id. The page contains at most 
+     * limit bodies with id greater than afterId. To get the first page, use
+     * null as afterId; to get the next page, use id of the last body of 
+     * the previous page. The cost of fetching the page does not depend on 
+     * its position.
+     * 
+     * @param afterId id of the last body of previous page or null for the
+     * first page.
+     * @param limit maximal number of bodies in the page.
+     * @return list of at most limit bodies ordered by id.
+     * @throws IllegalArgumentException when limit is not positive number.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    List<Body> findBodies(Long afterId, int limit) throws ServiceFailureException;
+
+    /**
+     * Returns bodies whose name contains a word starting with given text. The
+     * text can span more words, e.g. "jan nov" finds "Jan Novák". The search
+     * ignores case, diacritics and punctuation. Bodies are ordered by the part
+     * of their normalized name (see {@link BodyNameIndex#normalize(String)})
+     * starting at the first matching word and by id, e.g. "Jan Novák" is
+     * before "Novotný" when searching "nov". When more than limit bodies
+     * match, the first ones in this order are returned.
+     * 
+     * @param prefix searched text.
+     * @param limit maximal number of returned bodies.
+     * @return list of at most limit matching bodies in the order given above.
+     * @throws IllegalArgumentException when prefix is null or contains no 
+     * letters or digits, or when limit is not positive number.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    List<Body> findBodiesByName(String prefix, int limit) throws ServiceFailureException;
+
+    /**
+     * Returns bodies matching given query ordered by id. The query is
+     * evaluated by the database, so only matching bodies are loaded.
+     * 
+     * @param query criteria of the bodies.
+     * @return list of matching bodies ordered by id.
+     * @throws IllegalArgumentException when query is null.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    List<Body> findBodies(BodyQuery query) throws ServiceFailureException;
     
 }
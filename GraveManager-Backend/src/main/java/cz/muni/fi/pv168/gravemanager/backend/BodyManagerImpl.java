@@ -10,7 +10,11 @@ import java.sql.*;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
 /**
  * This class implements BodyManager service.
@@ -19,8 +23,16 @@ import java.util.List;
  */
 public class BodyManagerImpl implements BodyManager {
 
+    private static final int BATCH_SIZE = 1000;
+    private static final int DEFAULT_FETCH_SIZE = 100;
+
+    // SQL of body queries by their shape (see BodyQuery#shape()), there are
+    // at most 2^9 shapes, so the map does not need to be bounded
+    private static final ConcurrentMap<Integer, String> QUERY_SQL = new ConcurrentHashMap<>();
+
     private final DataSource dataSource;
     private final Clock clock;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     @SuppressWarnings("WeakerAccess")
     public BodyManagerImpl(DataSource dataSource, Clock clock) {
@@ -28,6 +40,17 @@ public class BodyManagerImpl implements BodyManager {
         this.clock = clock;
     }
 
+    /**
+     * Sets number of rows fetched from the database at once when the bodies
+     * are streamed (see {@link #streamAllBodies()}).
+     *
+     * @param fetchSize number of rows, zero means the driver default
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) throw new IllegalArgumentException("fetchSize is negative");
+        this.fetchSize = fetchSize;
+    }
+
     @Override
     public List<Body> findAllBodies() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
@@ -38,6 +61,105 @@ public class BodyManagerImpl implements BodyManager {
         }
     }
 
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        Connection conn = null;
+        try {
+            conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement("SELECT id, name, gender, born, died, vampire FROM Body");
+            st.setFetchSize(fetchSize);
+            return DBUtils.stream(conn, st, BodyManagerImpl::rowToBody);
+        } catch (SQLException ex) {
+            DBUtils.closeQuietly(conn);
+            throw new ServiceFailureException("Error when streaming all bodies from DB", ex);
+        }
+    }
+
+    @Override
+    public List<Body> findBodies(Long afterId, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, name, gender, born, died, vampire FROM Body WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY")) {
+            st.setLong(1, afterId == null ? Long.MIN_VALUE : afterId);
+            st.setInt(2, limit);
+            return executeQueryForMultipleBodies(st);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting page of bodies after id = " + afterId + " from DB", ex);
+        }
+    }
+
+    @Override
+    public List<Body> findBodiesByName(String prefix, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        // normalized text contains only letters, digits and spaces, so it needs no escaping
+        String normalized = BodyNameIndex.normalizeQuery(prefix);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, name, gender, born, died, vampire FROM Body WHERE nameKey LIKE ? "
+                     + "ORDER BY SUBSTR(nameKey, LOCATE(CAST(? AS VARCHAR(511)), nameKey)), id FETCH FIRST ? ROWS ONLY")) {
+            st.setString(1, "% " + normalized + "%");
+            st.setString(2, " " + normalized);
+            st.setInt(3, limit);
+            return executeQueryForMultipleBodies(st);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when searching bodies by name in DB", ex);
+        }
+    }
+
+    @Override
+    public List<Body> findBodies(BodyQuery query) throws ServiceFailureException {
+        if (query == null) throw new IllegalArgumentException("query is null");
+        String sql = QUERY_SQL.computeIfAbsent(query.shape(), BodyManagerImpl::compileQuery);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(sql)) {
+            // parameters are bound in the same order as the conditions are added by compileQuery
+            int index = 1;
+            if (query.getGender() != null) {
+                st.setString(index++, toString(query.getGender()));
+            }
+            if (query.getVampire() != null) {
+                st.setBoolean(index++, query.getVampire());
+            }
+            if (query.getBornFrom() != null) {
+                st.setDate(index++, toSqlDate(query.getBornFrom()));
+            }
+            if (query.getBornTo() != null) {
+                st.setDate(index++, toSqlDate(query.getBornTo()));
+            }
+            if (query.getDiedFrom() != null) {
+                st.setDate(index++, toSqlDate(query.getDiedFrom()));
+            }
+            if (query.getDiedTo() != null) {
+                st.setDate(index++, toSqlDate(query.getDiedTo()));
+            }
+            if (query.getNamePrefix() != null) {
+                st.setString(index, "% " + query.getNamePrefix() + "%");
+            }
+            return executeQueryForMultipleBodies(st);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when searching bodies by " + query + " in DB", ex);
+        }
+    }
+
+    static String compileQuery(int shape) {
+        List<String> conditions = new ArrayList<>();
+        if ((shape & BodyQuery.GENDER) != 0) conditions.add("gender = ?");
+        if ((shape & BodyQuery.VAMPIRE) != 0) conditions.add("vampire = ?");
+        if ((shape & BodyQuery.BORN_FROM) != 0) conditions.add("born >= ?");
+        if ((shape & BodyQuery.BORN_TO) != 0) conditions.add("born <= ?");
+        if ((shape & BodyQuery.DIED_FROM) != 0) conditions.add("died >= ?");
+        if ((shape & BodyQuery.DIED_TO) != 0) conditions.add("died <= ?");
+        if ((shape & BodyQuery.NAME_PREFIX) != 0) conditions.add("nameKey LIKE ?");
+        if ((shape & BodyQuery.BURIED) != 0) conditions.add("graveId IS NOT NULL");
+        if ((shape & BodyQuery.UNBURIED) != 0) conditions.add("graveId IS NULL");
+        StringBuilder sql = new StringBuilder("SELECT id, name, gender, born, died, vampire FROM Body");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return sql.append(" ORDER BY id").toString();
+    }
+
     @Override
     public void createBody(Body body) throws ServiceFailureException {
         validate(body);
@@ -45,7 +167,7 @@ public class BodyManagerImpl implements BodyManager {
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement st = conn.prepareStatement(
-                     "INSERT INTO Body (name,gender,born,died,vampire) VALUES (?,?,?,?,?)",
+                     "INSERT INTO Body (name,gender,born,died,vampire,nameKey) VALUES (?,?,?,?,?,?)",
                      Statement.RETURN_GENERATED_KEYS)) {
             st.setString(1, body.getName());
             st.setString(2, toString(body.getGender()));
@@ -58,6 +180,7 @@ public class BodyManagerImpl implements BodyManager {
             st.setDate(3, toSqlDate(body.getBorn()));
             st.setDate(4, toSqlDate(body.getDied()));
             st.setBoolean(5, body.isVampire());
+            st.setString(6, BodyNameIndex.nameKey(body.getName()));
 
             st.executeUpdate();
             body.setId(DBUtils.getId(st.getGeneratedKeys()));
@@ -67,6 +190,63 @@ public class BodyManagerImpl implements BodyManager {
         }
     }
 
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        LocalDate today = LocalDate.now(clock);
+        for (Body body : bodies) {
+            validate(body, today);
+            if (body.getId() != null) throw new IllegalEntityException("body id is already set");
+        }
+        if (bodies.isEmpty()) return;
+
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement(
+                    "INSERT INTO Body (name,gender,born,died,vampire,nameKey) VALUES (?,?,?,?,?,?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                // Start transaction so that either all bodies are inserted or none of them
+                conn.setAutoCommit(false);
+                // Keys generated for the batch are contiguous only when nobody else inserts bodies
+                DBUtils.lockTableExclusively(conn, "Body");
+                List<Body> batch = new ArrayList<>(Math.min(bodies.size(), BATCH_SIZE));
+                for (Body body : bodies) {
+                    st.setString(1, body.getName());
+                    st.setString(2, toString(body.getGender()));
+                    st.setDate(3, toSqlDate(body.getBorn()));
+                    st.setDate(4, toSqlDate(body.getDied()));
+                    st.setBoolean(5, body.isVampire());
+                    st.setString(6, BodyNameIndex.nameKey(body.getName()));
+                    st.addBatch();
+                    batch.add(body);
+                    if (batch.size() == BATCH_SIZE) {
+                        executeInsertBatch(st, batch);
+                    }
+                }
+                executeInsertBatch(st, batch);
+                conn.commit();
+            } catch (Exception ex) {
+                //something failed, let's rollback and forget the ids of bodies which have not been stored
+                conn.rollback();
+                bodies.forEach(body -> body.setId(null));
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when inserting bodies into db", ex);
+        }
+    }
+
+    private static void executeInsertBatch(PreparedStatement st, List<Body> batch) throws SQLException {
+        if (batch.isEmpty()) return;
+        long[] ids = DBUtils.executeInsertBatch(st, batch.size());
+        for (int i = 0; i < ids.length; i++) {
+            batch.get(i).setId(ids[i]);
+        }
+        batch.clear();
+    }
+
     @Override
     public Body getBody(Long id) throws ServiceFailureException {
         if (id == null) throw new IllegalArgumentException("id is null");
@@ -93,13 +273,14 @@ public class BodyManagerImpl implements BodyManager {
         if (body.getId() == null) throw new IllegalEntityException("body id is null");
 
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement st = conn.prepareStatement("UPDATE Body SET name = ?, gender = ?, born = ?, died = ?, vampire = ? WHERE id = ?")) {
+             PreparedStatement st = conn.prepareStatement("UPDATE Body SET name = ?, gender = ?, born = ?, died = ?, vampire = ?, nameKey = ? WHERE id = ?")) {
             st.setString(1, body.getName());
             st.setString(2, toString(body.getGender()));
             st.setDate(3, toSqlDate(body.getBorn()));
             st.setDate(4, toSqlDate(body.getDied()));
             st.setBoolean(5, body.isVampire());
-            st.setLong(6, body.getId());
+            st.setString(6, BodyNameIndex.nameKey(body.getName()));
+            st.setLong(7, body.getId());
 
             int count = st.executeUpdate();
             if (count != 1) throw new IllegalEntityException("updated " + count + " body records instead of 1");
@@ -114,11 +295,27 @@ public class BodyManagerImpl implements BodyManager {
         if (body == null) throw new IllegalArgumentException("body is null");
         if (body.getId() == null) throw new IllegalEntityException("body id is null");
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement st = conn.prepareStatement("DELETE FROM Body WHERE id = ?")) {
-            st.setLong(1, body.getId());
-            int count = st.executeUpdate();
-            if (count != 1) throw new IllegalEntityException("deleted " + count + " instead of 1 body");
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement occupancySt = conn.prepareStatement(
+                    "UPDATE Grave SET occupied = occupied - 1 WHERE id = (SELECT graveId FROM Body WHERE id = ?)");
+                 PreparedStatement st = conn.prepareStatement("DELETE FROM Body WHERE id = ?")) {
+                // Start transaction so that deleting the body and updating occupancy of its grave are atomic
+                conn.setAutoCommit(false);
+                //release the place in the grave, if the body is buried
+                occupancySt.setLong(1, body.getId());
+                occupancySt.executeUpdate();
+                st.setLong(1, body.getId());
+                int count = st.executeUpdate();
+                if (count != 1) throw new IllegalEntityException("deleted " + count + " instead of 1 body");
+                conn.commit();
+            } catch (Exception ex) {
+                //something failed, let's rollback
+                conn.rollback();
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException ex) {
             throw new ServiceFailureException("Error when deleting body from the db", ex);
         }
@@ -134,7 +331,7 @@ public class BodyManagerImpl implements BodyManager {
         }
     }
 
-    static private Body rowToBody(ResultSet rs) throws SQLException {
+    static Body rowToBody(ResultSet rs) throws SQLException {
         Body body = new Body();
         body.setId(rs.getLong("id"));
         body.setName(rs.getString("name"));
@@ -146,6 +343,10 @@ public class BodyManagerImpl implements BodyManager {
     }
 
     private void validate(Body body) {
+        validate(body, LocalDate.now(clock));
+    }
+
+    static void validate(Body body, LocalDate today) {
         if (body == null) {
             throw new IllegalArgumentException("grave is null");
         }
@@ -158,7 +359,6 @@ public class BodyManagerImpl implements BodyManager {
         if (body.getBorn() != null && body.getDied() != null && body.getDied().isBefore(body.getBorn())) {
             throw new ValidationException("died is before born");
         }
-        LocalDate today = LocalDate.now(clock);
         if (body.getBorn() != null && body.getBorn().isAfter(today)) {
             throw new ValidationException("born is in future");
         }
@@ -167,7 +367,7 @@ public class BodyManagerImpl implements BodyManager {
         }
     }
 
-    private static Gender toGender(String gender) {
+    static Gender toGender(String gender) {
         return gender == null ? null : Gender.valueOf(gender);
     }
 
@@ -179,7 +379,7 @@ public class BodyManagerImpl implements BodyManager {
         return localDate == null ? null : Date.valueOf(localDate);
     }
 
-    private static LocalDate toLocalDate(Date date) {
+    static LocalDate toLocalDate(Date date) {
         return date == null ? null : date.toLocalDate();
     }
 
@@ -0,0 +1,263 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of bodies by their name. Names are normalized (see
+ * {@link #normalize(String)}), so the search ignores case, diacritics and
+ * punctuation. The index is sorted map containing the part of the normalized
+ * name starting at each of its words, so the bodies whose name contains
+ * words starting with given text are found by single range lookup. Found
+ * bodies are ordered by the part of their normalized name starting at the
+ * first matching word and by id, in the same way as
+ * {@link BodyManagerImpl#findBodiesByName(String, int)} orders them, so the
+ * lookup stops after the requested number of bodies.
+ *
+ * The index stores its own copies of bodies, so it is not affected by later
+ * modifications of bodies passed to it. This class is thread safe.
+ */
+public class BodyNameIndex {
+
+    // separates the indexed text from body id in the keys, it is lower than
+    // any character of normalized name
+    private static final char ID_SEPARATOR = '\u0000';
+    // body id is stored in the keys as fixed number of characters, so the
+    // keys with the same text are ordered by id as numbers
+    private static final int ID_LENGTH = 4;
+
+    private final NavigableMap<String, Entry> entries = new TreeMap<>();
+    private final Map<Long, Entry> entriesById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Normalizes name for searching. Letters are converted to lower case and
+     * diacritics are removed, other characters than letters and digits are
+     * replaced by single space between words, e.g. "Novák-Dvořák, Jiří"
+     * becomes "novak dvorak jiri". The letters are decomposed for removing
+     * the diacritics and composed again, so e.g. Hangul syllables are not
+     * replaced by more letters. The normalized name is at most twice as long
+     * as the name, because some CJK compatibility ideographs are replaced by
+     * characters encoded as surrogate pairs.
+     *
+     * @param name name to be normalized
+     * @return normalized name, which is empty when the name contains no
+     * letters or digits
+     */
+    public static String normalize(String name) {
+        if (name == null) throw new IllegalArgumentException("name is null");
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder result = new StringBuilder(decomposed.length());
+        boolean separator = false;
+        for (int i = 0; i < decomposed.length(); ) {
+            int c = decomposed.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.isLetterOrDigit(c)) {
+                if (separator && result.length() > 0) {
+                    result.append(' ');
+                }
+                separator = false;
+                result.appendCodePoint(Character.toLowerCase(c));
+            } else if (!isMark(c)) {
+                separator = true;
+            }
+        }
+        return Normalizer.normalize(result, Normalizer.Form.NFC);
+    }
+
+    /**
+     * Returns key which is stored in the database together with the body
+     * name, so that the database can search names in the same way as this
+     * index. The key is normalized name prefixed with space, so each word of
+     * the name is preceded by space.
+     *
+     * @param name name of the body
+     * @return search key of the name
+     */
+    static String nameKey(String name) {
+        return " " + normalize(name);
+    }
+
+    /**
+     * Normalizes text searched by {@link #findByName(String, int)}.
+     *
+     * @param prefix searched text
+     * @return normalized text
+     * @throws IllegalArgumentException when the text is null or contains no
+     * letters or digits
+     */
+    static String normalizeQuery(String prefix) {
+        if (prefix == null) throw new IllegalArgumentException("name prefix is null");
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("name prefix contains no letters or digits");
+        }
+        return normalized;
+    }
+
+    private static boolean isMark(int c) {
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    /**
+     * Adds body into the index. If the index already contains body with the
+     * same id, it is replaced, so this method is used also for updates.
+     *
+     * @param body body to be indexed
+     * @throws IllegalArgumentException when body, its id or its name is null
+     */
+    public void put(Body body) {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalArgumentException("body id is null");
+        if (body.getName() == null) throw new IllegalArgumentException("body name is null");
+        Entry entry = new Entry(body.copy());
+        List<String> keys = keys(entry);
+        lock.writeLock().lock();
+        try {
+            removeEntries(entriesById.put(entry.body.getId(), entry));
+            for (String key : keys) {
+                entries.put(key, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds body into the index, unless the index already contains body with
+     * the same id.
+     *
+     * @param body body to be indexed
+     * @return true when the body was added
+     * @throws IllegalArgumentException when body, its id or its name is null
+     */
+    public boolean putIfAbsent(Body body) {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalArgumentException("body id is null");
+        if (body.getName() == null) throw new IllegalArgumentException("body name is null");
+        Entry entry = new Entry(body.copy());
+        List<String> keys = keys(entry);
+        lock.writeLock().lock();
+        try {
+            if (entriesById.putIfAbsent(entry.body.getId(), entry) != null) {
+                return false;
+            }
+            for (String key : keys) {
+                entries.put(key, entry);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes body with given id from the index.
+     *
+     * @param id id of the body to be removed
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeEntries(entriesById.remove(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns bodies whose name contains a word starting with given text. The
+     * text can also span more words, e.g. "jan nov" finds "Jan Novák", and
+     * it is normalized in the same way as names.
+     *
+     * @param prefix searched text
+     * @param limit maximal number of returned bodies
+     * @return copies of at most limit bodies ordered by the part of their
+     * normalized name starting at the first matching word and by id
+     * @throws IllegalArgumentException when prefix is null or contains no
+     * letters or digits, or when limit is not positive number
+     */
+    public List<Body> findByName(String prefix, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        String normalized = normalizeQuery(prefix);
+        String searched = ' ' + normalized;
+        List<Body> result = new ArrayList<>(Math.min(limit, 16));
+        lock.readLock().lock();
+        try {
+            // the entries are already in the result order, the body matches
+            // more times when more of its words start with the text, but only
+            // the entry of the first matching word is taken
+            for (Map.Entry<String, Entry> e
+                    : entries.subMap(normalized, true, normalized + Character.MAX_VALUE, false).entrySet()) {
+                String nameKey = e.getValue().nameKey;
+                int wordStart = nameKey.length() - (e.getKey().length() - ID_LENGTH - 1);
+                if (nameKey.indexOf(searched) + 1 == wordStart) {
+                    result.add(e.getValue().body.copy());
+                    if (result.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns number of indexed bodies.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entriesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeEntries(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (String key : keys(entry)) {
+            entries.remove(key);
+        }
+    }
+
+    private static List<String> keys(Entry entry) {
+        // name key starts with space, so each word follows a space
+        String nameKey = entry.nameKey;
+        long id = entry.body.getId();
+        String suffix = new String(new char[] {ID_SEPARATOR,
+            (char) (id >>> 48), (char) (id >>> 32), (char) (id >>> 16), (char) id});
+        List<String> keys = new ArrayList<>();
+        for (int i = 1; i < nameKey.length(); i++) {
+            if (nameKey.charAt(i - 1) == ' ') {
+                keys.add(nameKey.substring(i) + suffix);
+            }
+        }
+        return keys;
+    }
+
+    private static final class Entry {
+
+        private final Body body;
+        private final String nameKey;
+
+        Entry(Body body) {
+            this.body = body;
+            this.nameKey = nameKey(body.getName());
+        }
+    }
+}
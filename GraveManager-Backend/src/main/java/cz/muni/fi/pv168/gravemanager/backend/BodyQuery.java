@@ -0,0 +1,190 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.time.LocalDate;
+
+/**
+ * Criteria for searching bodies with {@link BodyManager#findBodies(BodyQuery)}.
+ * Only bodies matching all specified criteria are found; criteria which are
+ * not specified are not checked, so empty query matches all bodies. Date
+ * ranges are inclusive and either of their bounds can be null, which means
+ * unbounded range; bodies with unknown date never match date range.
+ *
+ * Example:
+ * <pre>
+ * List&lt;Body&gt; vampires = bodyManager.findBodies(new BodyQuery()
+ *         .vampire(true)
+ *         .diedBetween(LocalDate.of(1800, 1, 1), null)
+ *         .buried(false));
+ * </pre>
+ *
+ * This class is not thread safe.
+ */
+public class BodyQuery {
+
+    // bits of the query shape, each combination of them is compiled to different SQL
+    static final int GENDER = 1;
+    static final int VAMPIRE = 1 << 1;
+    static final int BORN_FROM = 1 << 2;
+    static final int BORN_TO = 1 << 3;
+    static final int DIED_FROM = 1 << 4;
+    static final int DIED_TO = 1 << 5;
+    static final int NAME_PREFIX = 1 << 6;
+    static final int BURIED = 1 << 7;
+    static final int UNBURIED = 1 << 8;
+
+    private Gender gender;
+    private Boolean vampire;
+    private LocalDate bornFrom;
+    private LocalDate bornTo;
+    private LocalDate diedFrom;
+    private LocalDate diedTo;
+    private String namePrefix;
+    private Boolean buried;
+
+    /**
+     * Finds only bodies with given gender.
+     *
+     * @param gender gender of the bodies or null for any gender
+     * @return this query
+     */
+    public BodyQuery gender(Gender gender) {
+        this.gender = gender;
+        return this;
+    }
+
+    /**
+     * Finds only vampires or only bodies which are not vampires.
+     *
+     * @param vampire required value of vampire flag or null for both
+     * @return this query
+     */
+    public BodyQuery vampire(Boolean vampire) {
+        this.vampire = vampire;
+        return this;
+    }
+
+    /**
+     * Finds only bodies born in given range.
+     *
+     * @param from the first day of the range or null
+     * @param to the last day of the range or null
+     * @return this query
+     * @throws IllegalArgumentException when from is after to
+     */
+    public BodyQuery bornBetween(LocalDate from, LocalDate to) {
+        checkRange(from, to, "born");
+        this.bornFrom = from;
+        this.bornTo = to;
+        return this;
+    }
+
+    /**
+     * Finds only bodies which died in given range.
+     *
+     * @param from the first day of the range or null
+     * @param to the last day of the range or null
+     * @return this query
+     * @throws IllegalArgumentException when from is after to
+     */
+    public BodyQuery diedBetween(LocalDate from, LocalDate to) {
+        checkRange(from, to, "died");
+        this.diedFrom = from;
+        this.diedTo = to;
+        return this;
+    }
+
+    /**
+     * Finds only bodies whose name contains a word starting with given text,
+     * in the same way as {@link BodyManager#findBodiesByName(String, int)}.
+     *
+     * @param prefix searched text or null for any name
+     * @return this query
+     * @throws IllegalArgumentException when prefix contains no letters or
+     * digits
+     */
+    public BodyQuery namePrefix(String prefix) {
+        this.namePrefix = prefix == null ? null : BodyNameIndex.normalizeQuery(prefix);
+        return this;
+    }
+
+    /**
+     * Finds only bodies placed in some grave or only bodies which are not
+     * placed in any grave.
+     *
+     * @param buried true for buried bodies, false for unburied bodies or null
+     * for both
+     * @return this query
+     */
+    public BodyQuery buried(Boolean buried) {
+        this.buried = buried;
+        return this;
+    }
+
+    Gender getGender() {
+        return gender;
+    }
+
+    Boolean getVampire() {
+        return vampire;
+    }
+
+    LocalDate getBornFrom() {
+        return bornFrom;
+    }
+
+    LocalDate getBornTo() {
+        return bornTo;
+    }
+
+    LocalDate getDiedFrom() {
+        return diedFrom;
+    }
+
+    LocalDate getDiedTo() {
+        return diedTo;
+    }
+
+    /**
+     * Returns normalized name prefix.
+     */
+    String getNamePrefix() {
+        return namePrefix;
+    }
+
+    /**
+     * Returns bit mask of specified criteria. Queries with the same shape
+     * differ only in parameter values, so they can share compiled SQL.
+     */
+    int shape() {
+        int shape = 0;
+        if (gender != null) shape |= GENDER;
+        if (vampire != null) shape |= VAMPIRE;
+        if (bornFrom != null) shape |= BORN_FROM;
+        if (bornTo != null) shape |= BORN_TO;
+        if (diedFrom != null) shape |= DIED_FROM;
+        if (diedTo != null) shape |= DIED_TO;
+        if (namePrefix != null) shape |= NAME_PREFIX;
+        if (buried != null) shape |= buried ? BURIED : UNBURIED;
+        return shape;
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to, String name) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException(name + " range start is after its end");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BodyQuery{"
+                + "gender=" + gender
+                + ", vampire=" + vampire
+                + ", bornFrom=" + bornFrom
+                + ", bornTo=" + bornTo
+                + ", diedFrom=" + diedFrom
+                + ", diedTo=" + diedTo
+                + ", namePrefix=" + namePrefix
+                + ", buried=" + buried
+                + '}';
+    }
+}
@@ -0,0 +1,221 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * This class decorates another GraveManager with bounded LRU cache of graves
+ * used for serving {@link #getGrave(Long)}. Graves created through this
+ * manager are written through to the cache, updated and deleted graves are
+ * removed. Updated graves are not written through, because concurrent updates
+ * of the same grave could store them in different order than they were
+ * written to the database. All other operations are delegated without caching.
+ *
+ * The cache reflects only modifications done through this manager, so all
+ * grave modifications must go through the same instance. Cache stores its own
+ * copies of graves and returns new copy for each call, so the caller can
+ * freely modify returned graves. This class is thread safe.
+ */
+public class CachingGraveManager implements GraveManager {
+
+    private final GraveManager delegate;
+    private final int maxSize;
+    private final Map<Long, Grave> cache;
+
+    // all fields bellow are guarded by cache
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    // incremented with each invalidation, so that graves loaded concurrently
+    // with modification are not stored into the cache
+    private long invalidationCount;
+
+    /**
+     * Creates new caching manager.
+     *
+     * @param delegate manager used for all database operations
+     * @param maxSize maximal number of cached graves
+     */
+    @SuppressWarnings("serial") // the cache map is never serialized
+    public CachingGraveManager(GraveManager delegate, int maxSize) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize is not positive number");
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Long, Grave>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Grave> eldest) {
+                if (size() > CachingGraveManager.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        long invalidationsBeforeLoad;
+        synchronized (cache) {
+            Grave cached = cache.get(id);
+            if (cached != null) {
+                hitCount++;
+                return cached.copy();
+            }
+            missCount++;
+            invalidationsBeforeLoad = invalidationCount;
+        }
+        Grave grave = delegate.getGrave(id);
+        if (grave != null) {
+            synchronized (cache) {
+                if (invalidationsBeforeLoad == invalidationCount) {
+                    cache.put(id, grave.copy());
+                }
+            }
+        }
+        return grave;
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGrave(grave);
+        store(grave);
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGraves(graves);
+        graves.forEach(this::store);
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        try {
+            delegate.updateGrave(grave);
+        } finally {
+            // invalidation after the write also discards graves loaded
+            // concurrently with the update, so the next load sees it
+            invalidate(grave);
+        }
+    }
+
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        try {
+            delegate.deleteGrave(grave);
+        } finally {
+            invalidate(grave);
+        }
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        return delegate.findAllGraves();
+    }
+
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return delegate.streamAllGraves();
+    }
+
+    @Override
+    public List<Grave> findGraves(Long afterId, int limit) throws ServiceFailureException {
+        return delegate.findGraves(afterId, limit);
+    }
+
+    @Override
+    public List<Grave> findGravesInRegion(int rowFrom, int rowTo, int colFrom, int colTo) throws ServiceFailureException {
+        return delegate.findGravesInRegion(rowFrom, rowTo, colFrom, colTo);
+    }
+
+    @Override
+    public Grave findGraveAt(int row, int col) throws ServiceFailureException {
+        return delegate.findGraveAt(row, col);
+    }
+
+    /**
+     * Stores given graves into the cache without accessing the database, e.g.
+     * graves loaded from {@link CemeterySnapshot}. When there are more graves
+     * than the cache size, the last ones are kept.
+     *
+     * @param graves graves which are stored in the database
+     */
+    public void preload(Collection<Grave> graves) {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        graves.forEach(this::store);
+    }
+
+    /**
+     * Removes all graves from the cache. This is useful when the graves were
+     * modified without this manager.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            invalidationCount++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns number of {@link #getGrave(Long)} calls served from the cache.
+     */
+    public long getHitCount() {
+        synchronized (cache) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * Returns number of {@link #getGrave(Long)} calls which had to be
+     * delegated.
+     */
+    public long getMissCount() {
+        synchronized (cache) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Returns number of graves removed from the cache because of size limit.
+     */
+    public long getEvictionCount() {
+        synchronized (cache) {
+            return evictionCount;
+        }
+    }
+
+    /**
+     * Returns number of currently cached graves.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void store(Grave grave) {
+        synchronized (cache) {
+            invalidationCount++;
+            cache.put(grave.getId(), grave.copy());
+        }
+    }
+
+    private void invalidate(Grave grave) {
+        if (grave == null || grave.getId() == null) {
+            return;
+        }
+        synchronized (cache) {
+            invalidationCount++;
+            cache.remove(grave.getId());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.CsvWriter;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class exports all graves together with bodies placed in them. The
+ * data are loaded by single join query and written directly from forward-only
+ * result set, so the memory consumption does not depend on the size of the
+ * cemetery.
+ *
+ * Supported formats are:
+ * <ul>
+ * <li>CSV with header and one record per grave and body; graves without
+ * bodies have empty body columns</li>
+ * <li>JSON Lines with one JSON object per grave, which contains array of its
+ * bodies</li>
+ * </ul>
+ * Text is encoded in UTF-8, dates are in ISO format (yyyy-mm-dd).
+ */
+public class CemeteryExporter {
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] CSV_HEADER = {
+        "graveId", "row", "col", "capacity", "note", "bodyId", "name", "gender", "born", "died", "vampire"
+    };
+
+    /**
+     * Format of exported data.
+     */
+    public enum Format {
+        CSV, JSON_LINES
+    }
+
+    private final DataSource dataSource;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    @SuppressWarnings("WeakerAccess")
+    public CemeteryExporter(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Sets number of rows fetched from the database at once.
+     *
+     * @param fetchSize number of rows, zero means the driver default
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) throw new IllegalArgumentException("fetchSize is negative");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Exports all graves with their bodies.
+     *
+     * @param out output stream, it is flushed but not closed
+     * @param format format of exported data
+     * @param gzip true if the data should be compressed with gzip
+     * @return number of written records (lines without CSV header)
+     * @throws IOException when writing fails
+     * @throws ServiceFailureException when db operation fails
+     */
+    public long export(OutputStream out, Format format, boolean gzip) throws IOException, ServiceFailureException {
+        if (out == null) throw new IllegalArgumentException("out is null");
+        if (format == null) throw new IllegalArgumentException("format is null");
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT Grave.id, row, col, capacity, note, Body.id, name, gender, born, died, vampire " +
+                             "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
+                             "ORDER BY Grave.id, Body.id",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            st.setFetchSize(fetchSize);
+            try (ResultSet rs = st.executeQuery()) {
+                GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        gzip ? gzipOut : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+                long records = format == Format.CSV ? writeCsv(rs, writer) : writeJsonLines(rs, writer);
+                writer.flush();
+                if (gzipOut != null) {
+                    gzipOut.finish();
+                }
+                return records;
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when exporting graves with bodies", ex);
+        }
+    }
+
+    private static long writeCsv(ResultSet rs, Writer writer) throws SQLException, IOException {
+        CsvWriter csvWriter = new CsvWriter(writer);
+        csvWriter.writeRecord(CSV_HEADER);
+        String[] fields = new String[CSV_HEADER.length];
+        long records = 0;
+        while (rs.next()) {
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = rs.getString(i + 1);
+            }
+            csvWriter.writeRecord(fields);
+            records++;
+        }
+        return records;
+    }
+
+    private static long writeJsonLines(ResultSet rs, Writer writer) throws SQLException, IOException {
+        long records = 0;
+        long graveId = 0;
+        boolean firstBody = true;
+        while (rs.next()) {
+            if (records == 0 || rs.getLong(1) != graveId) {
+                if (records > 0) {
+                    writer.write("]}\n");
+                }
+                graveId = rs.getLong(1);
+                writer.write("{\"id\":");
+                writer.write(Long.toString(graveId));
+                writer.write(",\"row\":");
+                writer.write(Integer.toString(rs.getInt(2)));
+                writer.write(",\"col\":");
+                writer.write(Integer.toString(rs.getInt(3)));
+                writer.write(",\"capacity\":");
+                writer.write(Integer.toString(rs.getInt(4)));
+                writer.write(",\"note\":");
+                writeJsonString(writer, rs.getString(5));
+                writer.write(",\"bodies\":[");
+                firstBody = true;
+                records++;
+            }
+            long bodyId = rs.getLong(6);
+            if (rs.wasNull()) {
+                // grave without bodies
+                continue;
+            }
+            if (!firstBody) {
+                writer.write(',');
+            }
+            firstBody = false;
+            writer.write("{\"id\":");
+            writer.write(Long.toString(bodyId));
+            writer.write(",\"name\":");
+            writeJsonString(writer, rs.getString(7));
+            writer.write(",\"gender\":");
+            writeJsonString(writer, rs.getString(8));
+            writer.write(",\"born\":");
+            writeJsonString(writer, toString(rs.getDate(9)));
+            writer.write(",\"died\":");
+            writeJsonString(writer, toString(rs.getDate(10)));
+            writer.write(",\"vampire\":");
+            writer.write(Boolean.toString(rs.getBoolean(11)));
+            writer.write('}');
+        }
+        if (records > 0) {
+            writer.write("]}\n");
+        }
+        return records;
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    private static String toString(Date date) {
+        return date == null ? null : date.toLocalDate().toString();
+    }
+}
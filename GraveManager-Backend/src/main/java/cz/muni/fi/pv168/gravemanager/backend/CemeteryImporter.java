@@ -0,0 +1,543 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.CsvReader;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * This class imports graves, bodies and burials from CSV files. The files are
+ * read as streams and the records are inserted in batches, each batch in its
+ * own transaction, so only one batch is kept in memory.
+ *
+ * The first record of each file is header with column names; the columns
+ * can be in any order. Expected columns are:
+ * <ul>
+ * <li>graves: row, col, capacity, note</li>
+ * <li>bodies: name, gender, born, died, vampire</li>
+ * <li>burials: bodyId, graveId</li>
+ * </ul>
+ * Empty value means null, dates are in ISO format (yyyy-mm-dd). Records
+ * which can't be parsed or which are not valid according to the same rules
+ * as used by {@link GraveManagerImpl} and {@link BodyManagerImpl} are
+ * rejected, and the import continues with next record. Burial is rejected
+ * when the body does not exist or is already buried, or when the grave does
+ * not exist or has no free space.
+ *
+ * Only the first rejected records (see {@link #setMaxRejects(int)}) are kept
+ * in the result, the others are only counted, so a file full of invalid
+ * records does not exhaust the memory.
+ *
+ * When database operation fails, the import is stopped with
+ * ServiceFailureException; batches inserted before are kept in the database.
+ */
+public class CemeteryImporter {
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_MAX_REJECTS = 1000;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final Clock clock;
+    private final GraveManagerImpl graveManager;
+    private final BodyManagerImpl bodyManager;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxRejects = DEFAULT_MAX_REJECTS;
+
+    @SuppressWarnings("WeakerAccess")
+    public CemeteryImporter(DataSource dataSource, Clock clock) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        if (clock == null) throw new IllegalArgumentException("clock is null");
+        this.dataSource = dataSource;
+        this.clock = clock;
+        this.graveManager = new GraveManagerImpl(dataSource);
+        this.bodyManager = new BodyManagerImpl(dataSource, clock);
+    }
+
+    /**
+     * Sets number of records inserted in one transaction.
+     *
+     * @param batchSize number of records
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize is not positive number");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets maximal number of rejected records returned in the result. When
+     * more records are rejected, the result contains the first ones in the
+     * order of the file.
+     *
+     * @param maxRejects number of records, zero means that only the number
+     * of rejected records is returned
+     */
+    public void setMaxRejects(int maxRejects) {
+        if (maxRejects < 0) throw new IllegalArgumentException("maxRejects is negative number");
+        this.maxRejects = maxRejects;
+    }
+
+    /**
+     * Imports graves.
+     *
+     * @param reader reader with CSV file
+     * @return number of imported graves and rejected records
+     * @throws IOException when reading of the file fails
+     * @throws IllegalArgumentException when the file has invalid header or
+     * invalid CSV format
+     * @throws ServiceFailureException when db operation fails
+     */
+    public ImportResult importGraves(Reader reader) throws IOException, ServiceFailureException {
+        return importRecords(reader, new RecordImport<Grave>("row", "col", "capacity", "note") {
+            @Override
+            Grave parse(List<String> record) {
+                Grave grave = new Grave();
+                grave.setRow(getInt(record, "row"));
+                grave.setColumn(getInt(record, "col"));
+                grave.setCapacity(getInt(record, "capacity"));
+                grave.setNote(getOptional(record, "note"));
+                GraveManagerImpl.validate(grave);
+                return grave;
+            }
+
+            @Override
+            int insert(List<Pending<Grave>> batch, Rejects rejects) {
+                graveManager.createGraves(entities(batch));
+                return batch.size();
+            }
+        });
+    }
+
+    /**
+     * Imports bodies.
+     *
+     * @param reader reader with CSV file
+     * @return number of imported bodies and rejected records
+     * @throws IOException when reading of the file fails
+     * @throws IllegalArgumentException when the file has invalid header or
+     * invalid CSV format
+     * @throws ServiceFailureException when db operation fails
+     */
+    public ImportResult importBodies(Reader reader) throws IOException, ServiceFailureException {
+        return importRecords(reader, new RecordImport<Body>("name", "gender", "born", "died", "vampire") {
+            @Override
+            Body parse(List<String> record) {
+                Body body = new Body();
+                body.setName(getOptional(record, "name"));
+                body.setGender(getGender(record, "gender"));
+                body.setBorn(getDate(record, "born"));
+                body.setDied(getDate(record, "died"));
+                body.setVampire(getBoolean(record, "vampire"));
+                BodyManagerImpl.validate(body, LocalDate.now(clock));
+                return body;
+            }
+
+            @Override
+            int insert(List<Pending<Body>> batch, Rejects rejects) {
+                bodyManager.createBodies(entities(batch));
+                return batch.size();
+            }
+        });
+    }
+
+    /**
+     * Imports burials, i.e. puts existing bodies into existing graves.
+     *
+     * @param reader reader with CSV file
+     * @return number of buried bodies and rejected records
+     * @throws IOException when reading of the file fails
+     * @throws IllegalArgumentException when the file has invalid header or
+     * invalid CSV format
+     * @throws ServiceFailureException when db operation fails
+     */
+    public ImportResult importBurials(Reader reader) throws IOException, ServiceFailureException {
+        return importRecords(reader, new RecordImport<long[]>("bodyId", "graveId") {
+            @Override
+            long[] parse(List<String> record) {
+                return new long[]{getLong(record, "bodyId"), getLong(record, "graveId")};
+            }
+
+            @Override
+            int insert(List<Pending<long[]>> batch, Rejects rejects) {
+                try {
+                    return insertBurials(batch, rejects);
+                } catch (SQLException ex) {
+                    throw new ServiceFailureException("Error when putting bodies into graves", ex);
+                }
+            }
+        });
+    }
+
+    private int insertBurials(List<Pending<long[]>> batch, Rejects rejects) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement reserveSt = conn.prepareStatement(
+                    "UPDATE Grave SET occupied = occupied + 1 WHERE id = ? AND free >= 1");
+                 PreparedStatement burySt = conn.prepareStatement(
+                         "UPDATE Body SET graveId = ? WHERE id = ? AND graveId IS NULL");
+                 PreparedStatement releaseSt = conn.prepareStatement(
+                         "UPDATE Grave SET occupied = occupied - 1 WHERE id = ?")) {
+                // Start transaction so that the occupancy of graves is consistent with buried bodies
+                conn.setAutoCommit(false);
+                // Space in graves is reserved one by one in the order of the file, while the
+                // bodies are updated in batches. When the reservation fails and some body
+                // update into the same grave is pending, the pending updates are executed
+                // first and the reservation is repeated, so that the free space released by
+                // rejected burial can be used by the next one.
+                List<Pending<long[]>> pending = new ArrayList<>();
+                Set<Long> pendingGraves = new HashSet<>();
+                int inserted = 0;
+                for (Pending<long[]> burial : batch) {
+                    boolean reserved = reserve(reserveSt, burial);
+                    if (!reserved && pendingGraves.contains(burial.entity[1])) {
+                        inserted += bury(burySt, releaseSt, pending, rejects);
+                        pendingGraves.clear();
+                        reserved = reserve(reserveSt, burial);
+                    }
+                    if (!reserved) {
+                        rejects.add(new Reject(burial.line, "grave does not exist or has no free space"));
+                        continue;
+                    }
+                    pending.add(burial);
+                    pendingGraves.add(burial.entity[1]);
+                }
+                inserted += bury(burySt, releaseSt, pending, rejects);
+                conn.commit();
+                return inserted;
+            } catch (Exception ex) {
+                //something failed, let's rollback
+                conn.rollback();
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static boolean reserve(PreparedStatement reserveSt, Pending<long[]> burial) throws SQLException {
+        reserveSt.setLong(1, burial.entity[1]);
+        return reserveSt.executeUpdate() == 1;
+    }
+
+    /**
+     * Puts pending bodies into their reserved graves and releases the space
+     * reserved for bodies which do not exist or are already buried.
+     *
+     * @return number of buried bodies
+     */
+    private static int bury(PreparedStatement burySt, PreparedStatement releaseSt,
+            List<Pending<long[]>> pending, Rejects rejects) throws SQLException {
+        if (pending.isEmpty()) return 0;
+        for (Pending<long[]> burial : pending) {
+            burySt.setLong(1, burial.entity[1]);
+            burySt.setLong(2, burial.entity[0]);
+            burySt.addBatch();
+        }
+        int[] counts = burySt.executeBatch();
+        int buried = 0;
+        boolean released = false;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 1) {
+                buried++;
+                continue;
+            }
+            Pending<long[]> burial = pending.get(i);
+            rejects.add(new Reject(burial.line, "body does not exist or it is already placed in some grave"));
+            releaseSt.setLong(1, burial.entity[1]);
+            releaseSt.addBatch();
+            released = true;
+        }
+        if (released) {
+            releaseSt.executeBatch();
+        }
+        pending.clear();
+        return buried;
+    }
+
+    private <T> ImportResult importRecords(Reader reader, RecordImport<T> recordImport) throws IOException {
+        if (reader == null) throw new IllegalArgumentException("reader is null");
+        CsvReader csvReader = new CsvReader(reader, MAX_RECORD_LENGTH);
+        List<String> header = csvReader.readRecord();
+        if (header == null) throw new IllegalArgumentException("header is missing");
+        recordImport.readHeader(header);
+
+        Rejects rejects = new Rejects(maxRejects);
+        List<Pending<T>> batch = new ArrayList<>(batchSize);
+        long imported = 0;
+        List<String> record;
+        while ((record = csvReader.readRecord()) != null) {
+            int line = csvReader.getRecordLine();
+            if (record.size() != header.size()) {
+                rejects.add(new Reject(line, "expected " + header.size() + " fields, found " + record.size()));
+                continue;
+            }
+            try {
+                batch.add(new Pending<>(line, recordImport.parse(record)));
+            } catch (ValidationException | IllegalArgumentException ex) {
+                rejects.add(new Reject(line, ex.getMessage()));
+                continue;
+            }
+            if (batch.size() == batchSize) {
+                imported += insertBatch(recordImport, batch, rejects);
+            }
+        }
+        imported += insertBatch(recordImport, batch, rejects);
+        return new ImportResult(imported, rejects.count, rejects.toList());
+    }
+
+    private static <T> int insertBatch(RecordImport<T> recordImport, List<Pending<T>> batch, Rejects rejects) {
+        if (batch.isEmpty()) return 0;
+        int inserted = recordImport.insert(batch, rejects);
+        batch.clear();
+        return inserted;
+    }
+
+    private static class Pending<T> {
+
+        private final int line;
+        private final T entity;
+
+        Pending(int line, T entity) {
+            this.line = line;
+            this.entity = entity;
+        }
+    }
+
+    /**
+     * Rejected records with the lowest line numbers. Records rejected by the
+     * database are added after the records of their batch, so the records
+     * are not added in the order of the file.
+     */
+    private static class Rejects {
+
+        private static final Comparator<Reject> ORDER = Comparator.comparingInt(Reject::getLine);
+
+        private final int max;
+        // the last kept record is at the head
+        private final PriorityQueue<Reject> kept;
+        private long count;
+
+        Rejects(int max) {
+            this.max = max;
+            this.kept = new PriorityQueue<>(ORDER.reversed());
+        }
+
+        void add(Reject reject) {
+            count++;
+            if (kept.size() < max) {
+                kept.add(reject);
+            } else if (max > 0 && reject.getLine() < kept.peek().getLine()) {
+                kept.poll();
+                kept.add(reject);
+            }
+        }
+
+        List<Reject> toList() {
+            List<Reject> list = new ArrayList<>(kept);
+            list.sort(ORDER);
+            return list;
+        }
+    }
+
+    /**
+     * Parsing and inserting of records of one file type.
+     */
+    private abstract static class RecordImport<T> {
+
+        private final String[] columns;
+        private final int[] indexes;
+
+        RecordImport(String... columns) {
+            this.columns = columns;
+            this.indexes = new int[columns.length];
+        }
+
+        void readHeader(List<String> header) {
+            for (int i = 0; i < columns.length; i++) {
+                indexes[i] = -1;
+                for (int j = 0; j < header.size(); j++) {
+                    if (header.get(j).trim().equalsIgnoreCase(columns[i])) {
+                        indexes[i] = j;
+                    }
+                }
+                if (indexes[i] < 0) throw new IllegalArgumentException("column " + columns[i] + " is missing in header");
+            }
+        }
+
+        String getOptional(List<String> record, String column) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].equals(column)) {
+                    String value = record.get(indexes[i]).trim();
+                    return value.isEmpty() ? null : value;
+                }
+            }
+            throw new IllegalStateException("unknown column " + column);
+        }
+
+        String get(List<String> record, String column) {
+            String value = getOptional(record, column);
+            if (value == null) throw new ValidationException(column + " is empty");
+            return value;
+        }
+
+        int getInt(List<String> record, String column) {
+            String value = get(record, column);
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                throw new ValidationException(column + " is not a number: " + value);
+            }
+        }
+
+        long getLong(List<String> record, String column) {
+            String value = get(record, column);
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException ex) {
+                throw new ValidationException(column + " is not a number: " + value);
+            }
+        }
+
+        LocalDate getDate(List<String> record, String column) {
+            String value = getOptional(record, column);
+            try {
+                return value == null ? null : LocalDate.parse(value);
+            } catch (DateTimeException ex) {
+                throw new ValidationException(column + " is not a date: " + value);
+            }
+        }
+
+        Gender getGender(List<String> record, String column) {
+            String value = getOptional(record, column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Gender.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new ValidationException(column + " is not a gender: " + value);
+            }
+        }
+
+        boolean getBoolean(List<String> record, String column) {
+            String value = getOptional(record, column);
+            if (value == null || value.equalsIgnoreCase("false")) {
+                return false;
+            }
+            if (value.equalsIgnoreCase("true")) {
+                return true;
+            }
+            throw new ValidationException(column + " is not a boolean: " + value);
+        }
+
+        static <T> List<T> entities(List<Pending<T>> batch) {
+            List<T> entities = new ArrayList<>(batch.size());
+            for (Pending<T> pending : batch) {
+                entities.add(pending.entity);
+            }
+            return entities;
+        }
+
+        /**
+         * Parses and validates the record.
+         */
+        abstract T parse(List<String> record);
+
+        /**
+         * Inserts the batch in single transaction. Records which are
+         * rejected by the database are added to rejects.
+         *
+         * @return number of inserted records
+         */
+        abstract int insert(List<Pending<T>> batch, Rejects rejects);
+    }
+
+    /**
+     * Record rejected by the import.
+     */
+    public static class Reject {
+
+        private final int line;
+        private final String reason;
+
+        Reject(int line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        /**
+         * Returns line of the file where the rejected record starts.
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Returns the reason why the record was rejected.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + reason;
+        }
+    }
+
+    /**
+     * Result of the import.
+     */
+    public static class ImportResult {
+
+        private final long importedCount;
+        private final long rejectedCount;
+        private final List<Reject> rejects;
+
+        ImportResult(long importedCount, long rejectedCount, List<Reject> rejects) {
+            this.importedCount = importedCount;
+            this.rejectedCount = rejectedCount;
+            this.rejects = Collections.unmodifiableList(rejects);
+        }
+
+        /**
+         * Returns number of imported records.
+         */
+        public long getImportedCount() {
+            return importedCount;
+        }
+
+        /**
+         * Returns number of all rejected records, including those which are
+         * not returned by {@link #getRejects()}.
+         */
+        public long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * Returns rejected records in the order of the file, at most the
+         * number set by {@link CemeteryImporter#setMaxRejects(int)}.
+         */
+        public List<Reject> getRejects() {
+            return rejects;
+        }
+    }
+}
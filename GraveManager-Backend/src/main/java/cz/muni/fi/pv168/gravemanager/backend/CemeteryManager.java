@@ -2,7 +2,9 @@ package cz.muni.fi.pv168.gravemanager.backend;
 
 import cz.muni.fi.pv168.common.IllegalEntityException;
 import cz.muni.fi.pv168.common.ServiceFailureException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This service allows to manipulate with associations between graves and 
@@ -34,6 +36,31 @@ public interface CemeteryManager {
      * @throws ServiceFailureException when db operation fails
      */
     List<Body> findBodiesInGrave(Grave grave) throws ServiceFailureException, IllegalEntityException;
+
+    /**
+     * Find all graves together with bodies placed in them. All graves and
+     * bodies are read by single query, so this is much faster than calling
+     * {@link #findBodiesInGrave(Grave)} for each grave.
+     *
+     * @return map from each grave to the list of bodies placed in it, graves
+     * are ordered by id and bodies of each grave are ordered by id, empty
+     * graves have empty list
+     * @throws ServiceFailureException when db operation fails
+     */
+    Map<Grave, List<Body>> findAllGravesWithBodies() throws ServiceFailureException;
+
+    /**
+     * Find graves with given ids together with bodies placed in them. Ids
+     * which do not belong to any grave are ignored.
+     *
+     * @param graveIds ids of the graves
+     * @return map from each found grave to the list of bodies placed in it,
+     * graves are ordered by id and bodies of each grave are ordered by id,
+     * empty graves have empty list
+     * @throws IllegalArgumentException when graveIds is null or contains null
+     * @throws ServiceFailureException when db operation fails
+     */
+    Map<Grave, List<Body>> findGravesWithBodies(Collection<Long> graveIds) throws ServiceFailureException;
     
     /**
      * Find all bodies that are not placed in any grave. 
@@ -59,6 +86,21 @@ public interface CemeteryManager {
      */
     List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException;
 
+    /**
+     * Find graves that are not full and are nearest to given position. The
+     * distance is measured as Euclidean distance in the grid of rows and
+     * columns, graves with the same distance are ordered by id.
+     * 
+     * @param row row of the position
+     * @param col column of the position
+     * @param k maximal number of returned graves
+     * @return at most k graves with some free space ordered by distance from
+     * given position
+     * @throws IllegalArgumentException when k is not positive number
+     * @throws ServiceFailureException when db operation fails.
+     */
+    List<Grave> findNearestGravesWithFreeSpace(int row, int col, int k) throws ServiceFailureException;
+
     /**
      * Inserts body into given grave.
      * 
@@ -71,6 +113,22 @@ public interface CemeteryManager {
      * @throws ServiceFailureException when db operation fails.
      */
     void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException;
+
+    /**
+     * Inserts all given bodies into given grave in single transaction. Either
+     * all bodies are placed into the grave or none of them.
+     * 
+     * @param bodies bodies to be placed to given grave
+     * @param grave grave for placing given bodies
+     * @throws IllegalArgumentException when bodies list or grave is null or
+     * when bodies list contains null
+     * @throws IllegalEntityException when some body is already placed in some 
+     * grave or is contained in the list more than once, when grave has not 
+     * enough free space for all bodies or when some body or grave have null id
+     * or do not exist in database 
+     * @throws ServiceFailureException when db operation fails.
+     */
+    void putBodiesIntoGrave(List<Body> bodies, Grave grave) throws ServiceFailureException, IllegalEntityException;
     
     /**
      * Removes body from given grave.
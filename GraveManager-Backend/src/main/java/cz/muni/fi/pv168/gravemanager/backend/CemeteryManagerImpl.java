@@ -8,7 +8,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * This class implements CemeteryManager service.
@@ -17,6 +25,14 @@ import java.util.List;
  */
 public class CemeteryManagerImpl implements CemeteryManager {
 
+    // graves with bodies are read by this many rows at once
+    private static final int GRAVES_WITH_BODIES_FETCH_SIZE = 1000;
+    // largest IN list of findGravesWithBodies, longer lists are split
+    private static final int MAX_IDS_IN_QUERY = 512;
+    private static final String GRAVES_WITH_BODIES_SQL =
+            "SELECT Grave.id, col, row, capacity, note, Body.id, name, gender, born, died, vampire " +
+                    "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId ";
+
     private DataSource dataSource;
 
     @SuppressWarnings("WeakerAccess")
@@ -59,6 +75,115 @@ public class CemeteryManagerImpl implements CemeteryManager {
         }
     }
 
+    @Override
+    public Map<Grave, List<Body>> findAllGravesWithBodies() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(GRAVES_WITH_BODIES_SQL)) {
+            st.setFetchSize(GRAVES_WITH_BODIES_FETCH_SIZE);
+            List<Grave> graves = new ArrayList<>();
+            Map<Long, List<Body>> bodiesByGraveId = new HashMap<>();
+            executeQueryForGravesWithBodies(st, graves, bodiesByGraveId);
+            return toGravesWithBodies(graves, bodiesByGraveId);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when trying to find all graves with bodies", ex);
+        }
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findGravesWithBodies(Collection<Long> graveIds) throws ServiceFailureException {
+        if (graveIds == null) throw new IllegalArgumentException("graveIds is null");
+        for (Long id : graveIds) {
+            if (id == null) throw new IllegalArgumentException("graveIds contains null");
+        }
+        if (graveIds.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        // neighbouring ids in the same chunk are close to each other in the index
+        List<Long> ids = new ArrayList<>(new TreeSet<>(graveIds));
+        List<Grave> graves = new ArrayList<>();
+        Map<Long, List<Body>> bodiesByGraveId = new HashMap<>();
+        try (Connection conn = dataSource.getConnection()) {
+            for (int from = 0; from < ids.size(); from += MAX_IDS_IN_QUERY) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_IN_QUERY));
+                // The IN list is padded to power of two by repeating the last id,
+                // so there are only a few distinct statements for the statement cache
+                int placeholders = Integer.highestOneBit(chunk.size() * 2 - 1);
+                StringBuilder sql = new StringBuilder(GRAVES_WITH_BODIES_SQL).append("WHERE Grave.id IN (?");
+                for (int i = 1; i < placeholders; i++) {
+                    sql.append(",?");
+                }
+                sql.append(")");
+                try (PreparedStatement st = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < placeholders; i++) {
+                        st.setLong(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+                    executeQueryForGravesWithBodies(st, graves, bodiesByGraveId);
+                }
+            }
+            return toGravesWithBodies(graves, bodiesByGraveId);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when trying to find graves with bodies " + graveIds, ex);
+        }
+    }
+
+    /**
+     * Reads rows of graves left joined with their bodies and groups the
+     * bodies by grave in single pass. The query has no ORDER BY, because
+     * Derby would sort the whole join result, which takes more time than the
+     * join itself; rows of the same grave usually follow each other, so the
+     * grave is looked up only when it changes.
+     */
+    private static void executeQueryForGravesWithBodies(PreparedStatement st, List<Grave> graves,
+            Map<Long, List<Body>> bodiesByGraveId) throws SQLException {
+        try (ResultSet rs = st.executeQuery()) {
+            long currentGraveId = 0;
+            List<Body> bodies = null;
+            while (rs.next()) {
+                long graveId = rs.getLong(1);
+                if (bodies == null || graveId != currentGraveId) {
+                    currentGraveId = graveId;
+                    bodies = bodiesByGraveId.get(graveId);
+                    if (bodies == null) {
+                        Grave grave = new Grave();
+                        grave.setId(graveId);
+                        grave.setColumn(rs.getInt(2));
+                        grave.setRow(rs.getInt(3));
+                        grave.setCapacity(rs.getInt(4));
+                        grave.setNote(rs.getString(5));
+                        graves.add(grave);
+                        bodies = new ArrayList<>();
+                        bodiesByGraveId.put(graveId, bodies);
+                    }
+                }
+                long bodyId = rs.getLong(6);
+                if (rs.wasNull()) {
+                    // empty grave
+                    continue;
+                }
+                Body body = new Body();
+                body.setId(bodyId);
+                body.setName(rs.getString(7));
+                body.setGender(BodyManagerImpl.toGender(rs.getString(8)));
+                body.setBorn(BodyManagerImpl.toLocalDate(rs.getDate(9)));
+                body.setDied(BodyManagerImpl.toLocalDate(rs.getDate(10)));
+                body.setVampire(rs.getBoolean(11));
+                bodies.add(body);
+            }
+        }
+    }
+
+    private static Map<Grave, List<Body>> toGravesWithBodies(List<Grave> graves, Map<Long, List<Body>> bodiesByGraveId) {
+        // rows usually come in the order of ids, sorting of sorted list takes linear time
+        graves.sort(Comparator.comparing(Grave::getId));
+        Map<Grave, List<Body>> result = new LinkedHashMap<>(graves.size() * 4 / 3 + 1);
+        for (Grave grave : graves) {
+            List<Body> bodies = bodiesByGraveId.get(grave.getId());
+            bodies.sort(Comparator.comparing(Body::getId));
+            result.put(grave, bodies);
+        }
+        return result;
+    }
+
     @Override
     public List<Body> findUnburiedBodies() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
@@ -74,10 +199,7 @@ public class CemeteryManagerImpl implements CemeteryManager {
     public List<Grave> findEmptyGraves() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement st = conn.prepareStatement(
-                     "SELECT Grave.id, col, row, capacity, note " +
-                             "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
-                             "GROUP BY Grave.id, col, row, capacity, note " +
-                             "HAVING COUNT(Body.id) = 0")) {
+                     "SELECT id, col, row, capacity, note FROM Grave WHERE occupied = 0")) {
             return GraveManagerImpl.executeQueryForMultipleGraves(st);
         } catch (SQLException ex) {
             throw new ServiceFailureException("Error when trying to find empty graves", ex);
@@ -88,10 +210,7 @@ public class CemeteryManagerImpl implements CemeteryManager {
     public List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement st = conn.prepareStatement(
-                     "SELECT Grave.id, col, row, capacity, note " +
-                             "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
-                             "GROUP BY Grave.id, col, row, capacity, note " +
-                             "HAVING COUNT(Body.id) < capacity")) {
+                     "SELECT id, col, row, capacity, note FROM Grave WHERE free > 0")) {
 
             return GraveManagerImpl.executeQueryForMultipleGraves(st);
         } catch (SQLException ex) {
@@ -99,6 +218,82 @@ public class CemeteryManagerImpl implements CemeteryManager {
         }
     }
 
+    @Override
+    public List<Grave> findNearestGravesWithFreeSpace(int row, int col, int k) throws ServiceFailureException {
+        if (k <= 0) throw new IllegalArgumentException("k is not positive number");
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement boundsSt = conn.prepareStatement(
+                     "SELECT MIN(row), MAX(row), MIN(col), MAX(col) FROM Grave");
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, col, row, capacity, note FROM Grave " +
+                             "WHERE row BETWEEN ? AND ? AND col BETWEEN ? AND ? AND free > 0")) {
+            // The bounds of the grid are read from index on row and col, the
+            // window with this radius contains all graves
+            long maxRadius;
+            try (ResultSet rs = boundsSt.executeQuery()) {
+                rs.next();
+                if (rs.getObject(1) == null) {
+                    return Collections.emptyList();
+                }
+                maxRadius = Math.max(
+                        Math.max((long) row - rs.getInt(1), (long) rs.getInt(2) - row),
+                        Math.max((long) col - rs.getInt(3), (long) rs.getInt(4) - col));
+            }
+            Comparator<Grave> byDistance = Comparator
+                    .comparingLong((Grave g) -> squaredDistance(g, row, col))
+                    .thenComparing(Grave::getId);
+            // Search in square windows around the position, which are growing
+            // until they contain enough graves or the whole grid
+            long radius = 1;
+            while (true) {
+                List<Grave> candidates = findGravesWithFreeSpaceInWindow(st, row, col, radius);
+                if (candidates.size() >= k) {
+                    candidates.sort(byDistance);
+                    long squaredDistance = squaredDistance(candidates.get(k - 1), row, col);
+                    long distance = (long) Math.sqrt(squaredDistance);
+                    while (distance * distance < squaredDistance) {
+                        distance++;
+                    }
+                    if (distance > radius && radius < maxRadius) {
+                        // Some graves outside of the window could be closer than
+                        // the last candidate, the circle must be covered
+                        candidates = findGravesWithFreeSpaceInWindow(st, row, col, Math.min(distance, maxRadius));
+                        candidates.sort(byDistance);
+                    }
+                    return candidates.subList(0, k);
+                }
+                if (radius >= maxRadius) {
+                    // The window covers whole grid, there are less than k graves with free space
+                    candidates.sort(byDistance);
+                    return candidates;
+                }
+                radius = Math.min(radius * 2, maxRadius);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when trying to find nearest graves with some free space", ex);
+        }
+    }
+
+    private static List<Grave> findGravesWithFreeSpaceInWindow(PreparedStatement st, int row, int col, long radius)
+            throws SQLException {
+        st.setInt(1, clampToInt(row - radius));
+        st.setInt(2, clampToInt(row + radius));
+        st.setInt(3, clampToInt(col - radius));
+        st.setInt(4, clampToInt(col + radius));
+        return GraveManagerImpl.executeQueryForMultipleGraves(st);
+    }
+
+    private static int clampToInt(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    private static long squaredDistance(Grave grave, int row, int col) {
+        long rowDistance = (long) grave.getRow() - row;
+        long colDistance = (long) grave.getColumn() - col;
+        return rowDistance * rowDistance + colDistance * colDistance;
+    }
+
     @Override
     public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
         if (grave == null) throw new IllegalArgumentException("grave is null");
@@ -111,7 +306,7 @@ public class CemeteryManagerImpl implements CemeteryManager {
                 // Start transaction so that the check for enough space in grave and putting body into the grave are atomic
                 conn.setAutoCommit(false);
                 //check if the grave has some free capacity left
-                checkIfGraveHasSpace(conn, grave);
+                checkIfGraveHasSpace(conn, grave, 1);
                 //put the body into the grave
                 st.setLong(1, grave.getId());
                 st.setLong(2, body.getId());
@@ -120,6 +315,7 @@ public class CemeteryManagerImpl implements CemeteryManager {
                     throw new IllegalEntityException("Body " + body + " not found or it is already placed in some grave");
                 if (count != 1)
                     throw new IllegalEntityException("updated " + count + " instead of 1 body");
+                updateOccupancy(conn, grave, 1);
                 conn.commit();
             } catch (Exception ex) {
                 //something failed, let's rollback
@@ -134,17 +330,59 @@ public class CemeteryManagerImpl implements CemeteryManager {
         }
     }
 
-    private static void checkIfGraveHasSpace(Connection conn, Grave grave) throws IllegalEntityException, SQLException {
-        try (PreparedStatement checkSt = conn.prepareStatement(
-                "SELECT capacity, COUNT(Body.id) AS bodiesCount " +
-                        "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
-                        "WHERE Grave.id = ? " +
-                        "GROUP BY Grave.id, capacity")) {
+    @Override
+    public void putBodiesIntoGrave(List<Body> bodies, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        if (bodies.isEmpty()) return;
+
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement("UPDATE Body SET graveId = ? WHERE id = ? AND graveId IS NULL")) {
+                // Start transaction so that the check for enough space in grave and putting bodies into the grave are atomic
+                conn.setAutoCommit(false);
+                //check if the grave has enough free capacity left for all bodies
+                checkIfGraveHasSpace(conn, grave, bodies.size());
+                //put all bodies into the grave
+                for (Body body : bodies) {
+                    st.setLong(1, grave.getId());
+                    st.setLong(2, body.getId());
+                    st.addBatch();
+                }
+                int[] counts = st.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0)
+                        throw new IllegalEntityException("Body " + bodies.get(i) + " not found or it is already placed in some grave");
+                    if (counts[i] != 1)
+                        throw new IllegalEntityException("updated " + counts[i] + " instead of 1 body");
+                }
+                updateOccupancy(conn, grave, bodies.size());
+                conn.commit();
+            } catch (Exception ex) {
+                //something failed, let's rollback
+                conn.rollback();
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when putting bodies into grave", ex);
+        }
+    }
+
+    private static void checkIfGraveHasSpace(Connection conn, Grave grave, int bodiesToAdd) throws IllegalEntityException, SQLException {
+        try (PreparedStatement checkSt = conn.prepareStatement("SELECT free FROM Grave WHERE id = ?")) {
             checkSt.setLong(1, grave.getId());
             try (ResultSet rs = checkSt.executeQuery()) {
                 if (rs.next()) {
-                    if (rs.getInt("capacity") <= rs.getInt("bodiesCount")) {
-                        throw new IllegalEntityException("Grave " + grave + " is already full");
+                    if (rs.getInt("free") < bodiesToAdd) {
+                        throw new IllegalEntityException("Grave " + grave + " has not enough free space for "
+                                + bodiesToAdd + " bodies");
                     }
                 } else {
                     throw new IllegalEntityException("Grave " + grave + " does not exist in the database");
@@ -153,21 +391,46 @@ public class CemeteryManagerImpl implements CemeteryManager {
         }
     }
 
+    /**
+     * Changes the number of bodies placed in given grave. This must be called 
+     * in the same transaction as the update of Body.graveId, so that the
+     * counter is always consistent with Body table.
+     */
+    private static void updateOccupancy(Connection conn, Grave grave, int bodiesAdded) throws IllegalEntityException, SQLException {
+        try (PreparedStatement st = conn.prepareStatement("UPDATE Grave SET occupied = occupied + ? WHERE id = ?")) {
+            st.setInt(1, bodiesAdded);
+            st.setLong(2, grave.getId());
+            int count = st.executeUpdate();
+            if (count != 1) throw new IllegalEntityException("updated " + count + " instead of 1 grave");
+        }
+    }
+
     @Override
     public void removeBodyFromGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
         if (grave == null) throw new IllegalArgumentException("grave is null");
         if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
         if (body == null) throw new IllegalArgumentException("body is null");
         if (body.getId() == null) throw new IllegalEntityException("body id is null");
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement st = conn.prepareStatement(
-                     "UPDATE Body SET graveId = NULL WHERE id = ? AND graveId = ?")) {
-            st.setLong(1, body.getId());
-            st.setLong(2, grave.getId());
-            int count = st.executeUpdate();
-            if (count != 1) throw new IllegalEntityException("updated " + count + " instead of 1 body");
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement("UPDATE Body SET graveId = NULL WHERE id = ? AND graveId = ?")) {
+                // Start transaction so that removing the body and updating occupancy of the grave are atomic
+                conn.setAutoCommit(false);
+                st.setLong(1, body.getId());
+                st.setLong(2, grave.getId());
+                int count = st.executeUpdate();
+                if (count != 1) throw new IllegalEntityException("updated " + count + " instead of 1 body");
+                updateOccupancy(conn, grave, -1);
+                conn.commit();
+            } catch (Exception ex) {
+                //something failed, let's rollback
+                conn.rollback();
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException ex) {
-            throw new ServiceFailureException("Error when putting body into grave", ex);
+            throw new ServiceFailureException("Error when removing body from grave", ex);
         }
     }
 }
@@ -0,0 +1,385 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class saves all graves and bodies into compact binary file and loads
+ * them back, which is much faster than loading them from the database. The
+ * file is memory-mapped when loading, so it is not copied into heap buffers.
+ *
+ * The snapshot records the highest grave id and the highest body id it
+ * contains. When the snapshot is loaded, only graves and bodies with higher
+ * ids are fetched from the database. Since ids are generated in ascending
+ * order, this catches all rows created after the snapshot, but not updates
+ * or deletions of older rows; the snapshot should be saved again after such
+ * modifications.
+ *
+ * File format (all numbers are big-endian):
+ * <pre>
+ * header:  int magic, int version, long graveHighWaterId, long bodyHighWaterId,
+ *          int graveCount, int bodyCount
+ * grave:   long id, int row, int col, int capacity, string note
+ * body:    long id, long graveId (0 when not buried), string name,
+ *          string gender, date born, date died, byte vampire
+ * string:  int length in bytes (-1 for null), UTF-8 bytes
+ * date:    long epoch day (Long.MIN_VALUE for null)
+ * </pre>
+ * Graves precede bodies, both are ordered by id.
+ */
+public class CemeterySnapshot {
+
+    static final int MAGIC = 0x474D534E;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    // high-water ids and counts follow magic and version
+    private static final int HIGH_WATER_OFFSET = 8;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private final DataSource dataSource;
+
+    @SuppressWarnings("WeakerAccess")
+    public CemeterySnapshot(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Saves all graves and bodies into given file. The data are written into
+     * temporary file in the same directory first, which then replaces the
+     * target file, so the existing snapshot is never left half written.
+     * Grave and body tables are locked in share mode while they are read,
+     * so the snapshot is consistent.
+     *
+     * @param file target file
+     * @throws IOException when writing fails
+     * @throws ServiceFailureException when db operation fails
+     */
+    public void save(Path file) throws IOException, ServiceFailureException {
+        if (file == null) throw new IllegalArgumentException("file is null");
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            int[] counts = new int[2];
+            long[] highWaterIds = new long[2];
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                // high-water ids and counts are written when all rows are known
+                out.write(new byte[HEADER_SIZE - HIGH_WATER_OFFSET]);
+                writeRows(out, counts, highWaterIds);
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE - HIGH_WATER_OFFSET);
+                header.putLong(highWaterIds[0]).putLong(highWaterIds[1]).putInt(counts[0]).putInt(counts[1]);
+                header.flip();
+                channel.write(header, HIGH_WATER_OFFSET);
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void writeRows(DataOutputStream out, int[] counts, long[] highWaterIds)
+            throws IOException, ServiceFailureException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                DBUtils.lockTableShared(conn, "Grave");
+                DBUtils.lockTableShared(conn, "Body");
+                try (PreparedStatement st = conn.prepareStatement(
+                        "SELECT id, row, col, capacity, note FROM Grave ORDER BY id")) {
+                    st.setFetchSize(DEFAULT_FETCH_SIZE);
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            Grave grave = GraveManagerImpl.rowToGrave(rs);
+                            writeGrave(out, grave);
+                            highWaterIds[0] = grave.getId();
+                            counts[0]++;
+                        }
+                    }
+                }
+                try (PreparedStatement st = conn.prepareStatement(
+                        "SELECT id, graveId, name, gender, born, died, vampire FROM Body ORDER BY id")) {
+                    st.setFetchSize(DEFAULT_FETCH_SIZE);
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            Body body = BodyManagerImpl.rowToBody(rs);
+                            writeBody(out, body, rs.getLong("graveId"));
+                            highWaterIds[1] = body.getId();
+                            counts[1]++;
+                        }
+                    }
+                }
+                conn.commit();
+            } finally {
+                // releases the locks also when writing fails
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when reading graves and bodies for snapshot", ex);
+        }
+    }
+
+    /**
+     * Loads graves and bodies from given snapshot and fetches graves and
+     * bodies created after the snapshot was saved from the database.
+     *
+     * @param file snapshot file
+     * @return all graves and bodies
+     * @throws IOException when reading fails or the file is not valid snapshot
+     * @throws ServiceFailureException when db operation fails
+     */
+    public Contents load(Path file) throws IOException, ServiceFailureException {
+        if (file == null) throw new IllegalArgumentException("file is null");
+        Contents contents = read(file);
+        fetchNewerRows(contents);
+        return contents;
+    }
+
+    /**
+     * Loads graves and bodies from given snapshot without accessing the
+     * database.
+     *
+     * @param file snapshot file
+     * @return graves and bodies stored in the snapshot
+     * @throws IOException when reading fails or the file is not valid snapshot
+     */
+    public static Contents read(Path file) throws IOException {
+        if (file == null) throw new IllegalArgumentException("file is null");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return read(buffer);
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                throw new IOException("Snapshot " + file + " is corrupted", ex);
+            }
+        }
+    }
+
+    private static Contents read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a cemetery snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        long graveHighWaterId = buffer.getLong();
+        long bodyHighWaterId = buffer.getLong();
+        int graveCount = buffer.getInt();
+        int bodyCount = buffer.getInt();
+        if (graveCount < 0 || bodyCount < 0) {
+            throw new IOException("Invalid number of records in snapshot");
+        }
+        Contents contents = new Contents(graveHighWaterId, bodyHighWaterId, graveCount, bodyCount);
+        for (int i = 0; i < graveCount; i++) {
+            contents.graves.add(readGrave(buffer));
+        }
+        for (int i = 0; i < bodyCount; i++) {
+            long id = buffer.getLong();
+            long graveId = buffer.getLong();
+            contents.addBody(readBody(buffer, id), graveId == 0 ? null : graveId);
+        }
+        return contents;
+    }
+
+    private void fetchNewerRows(Contents contents) throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement(
+                    "SELECT id, row, col, capacity, note FROM Grave WHERE id > ? ORDER BY id")) {
+                st.setLong(1, contents.graveHighWaterId);
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        Grave grave = GraveManagerImpl.rowToGrave(rs);
+                        contents.graves.add(grave);
+                        contents.graveHighWaterId = grave.getId();
+                    }
+                }
+            }
+            try (PreparedStatement st = conn.prepareStatement(
+                    "SELECT id, graveId, name, gender, born, died, vampire FROM Body WHERE id > ? ORDER BY id")) {
+                st.setLong(1, contents.bodyHighWaterId);
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        Body body = BodyManagerImpl.rowToBody(rs);
+                        long graveId = rs.getLong("graveId");
+                        contents.addBody(body, rs.wasNull() ? null : graveId);
+                        contents.bodyHighWaterId = body.getId();
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting graves and bodies newer than snapshot", ex);
+        }
+    }
+
+    private static void writeGrave(DataOutputStream out, Grave grave) throws IOException {
+        out.writeLong(grave.getId());
+        out.writeInt(grave.getRow());
+        out.writeInt(grave.getColumn());
+        out.writeInt(grave.getCapacity());
+        writeString(out, grave.getNote());
+    }
+
+    private static Grave readGrave(ByteBuffer buffer) {
+        Grave grave = new Grave();
+        grave.setId(buffer.getLong());
+        grave.setRow(buffer.getInt());
+        grave.setColumn(buffer.getInt());
+        grave.setCapacity(buffer.getInt());
+        grave.setNote(readString(buffer));
+        return grave;
+    }
+
+    private static void writeBody(DataOutputStream out, Body body, long graveId) throws IOException {
+        out.writeLong(body.getId());
+        out.writeLong(graveId);
+        writeString(out, body.getName());
+        writeString(out, body.getGender() == null ? null : body.getGender().name());
+        writeDate(out, body.getBorn());
+        writeDate(out, body.getDied());
+        out.writeBoolean(body.isVampire());
+    }
+
+    private static Body readBody(ByteBuffer buffer, long id) {
+        Body body = new Body();
+        body.setId(id);
+        body.setName(readString(buffer));
+        String gender = readString(buffer);
+        body.setGender(gender == null ? null : Gender.valueOf(gender));
+        body.setBorn(readDate(buffer));
+        body.setDied(readDate(buffer));
+        body.setVampire(buffer.get() != 0);
+        return body;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? NULL_DATE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer buffer) {
+        long epochDay = buffer.getLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Graves and bodies loaded from snapshot.
+     */
+    public static final class Contents {
+
+        private long graveHighWaterId;
+        private long bodyHighWaterId;
+        private final List<Grave> graves;
+        private final List<Body> bodies;
+        private final Map<Long, Long> graveIdsByBodyId;
+
+        private Contents(long graveHighWaterId, long bodyHighWaterId, int graveCount, int bodyCount) {
+            this.graveHighWaterId = graveHighWaterId;
+            this.bodyHighWaterId = bodyHighWaterId;
+            this.graves = new ArrayList<>(graveCount);
+            this.bodies = new ArrayList<>(bodyCount);
+            this.graveIdsByBodyId = new HashMap<>();
+        }
+
+        private void addBody(Body body, Long graveId) {
+            bodies.add(body);
+            if (graveId != null) {
+                graveIdsByBodyId.put(body.getId(), graveId);
+            }
+        }
+
+        /**
+         * Returns all graves ordered by id.
+         */
+        public List<Grave> getGraves() {
+            return Collections.unmodifiableList(graves);
+        }
+
+        /**
+         * Returns all bodies ordered by id.
+         */
+        public List<Body> getBodies() {
+            return Collections.unmodifiableList(bodies);
+        }
+
+        /**
+         * Returns id of the grave containing given body.
+         *
+         * @param body body
+         * @return id of the grave or null when the body is not buried
+         */
+        public Long getGraveId(Body body) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            return graveIdsByBodyId.get(body.getId());
+        }
+
+        /**
+         * Returns the highest id of loaded graves, or 0 if there are none.
+         */
+        public long getGraveHighWaterId() {
+            return graveHighWaterId;
+        }
+
+        /**
+         * Returns the highest id of loaded bodies, or 0 if there are none.
+         */
+        public long getBodyHighWaterId() {
+            return bodyHighWaterId;
+        }
+    }
+}
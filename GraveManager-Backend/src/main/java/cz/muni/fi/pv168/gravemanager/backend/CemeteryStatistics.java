@@ -0,0 +1,29 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+/**
+ * This service computes statistics of grave occupancy.
+ */
+public interface CemeteryStatistics {
+
+    /**
+     * Returns occupancy of the whole cemetery.
+     *
+     * @return total capacity of all graves and number of bodies placed in them
+     * @throws ServiceFailureException when db operation fails
+     */
+    Occupancy getTotalOccupancy() throws ServiceFailureException;
+
+    /**
+     * Returns occupancy of the whole cemetery, of each row, of each column and
+     * of each square block of given size. All values are computed from the
+     * same state of the database.
+     *
+     * @param blockSize number of rows and columns covered by single block
+     * @return occupancy report
+     * @throws IllegalArgumentException when blockSize is not positive number
+     * @throws ServiceFailureException when db operation fails
+     */
+    OccupancyReport getOccupancyReport(int blockSize) throws ServiceFailureException;
+}
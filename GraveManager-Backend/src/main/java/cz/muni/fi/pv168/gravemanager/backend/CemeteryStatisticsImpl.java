@@ -0,0 +1,62 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This class implements CemeteryStatistics service. The statistics are
+ * computed from the number of bodies maintained in each grave, so the BODY
+ * table is not accessed at all. The occupancy report is computed by single
+ * pass over the GRAVE table, which is summed into rows, columns and blocks in
+ * memory; this is several times faster than GROUP BY row, col, which makes
+ * Derby sort all graves.
+ */
+public class CemeteryStatisticsImpl implements CemeteryStatistics {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    @SuppressWarnings("WeakerAccess")
+    public CemeteryStatisticsImpl(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Occupancy getTotalOccupancy() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT COUNT(*), SUM(CAST(capacity AS BIGINT)), SUM(CAST(occupied AS BIGINT)) FROM Grave");
+             ResultSet rs = st.executeQuery()) {
+            rs.next();
+            // SUM returns null when there are no graves, getLong converts it to 0
+            return new Occupancy(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when computing total occupancy of graves", ex);
+        }
+    }
+
+    @Override
+    public OccupancyReport getOccupancyReport(int blockSize) throws ServiceFailureException {
+        OccupancyReport.Builder builder = new OccupancyReport.Builder(blockSize);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT row, col, capacity, occupied FROM Grave")) {
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    builder.add(rs.getInt(1), rs.getInt(2), 1, rs.getInt(3), rs.getInt(4));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when computing occupancy report of graves", ex);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,53 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.PooledDataSource;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+
+/**
+ * Creates DataSource for the managers. The connections to embedded Derby
+ * database are kept in {@link PooledDataSource}, because opening new Derby
+ * connection for each operation is by orders of magnitude slower than the
+ * operation itself (see ConnectionPoolBenchmark).
+ */
+public final class DataSourceFactory {
+
+    /**
+     * Default maximal number of pooled connections.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 32;
+
+    private DataSourceFactory() {
+    }
+
+    /**
+     * Creates pooled DataSource of embedded Derby database with default
+     * maximal number of connections. The database is created when it does
+     * not exist, its tables are not.
+     *
+     * @param databaseName name of the database, e.g. "memory:gravemgr"
+     * @return pooled DataSource, which should be closed when it is not
+     * needed anymore
+     */
+    public static PooledDataSource createDerbyDataSource(String databaseName) {
+        return createDerbyDataSource(databaseName, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Creates pooled DataSource of embedded Derby database. The database is
+     * created when it does not exist, its tables are not.
+     *
+     * @param databaseName name of the database, e.g. "memory:gravemgr"
+     * @param maxConnections maximal number of pooled connections
+     * @return pooled DataSource, which should be closed when it is not
+     * needed anymore
+     */
+    public static PooledDataSource createDerbyDataSource(String databaseName, int maxConnections) {
+        if (databaseName == null) throw new IllegalArgumentException("databaseName is null");
+        if (maxConnections <= 0) throw new IllegalArgumentException("maxConnections is not positive number");
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName(databaseName);
+        ds.setCreateDatabase("create");
+        return new PooledDataSource(ds, 1, maxConnections);
+    }
+}
@@ -59,6 +59,22 @@ public class Grave {
         this.row = row;
     }
 
+    /**
+     * Creates copy of this grave. This is used by in-memory indexes and caches
+     * to make sure that their content could not be modified by the caller.
+     *
+     * @return new grave with the same attributes
+     */
+    Grave copy() {
+        Grave result = new Grave();
+        result.setId(id);
+        result.setColumn(column);
+        result.setRow(row);
+        result.setCapacity(capacity);
+        result.setNote(note);
+        return result;
+    }
+
     @Override
     public String toString() {
         return "Grave{"
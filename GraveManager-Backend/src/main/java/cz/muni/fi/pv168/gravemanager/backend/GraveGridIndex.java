@@ -0,0 +1,186 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of graves by their position. The cemetery is divided into
+ * square buckets of the same size and each bucket contains graves placed in
+ * it, so the region query has to inspect only buckets overlapping with the
+ * region.
+ *
+ * The index stores its own copies of graves, so it is not affected by later
+ * modifications of graves passed to it. This class is thread safe.
+ */
+public class GraveGridIndex {
+
+    private static final int DEFAULT_BUCKET_SIZE = 16;
+
+    static final Comparator<Grave> POSITION_ORDER = Comparator.comparingInt(Grave::getRow)
+            .thenComparingInt(Grave::getColumn)
+            .thenComparing(Grave::getId);
+
+    private final int bucketSize;
+    private final Map<Long, List<Grave>> buckets = new HashMap<>();
+    private final Map<Long, Grave> gravesById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public GraveGridIndex() {
+        this(DEFAULT_BUCKET_SIZE);
+    }
+
+    /**
+     * Creates empty index.
+     *
+     * @param bucketSize number of rows and columns covered by single bucket
+     */
+    public GraveGridIndex(int bucketSize) {
+        if (bucketSize <= 0) throw new IllegalArgumentException("bucketSize is not positive number");
+        this.bucketSize = bucketSize;
+    }
+
+    /**
+     * Adds grave into the index. If the index already contains grave with the
+     * same id, it is replaced, so this method is used also for updates.
+     *
+     * @param grave grave to be indexed
+     * @throws IllegalArgumentException when grave or its id is null
+     */
+    public void put(Grave grave) {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalArgumentException("grave id is null");
+        Grave copy = grave.copy();
+        lock.writeLock().lock();
+        try {
+            removeFromBucket(gravesById.put(copy.getId(), copy));
+            buckets.computeIfAbsent(bucketKey(copy.getRow(), copy.getColumn()), key -> new ArrayList<>())
+                    .add(copy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes grave with given id from the index.
+     *
+     * @param id id of the grave to be removed
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeFromBucket(gravesById.remove(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all graves in given rectangular region, both bounds are inclusive.
+     *
+     * @return copies of graves in given region ordered by row, column and id
+     */
+    public List<Grave> findInRegion(int rowFrom, int rowTo, int colFrom, int colTo) {
+        GraveManagerImpl.checkRegion(rowFrom, rowTo, colFrom, colTo);
+        List<Grave> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long bucketRowFrom = Math.floorDiv(rowFrom, bucketSize);
+            long bucketRowTo = Math.floorDiv(rowTo, bucketSize);
+            long bucketColFrom = Math.floorDiv(colFrom, bucketSize);
+            long bucketColTo = Math.floorDiv(colTo, bucketSize);
+            // computed in double to avoid overflow for huge regions
+            double regionBuckets = (double) (bucketRowTo - bucketRowFrom + 1) * (bucketColTo - bucketColFrom + 1);
+            if (regionBuckets > buckets.size()) {
+                // the region is large and sparse, it is cheaper to check all buckets
+                for (List<Grave> bucket : buckets.values()) {
+                    addGravesInRegion(bucket, rowFrom, rowTo, colFrom, colTo, result);
+                }
+            } else {
+                for (long bucketRow = bucketRowFrom; bucketRow <= bucketRowTo; bucketRow++) {
+                    for (long bucketCol = bucketColFrom; bucketCol <= bucketColTo; bucketCol++) {
+                        List<Grave> bucket = buckets.get(toKey((int) bucketRow, (int) bucketCol));
+                        if (bucket != null) {
+                            addGravesInRegion(bucket, rowFrom, rowTo, colFrom, colTo, result);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(POSITION_ORDER);
+        return result;
+    }
+
+    /**
+     * Returns grave at given position. When there are more graves at the same
+     * position, the one with the lowest id is returned.
+     *
+     * @return copy of the grave at given position or null
+     */
+    public Grave findAt(int row, int col) {
+        Grave result = null;
+        lock.readLock().lock();
+        try {
+            List<Grave> bucket = buckets.get(bucketKey(row, col));
+            if (bucket != null) {
+                for (Grave grave : bucket) {
+                    if (grave.getRow() == row && grave.getColumn() == col
+                            && (result == null || grave.getId() < result.getId())) {
+                        result = grave;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result == null ? null : result.copy();
+    }
+
+    /**
+     * Returns number of indexed graves.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return gravesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeFromBucket(Grave grave) {
+        if (grave == null) {
+            return;
+        }
+        long key = bucketKey(grave.getRow(), grave.getColumn());
+        List<Grave> bucket = buckets.get(key);
+        bucket.removeIf(g -> g.getId().equals(grave.getId()));
+        if (bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    private static void addGravesInRegion(List<Grave> bucket, int rowFrom, int rowTo, int colFrom, int colTo,
+                                          List<Grave> result) {
+        for (Grave grave : bucket) {
+            if (grave.getRow() >= rowFrom && grave.getRow() <= rowTo
+                    && grave.getColumn() >= colFrom && grave.getColumn() <= colTo) {
+                result.add(grave.copy());
+            }
+        }
+    }
+
+    private long bucketKey(int row, int col) {
+        return toKey(Math.floorDiv(row, bucketSize), Math.floorDiv(col, bucketSize));
+    }
+
+    private static long toKey(int bucketRow, int bucketCol) {
+        return ((long) bucketRow << 32) | (bucketCol & 0xFFFFFFFFL);
+    }
+}
@@ -3,7 +3,9 @@ package cz.muni.fi.pv168.gravemanager.backend;
 import cz.muni.fi.pv168.common.IllegalEntityException;
 import cz.muni.fi.pv168.common.ServiceFailureException;
 import cz.muni.fi.pv168.common.ValidationException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This service allows to manipulate with graves.
@@ -26,6 +28,21 @@ public interface GraveManager {
      * @throws ServiceFailureException when db operation fails.
      */
     void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException;
+
+    /**
+     * Stores all given graves into database in single transaction. Ids for 
+     * the new graves are automatically generated and stored into id attribute
+     * of each grave. Either all graves are created or none of them.
+     * 
+     * @param graves graves to be created.
+     * @throws IllegalArgumentException when graves collection is null or 
+     * contains null.
+     * @throws ValidationException when some grave breaks validation rules (see
+     * {@link #createGrave(Grave)}).
+     * @throws IllegalEntityException when some grave has already assigned id.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException;
     
     /**
      * Returns grave with given id.
@@ -67,5 +84,60 @@ public interface GraveManager {
      * @throws ServiceFailureException when db operation fails.
      */
     List<Grave> findAllGraves() throws ServiceFailureException;
+
+    /**
+     * Returns stream of all graves in the database. Graves are fetched from 
+     * the database lazily as the stream is consumed, so the memory consumption
+     * does not depend on the number of graves. The stream holds the database
+     * connection until it is closed, therefore it must be always closed
+     * (preferably with try-with-resources statement).
+     * 
+     * @return stream of all graves in database, which must be closed after use.
+     * @throws ServiceFailureException when db operation fails, including
+     * failures during consuming the stream.
+     */
+    Stream<Grave> streamAllGraves() throws ServiceFailureException;
+
+    /**
+     * Returns one page of graves ordered by id. The page contains at most 
+     * limit graves with id greater than afterId. To get the first page, use
+     * null as afterId; to get the next page, use id of the last grave of 
+     * the previous page. The cost of fetching the page does not depend on 
+     * its position.
+     * 
+     * @param afterId id of the last grave of previous page or null for the
+     * first page.
+     * @param limit maximal number of graves in the page.
+     * @return list of at most limit graves ordered by id.
+     * @throws IllegalArgumentException when limit is not positive number.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    List<Grave> findGraves(Long afterId, int limit) throws ServiceFailureException;
+
+    /**
+     * Returns all graves placed in given rectangular region. Both bounds of
+     * row and column ranges are inclusive.
+     * 
+     * @param rowFrom first row of the region.
+     * @param rowTo last row of the region.
+     * @param colFrom first column of the region.
+     * @param colTo last column of the region.
+     * @return list of graves in given region ordered by row, column and id.
+     * @throws IllegalArgumentException when rowFrom is greater than rowTo or
+     * colFrom is greater than colTo.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    List<Grave> findGravesInRegion(int rowFrom, int rowTo, int colFrom, int colTo) throws ServiceFailureException;
+
+    /**
+     * Returns grave placed at given position. When there are more graves at 
+     * the same position, the one with the lowest id is returned.
+     * 
+     * @param row row of the grave.
+     * @param col column of the grave.
+     * @return grave at given position or null if there is no such grave.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    Grave findGraveAt(int row, int col) throws ServiceFailureException;
     
 }
@@ -8,7 +8,9 @@ import cz.muni.fi.pv168.common.ValidationException;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This class implements GraveManager service.
@@ -17,13 +19,28 @@ import java.util.List;
  */
 public class GraveManagerImpl implements GraveManager {
 
+    private static final int BATCH_SIZE = 1000;
+    private static final int DEFAULT_FETCH_SIZE = 100;
+
     private DataSource dataSource;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     @SuppressWarnings("WeakerAccess")
     public GraveManagerImpl(DataSource dataSource) {
         this.dataSource = dataSource;
     }
 
+    /**
+     * Sets number of rows fetched from the database at once when the graves
+     * are streamed (see {@link #streamAllGraves()}).
+     *
+     * @param fetchSize number of rows, zero means the driver default
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) throw new IllegalArgumentException("fetchSize is negative");
+        this.fetchSize = fetchSize;
+    }
+
     @Override
     public List<Grave> findAllGraves() {
         try (Connection conn = dataSource.getConnection();
@@ -34,6 +51,72 @@ public class GraveManagerImpl implements GraveManager {
         }
     }
 
+    @Override
+    public Stream<Grave> streamAllGraves() {
+        Connection conn = null;
+        try {
+            conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement("SELECT id, col, row, capacity, note FROM Grave");
+            st.setFetchSize(fetchSize);
+            return DBUtils.stream(conn, st, GraveManagerImpl::rowToGrave);
+        } catch (SQLException ex) {
+            DBUtils.closeQuietly(conn);
+            throw new ServiceFailureException("Error when streaming all graves from DB", ex);
+        }
+    }
+
+    @Override
+    public List<Grave> findGraves(Long afterId, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, col, row, capacity, note FROM Grave WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY")) {
+            st.setLong(1, afterId == null ? Long.MIN_VALUE : afterId);
+            st.setInt(2, limit);
+            return executeQueryForMultipleGraves(st);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting page of graves after id = " + afterId + " from DB", ex);
+        }
+    }
+
+    @Override
+    public List<Grave> findGravesInRegion(int rowFrom, int rowTo, int colFrom, int colTo) {
+        checkRegion(rowFrom, rowTo, colFrom, colTo);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, col, row, capacity, note FROM Grave " +
+                             "WHERE row BETWEEN ? AND ? AND col BETWEEN ? AND ? " +
+                             "ORDER BY row, col, id")) {
+            st.setInt(1, rowFrom);
+            st.setInt(2, rowTo);
+            st.setInt(3, colFrom);
+            st.setInt(4, colTo);
+            return executeQueryForMultipleGraves(st);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting graves in region rows " + rowFrom + "-" + rowTo
+                    + ", columns " + colFrom + "-" + colTo + " from DB", ex);
+        }
+    }
+
+    @Override
+    public Grave findGraveAt(int row, int col) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, col, row, capacity, note FROM Grave WHERE row = ? AND col = ? " +
+                             "ORDER BY id FETCH FIRST 1 ROWS ONLY")) {
+            st.setInt(1, row);
+            st.setInt(2, col);
+            return executeQueryForSingleGrave(st);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting grave at row " + row + ", column " + col + " from DB", ex);
+        }
+    }
+
+    static void checkRegion(int rowFrom, int rowTo, int colFrom, int colTo) {
+        if (rowFrom > rowTo) throw new IllegalArgumentException("rowFrom is greater than rowTo");
+        if (colFrom > colTo) throw new IllegalArgumentException("colFrom is greater than colTo");
+    }
+
     @Override
     public void createGrave(Grave grave) {
         validate(grave);
@@ -52,6 +135,58 @@ public class GraveManagerImpl implements GraveManager {
         }
     }
 
+    @Override
+    public void createGraves(Collection<Grave> graves) {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        for (Grave grave : graves) {
+            validate(grave);
+            if (grave.getId() != null) throw new IllegalEntityException("grave id is already set");
+        }
+        if (graves.isEmpty()) return;
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement("INSERT INTO Grave (row,col,capacity,note) VALUES (?,?,?,?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                // Start transaction so that either all graves are inserted or none of them
+                conn.setAutoCommit(false);
+                // Keys generated for the batch are contiguous only when nobody else inserts graves
+                DBUtils.lockTableExclusively(conn, "Grave");
+                List<Grave> batch = new ArrayList<>(Math.min(graves.size(), BATCH_SIZE));
+                for (Grave grave : graves) {
+                    st.setInt(1, grave.getRow());
+                    st.setInt(2, grave.getColumn());
+                    st.setInt(3, grave.getCapacity());
+                    st.setString(4, grave.getNote());
+                    st.addBatch();
+                    batch.add(grave);
+                    if (batch.size() == BATCH_SIZE) {
+                        executeInsertBatch(st, batch);
+                    }
+                }
+                executeInsertBatch(st, batch);
+                conn.commit();
+            } catch (Exception ex) {
+                //something failed, let's rollback and forget the ids of graves which have not been stored
+                conn.rollback();
+                graves.forEach(grave -> grave.setId(null));
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when inserting graves into db", ex);
+        }
+    }
+
+    private static void executeInsertBatch(PreparedStatement st, List<Grave> batch) throws SQLException {
+        if (batch.isEmpty()) return;
+        long[] ids = DBUtils.executeInsertBatch(st, batch.size());
+        for (int i = 0; i < ids.length; i++) {
+            batch.get(i).setId(ids[i]);
+        }
+        batch.clear();
+    }
+
     @Override
     public Grave getGrave(Long id) {
         if (id == null) throw new IllegalArgumentException("id is null");
@@ -116,7 +251,7 @@ public class GraveManagerImpl implements GraveManager {
         }
     }
 
-    private static Grave rowToGrave(ResultSet rs) throws SQLException {
+    static Grave rowToGrave(ResultSet rs) throws SQLException {
         Grave result = new Grave();
         result.setId(rs.getLong("id"));
         result.setColumn(rs.getInt("col"));
@@ -126,7 +261,7 @@ public class GraveManagerImpl implements GraveManager {
         return result;
     }
 
-    private static void validate(Grave grave) {
+    static void validate(Grave grave) {
         if (grave == null) {
             throw new IllegalArgumentException("grave is null");
         }
@@ -0,0 +1,120 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * This class decorates another GraveManager with in-memory
+ * {@link GraveGridIndex}, which is used for serving
+ * {@link #findGravesInRegion(int, int, int, int)} and
+ * {@link #findGraveAt(int, int)} without accessing the database. All other
+ * operations are delegated and the index is updated after each successful
+ * modification.
+ *
+ * The index is loaded from the database when this manager is created (or
+ * filled with given graves, e.g. from {@link CemeterySnapshot}) and it
+ * reflects only modifications done through this manager, so all grave
+ * modifications must go through the same instance.
+ */
+public class GridIndexedGraveManager implements GraveManager {
+
+    private final GraveManager delegate;
+    private final GraveGridIndex index;
+
+    public GridIndexedGraveManager(GraveManager delegate) {
+        this(delegate, new GraveGridIndex());
+    }
+
+    /**
+     * Creates new manager and loads all graves into given index.
+     *
+     * @param delegate manager used for all database operations
+     * @param index index to be filled
+     * @throws ServiceFailureException when loading of graves fails
+     */
+    public GridIndexedGraveManager(GraveManager delegate, GraveGridIndex index) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (index == null) throw new IllegalArgumentException("index is null");
+        this.delegate = delegate;
+        this.index = index;
+        try (Stream<Grave> graves = delegate.streamAllGraves()) {
+            graves.forEach(index::put);
+        }
+    }
+
+    /**
+     * Creates new manager and fills given index with given graves instead of
+     * loading them from the database.
+     *
+     * @param delegate manager used for all database operations
+     * @param index index to be filled
+     * @param graves all graves stored in the database
+     */
+    public GridIndexedGraveManager(GraveManager delegate, GraveGridIndex index, Collection<Grave> graves) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (index == null) throw new IllegalArgumentException("index is null");
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        this.delegate = delegate;
+        this.index = index;
+        graves.forEach(index::put);
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGrave(grave);
+        index.put(grave);
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGraves(graves);
+        graves.forEach(index::put);
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        return delegate.getGrave(id);
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.updateGrave(grave);
+        index.put(grave);
+    }
+
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        delegate.deleteGrave(grave);
+        index.remove(grave.getId());
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        return delegate.findAllGraves();
+    }
+
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return delegate.streamAllGraves();
+    }
+
+    @Override
+    public List<Grave> findGraves(Long afterId, int limit) throws ServiceFailureException {
+        return delegate.findGraves(afterId, limit);
+    }
+
+    @Override
+    public List<Grave> findGravesInRegion(int rowFrom, int rowTo, int colFrom, int colTo) {
+        return index.findInRegion(rowFrom, rowTo, colFrom, colTo);
+    }
+
+    @Override
+    public Grave findGraveAt(int row, int col) {
+        return index.findAt(row, col);
+    }
+}
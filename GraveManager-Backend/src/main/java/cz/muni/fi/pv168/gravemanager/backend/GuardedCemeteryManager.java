@@ -0,0 +1,175 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CemeteryManager with alternative implementation of putting bodies into
+ * graves, which is better suited for concurrent burials into the same graves.
+ *
+ * Instead of checking the free space of the grave and updating it later, the
+ * occupancy counter is increased by single conditional UPDATE, which succeeds
+ * only when the grave has enough free space. The grave row is locked by this
+ * first statement until the end of the short transaction, so no other
+ * transaction can oversubscribe the grave. Transactions failed because of
+ * deadlock or lock timeout are retried. All other operations are inherited
+ * from {@link CemeteryManagerImpl}.
+ */
+public class GuardedCemeteryManager extends CemeteryManagerImpl {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 10;
+
+    private final DataSource dataSource;
+    private final int maxAttempts;
+
+    public GuardedCemeteryManager(DataSource dataSource) {
+        this(dataSource, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Creates new manager.
+     *
+     * @param dataSource data source
+     * @param maxAttempts maximal number of attempts to execute the burial
+     * transaction when it fails because of deadlock or lock timeout
+     */
+    public GuardedCemeteryManager(DataSource dataSource, int maxAttempts) {
+        super(dataSource);
+        if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts is not positive number");
+        this.dataSource = dataSource;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        try {
+            bury(Collections.singletonList(body), grave);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when putting body into grave", ex);
+        }
+    }
+
+    @Override
+    public void putBodiesIntoGrave(List<Body> bodies, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        if (bodies.isEmpty()) return;
+        try {
+            bury(bodies, grave);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when putting bodies into grave", ex);
+        }
+    }
+
+    private void bury(List<Body> bodies, Grave grave) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                tryToBury(bodies, grave);
+                return;
+            } catch (SQLException ex) {
+                if (attempt >= maxAttempts || !isTransient(ex)) {
+                    throw ex;
+                }
+                backOff();
+            }
+        }
+    }
+
+    private void tryToBury(List<Body> bodies, Grave grave) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement graveSt = conn.prepareStatement(
+                    "UPDATE Grave SET occupied = occupied + ? WHERE id = ? AND free >= ?");
+                 PreparedStatement st = conn.prepareStatement(
+                         "UPDATE Body SET graveId = ? WHERE id = ? AND graveId IS NULL")) {
+                conn.setAutoCommit(false);
+                // reserve the space first, this locks the grave row
+                graveSt.setInt(1, bodies.size());
+                graveSt.setLong(2, grave.getId());
+                graveSt.setInt(3, bodies.size());
+                if (graveSt.executeUpdate() == 0) {
+                    throw graveNotUpdated(conn, grave, bodies.size());
+                }
+                for (Body body : bodies) {
+                    st.setLong(1, grave.getId());
+                    st.setLong(2, body.getId());
+                    st.addBatch();
+                }
+                int[] counts = st.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0)
+                        throw new IllegalEntityException("Body " + bodies.get(i) + " not found or it is already placed in some grave");
+                    if (counts[i] != 1)
+                        throw new IllegalEntityException("updated " + counts[i] + " instead of 1 body");
+                }
+                conn.commit();
+            } catch (Exception ex) {
+                //something failed, let's rollback
+                conn.rollback();
+                throw ex;
+            } finally {
+                //re-enable autocommit mode
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Returns exception describing why the grave reservation did not update
+     * any row.
+     */
+    private static IllegalEntityException graveNotUpdated(Connection conn, Grave grave, int bodiesToAdd) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("SELECT id FROM Grave WHERE id = ?")) {
+            st.setLong(1, grave.getId());
+            try (ResultSet rs = st.executeQuery()) {
+                if (rs.next()) {
+                    return new IllegalEntityException("Grave " + grave + " has not enough free space for "
+                            + bodiesToAdd + " bodies");
+                }
+                return new IllegalEntityException("Grave " + grave + " does not exist in the database");
+            }
+        }
+    }
+
+    /**
+     * Returns true for deadlock or lock timeout, i.e. failures which could
+     * succeed when the transaction is executed again.
+     */
+    static boolean isTransient(SQLException ex) {
+        for (SQLException e = ex; e != null; e = e.getNextException()) {
+            String sqlState = e.getSQLState();
+            if ("40001".equals(sqlState) || "40XL1".equals(sqlState) || "40XL2".equals(sqlState)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void backOff() throws SQLException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(MAX_BACKOFF_MILLIS + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for retry", ex);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.MethodMetrics;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ServiceMetrics;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * This class decorates another BodyManager and records number of calls,
+ * errors and latencies of each method into {@link ServiceMetrics}, which can
+ * be published as JMX MBeans. Latency of {@link #streamAllBodies()} covers
+ * only opening of the stream, not its consumption.
+ */
+public class InstrumentedBodyManager implements BodyManager {
+
+    private final BodyManager delegate;
+    private final ServiceMetrics metrics;
+    private final MethodMetrics createBody;
+    private final MethodMetrics createBodies;
+    private final MethodMetrics getBody;
+    private final MethodMetrics updateBody;
+    private final MethodMetrics deleteBody;
+    private final MethodMetrics findAllBodies;
+    private final MethodMetrics streamAllBodies;
+    private final MethodMetrics findBodies;
+    private final MethodMetrics findBodiesByName;
+    private final MethodMetrics findBodiesByQuery;
+
+    public InstrumentedBodyManager(BodyManager delegate) {
+        this(delegate, ServiceMetrics.DEFAULT_DOMAIN);
+    }
+
+    /**
+     * Creates new instrumented manager.
+     *
+     * @param delegate manager used for all operations
+     * @param domain JMX domain of the MBeans, different instances need
+     * different domains when their MBeans are registered in the same server
+     */
+    public InstrumentedBodyManager(BodyManager delegate, String domain) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        this.delegate = delegate;
+        this.metrics = new ServiceMetrics(domain, "BodyManager", "createBody", "createBodies", "getBody",
+                "updateBody", "deleteBody", "findAllBodies", "streamAllBodies", "findBodies",
+                "findBodiesByName", "findBodiesByQuery");
+        this.createBody = metrics.method("createBody");
+        this.createBodies = metrics.method("createBodies");
+        this.getBody = metrics.method("getBody");
+        this.updateBody = metrics.method("updateBody");
+        this.deleteBody = metrics.method("deleteBody");
+        this.findAllBodies = metrics.method("findAllBodies");
+        this.streamAllBodies = metrics.method("streamAllBodies");
+        this.findBodies = metrics.method("findBodies");
+        this.findBodiesByName = metrics.method("findBodiesByName");
+        this.findBodiesByQuery = metrics.method("findBodiesByQuery");
+    }
+
+    /**
+     * Returns metrics of this manager. Metrics of
+     * {@link #findBodies(BodyQuery)} are named findBodiesByQuery to
+     * distinguish them from {@link #findBodies(Long, int)}.
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        createBody.run(() -> delegate.createBody(body));
+    }
+
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        createBodies.run(() -> delegate.createBodies(bodies));
+    }
+
+    @Override
+    public Body getBody(Long id) throws ServiceFailureException {
+        return getBody.call(() -> delegate.getBody(id));
+    }
+
+    @Override
+    public void updateBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        updateBody.run(() -> delegate.updateBody(body));
+    }
+
+    @Override
+    public void deleteBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        deleteBody.run(() -> delegate.deleteBody(body));
+    }
+
+    @Override
+    public List<Body> findAllBodies() throws ServiceFailureException {
+        return findAllBodies.call(delegate::findAllBodies);
+    }
+
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        return streamAllBodies.call(delegate::streamAllBodies);
+    }
+
+    @Override
+    public List<Body> findBodies(Long afterId, int limit) throws ServiceFailureException {
+        return findBodies.call(() -> delegate.findBodies(afterId, limit));
+    }
+
+    @Override
+    public List<Body> findBodiesByName(String prefix, int limit) throws ServiceFailureException {
+        return findBodiesByName.call(() -> delegate.findBodiesByName(prefix, limit));
+    }
+
+    @Override
+    public List<Body> findBodies(BodyQuery query) throws ServiceFailureException {
+        return findBodiesByQuery.call(() -> delegate.findBodies(query));
+    }
+}
@@ -0,0 +1,125 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.MethodMetrics;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ServiceMetrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class decorates another CemeteryManager and records number of calls,
+ * errors and latencies of each method into {@link ServiceMetrics}, which can
+ * be published as JMX MBeans.
+ */
+public class InstrumentedCemeteryManager implements CemeteryManager {
+
+    private final CemeteryManager delegate;
+    private final ServiceMetrics metrics;
+    private final MethodMetrics findGraveWithBody;
+    private final MethodMetrics findBodiesInGrave;
+    private final MethodMetrics findAllGravesWithBodies;
+    private final MethodMetrics findGravesWithBodies;
+    private final MethodMetrics findUnburiedBodies;
+    private final MethodMetrics findEmptyGraves;
+    private final MethodMetrics findGravesWithSomeFreeSpace;
+    private final MethodMetrics findNearestGravesWithFreeSpace;
+    private final MethodMetrics putBodyIntoGrave;
+    private final MethodMetrics putBodiesIntoGrave;
+    private final MethodMetrics removeBodyFromGrave;
+
+    public InstrumentedCemeteryManager(CemeteryManager delegate) {
+        this(delegate, ServiceMetrics.DEFAULT_DOMAIN);
+    }
+
+    /**
+     * Creates new instrumented manager.
+     *
+     * @param delegate manager used for all operations
+     * @param domain JMX domain of the MBeans, different instances need
+     * different domains when their MBeans are registered in the same server
+     */
+    public InstrumentedCemeteryManager(CemeteryManager delegate, String domain) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        this.delegate = delegate;
+        this.metrics = new ServiceMetrics(domain, "CemeteryManager", "findGraveWithBody", "findBodiesInGrave",
+                "findAllGravesWithBodies", "findGravesWithBodies", "findUnburiedBodies", "findEmptyGraves",
+                "findGravesWithSomeFreeSpace", "findNearestGravesWithFreeSpace", "putBodyIntoGrave",
+                "putBodiesIntoGrave", "removeBodyFromGrave");
+        this.findGraveWithBody = metrics.method("findGraveWithBody");
+        this.findBodiesInGrave = metrics.method("findBodiesInGrave");
+        this.findAllGravesWithBodies = metrics.method("findAllGravesWithBodies");
+        this.findGravesWithBodies = metrics.method("findGravesWithBodies");
+        this.findUnburiedBodies = metrics.method("findUnburiedBodies");
+        this.findEmptyGraves = metrics.method("findEmptyGraves");
+        this.findGravesWithSomeFreeSpace = metrics.method("findGravesWithSomeFreeSpace");
+        this.findNearestGravesWithFreeSpace = metrics.method("findNearestGravesWithFreeSpace");
+        this.putBodyIntoGrave = metrics.method("putBodyIntoGrave");
+        this.putBodiesIntoGrave = metrics.method("putBodiesIntoGrave");
+        this.removeBodyFromGrave = metrics.method("removeBodyFromGrave");
+    }
+
+    /**
+     * Returns metrics of this manager.
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Grave findGraveWithBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        return findGraveWithBody.call(() -> delegate.findGraveWithBody(body));
+    }
+
+    @Override
+    public List<Body> findBodiesInGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        return findBodiesInGrave.call(() -> delegate.findBodiesInGrave(grave));
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findAllGravesWithBodies() throws ServiceFailureException {
+        return findAllGravesWithBodies.call(delegate::findAllGravesWithBodies);
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findGravesWithBodies(Collection<Long> graveIds) throws ServiceFailureException {
+        return findGravesWithBodies.call(() -> delegate.findGravesWithBodies(graveIds));
+    }
+
+    @Override
+    public List<Body> findUnburiedBodies() throws ServiceFailureException {
+        return findUnburiedBodies.call(delegate::findUnburiedBodies);
+    }
+
+    @Override
+    public List<Grave> findEmptyGraves() throws ServiceFailureException {
+        return findEmptyGraves.call(delegate::findEmptyGraves);
+    }
+
+    @Override
+    public List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException {
+        return findGravesWithSomeFreeSpace.call(delegate::findGravesWithSomeFreeSpace);
+    }
+
+    @Override
+    public List<Grave> findNearestGravesWithFreeSpace(int row, int col, int k) throws ServiceFailureException {
+        return findNearestGravesWithFreeSpace.call(() -> delegate.findNearestGravesWithFreeSpace(row, col, k));
+    }
+
+    @Override
+    public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        putBodyIntoGrave.run(() -> delegate.putBodyIntoGrave(body, grave));
+    }
+
+    @Override
+    public void putBodiesIntoGrave(List<Body> bodies, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        putBodiesIntoGrave.run(() -> delegate.putBodiesIntoGrave(bodies, grave));
+    }
+
+    @Override
+    public void removeBodyFromGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        removeBodyFromGrave.run(() -> delegate.removeBodyFromGrave(body, grave));
+    }
+}
@@ -0,0 +1,119 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.MethodMetrics;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ServiceMetrics;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * This class decorates another GraveManager and records number of calls,
+ * errors and latencies of each method into {@link ServiceMetrics}, which can
+ * be published as JMX MBeans. Latency of {@link #streamAllGraves()} covers
+ * only opening of the stream, not its consumption.
+ */
+public class InstrumentedGraveManager implements GraveManager {
+
+    private final GraveManager delegate;
+    private final ServiceMetrics metrics;
+    private final MethodMetrics createGrave;
+    private final MethodMetrics createGraves;
+    private final MethodMetrics getGrave;
+    private final MethodMetrics updateGrave;
+    private final MethodMetrics deleteGrave;
+    private final MethodMetrics findAllGraves;
+    private final MethodMetrics streamAllGraves;
+    private final MethodMetrics findGraves;
+    private final MethodMetrics findGravesInRegion;
+    private final MethodMetrics findGraveAt;
+
+    public InstrumentedGraveManager(GraveManager delegate) {
+        this(delegate, ServiceMetrics.DEFAULT_DOMAIN);
+    }
+
+    /**
+     * Creates new instrumented manager.
+     *
+     * @param delegate manager used for all operations
+     * @param domain JMX domain of the MBeans, different instances need
+     * different domains when their MBeans are registered in the same server
+     */
+    public InstrumentedGraveManager(GraveManager delegate, String domain) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        this.delegate = delegate;
+        this.metrics = new ServiceMetrics(domain, "GraveManager", "createGrave", "createGraves", "getGrave",
+                "updateGrave", "deleteGrave", "findAllGraves", "streamAllGraves", "findGraves",
+                "findGravesInRegion", "findGraveAt");
+        this.createGrave = metrics.method("createGrave");
+        this.createGraves = metrics.method("createGraves");
+        this.getGrave = metrics.method("getGrave");
+        this.updateGrave = metrics.method("updateGrave");
+        this.deleteGrave = metrics.method("deleteGrave");
+        this.findAllGraves = metrics.method("findAllGraves");
+        this.streamAllGraves = metrics.method("streamAllGraves");
+        this.findGraves = metrics.method("findGraves");
+        this.findGravesInRegion = metrics.method("findGravesInRegion");
+        this.findGraveAt = metrics.method("findGraveAt");
+    }
+
+    /**
+     * Returns metrics of this manager.
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        createGrave.run(() -> delegate.createGrave(grave));
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        createGraves.run(() -> delegate.createGraves(graves));
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        return getGrave.call(() -> delegate.getGrave(id));
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        updateGrave.run(() -> delegate.updateGrave(grave));
+    }
+
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        deleteGrave.run(() -> delegate.deleteGrave(grave));
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        return findAllGraves.call(delegate::findAllGraves);
+    }
+
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return streamAllGraves.call(delegate::streamAllGraves);
+    }
+
+    @Override
+    public List<Grave> findGraves(Long afterId, int limit) throws ServiceFailureException {
+        return findGraves.call(() -> delegate.findGraves(afterId, limit));
+    }
+
+    @Override
+    public List<Grave> findGravesInRegion(int rowFrom, int rowTo, int colFrom, int colTo) throws ServiceFailureException {
+        return findGravesInRegion.call(() -> delegate.findGravesInRegion(rowFrom, rowTo, colFrom, colTo));
+    }
+
+    @Override
+    public Grave findGraveAt(int row, int col) throws ServiceFailureException {
+        return findGraveAt.call(() -> delegate.findGraveAt(row, col));
+    }
+}
@@ -0,0 +1,174 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * This class decorates another BodyManager with in-memory
+ * {@link BodyNameIndex}, which is used for serving
+ * {@link #findBodiesByName(String, int)} without accessing the database. All
+ * other operations are delegated and the index is updated after each
+ * successful modification.
+ *
+ * The index is loaded from the database when this manager is created (or
+ * filled with given bodies, e.g. from {@link CemeterySnapshot}) and it
+ * reflects only modifications done through this manager, so all body
+ * modifications must go through the same instance.
+ *
+ * Update or deletion of a body and the following index change are done while
+ * holding a lock for the body id, so concurrent modifications of the same
+ * body change the index in the same order as the database. Created bodies
+ * are added only when the index does not contain them yet, so they do not
+ * replace a concurrent update done before they were indexed. A body must not
+ * be deleted before the call which created it returns.
+ */
+public class NameIndexedBodyManager implements BodyManager {
+
+    private static final int STRIPES = 64;
+
+    private final BodyManager delegate;
+    private final BodyNameIndex index;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public NameIndexedBodyManager(BodyManager delegate) {
+        this(delegate, new BodyNameIndex());
+    }
+
+    /**
+     * Creates new manager and loads all bodies into given index.
+     *
+     * @param delegate manager used for all database operations
+     * @param index index to be filled
+     * @throws ServiceFailureException when loading of bodies fails
+     */
+    public NameIndexedBodyManager(BodyManager delegate, BodyNameIndex index) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (index == null) throw new IllegalArgumentException("index is null");
+        this.delegate = delegate;
+        this.index = index;
+        initLocks();
+        try (Stream<Body> bodies = delegate.streamAllBodies()) {
+            bodies.forEach(index::put);
+        }
+    }
+
+    /**
+     * Creates new manager and fills given index with given bodies instead of
+     * loading them from the database.
+     *
+     * @param delegate manager used for all database operations
+     * @param index index to be filled
+     * @param bodies all bodies stored in the database
+     */
+    public NameIndexedBodyManager(BodyManager delegate, BodyNameIndex index, Collection<Body> bodies) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (index == null) throw new IllegalArgumentException("index is null");
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        this.delegate = delegate;
+        this.index = index;
+        initLocks();
+        bodies.forEach(index::put);
+    }
+
+    private void initLocks() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createBody(body);
+        index.putIfAbsent(body);
+    }
+
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createBodies(bodies);
+        bodies.forEach(index::putIfAbsent);
+    }
+
+    @Override
+    public Body getBody(Long id) throws ServiceFailureException {
+        return delegate.getBody(id);
+    }
+
+    @Override
+    public void updateBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        ReentrantLock lock = lock(body);
+        try {
+            delegate.updateBody(body);
+            index.put(body);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    @Override
+    public void deleteBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        ReentrantLock lock = lock(body);
+        try {
+            delegate.deleteBody(body);
+            index.remove(body.getId());
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    @Override
+    public List<Body> findAllBodies() throws ServiceFailureException {
+        return delegate.findAllBodies();
+    }
+
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        return delegate.streamAllBodies();
+    }
+
+    @Override
+    public List<Body> findBodies(Long afterId, int limit) throws ServiceFailureException {
+        return delegate.findBodies(afterId, limit);
+    }
+
+    @Override
+    public List<Body> findBodies(BodyQuery query) throws ServiceFailureException {
+        return delegate.findBodies(query);
+    }
+
+    @Override
+    public List<Body> findBodiesByName(String prefix, int limit) {
+        return index.findByName(prefix, limit);
+    }
+
+    /**
+     * Acquires the lock for given body.
+     *
+     * @return acquired lock or null for body without id, which is left for
+     * the delegate to reject
+     */
+    private ReentrantLock lock(Body body) {
+        if (body == null || body.getId() == null) {
+            return null;
+        }
+        int hash = Long.hashCode(body.getId());
+        // spread the bits, so that consecutive ids use different locks
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        ReentrantLock lock = locks[hash & (locks.length - 1)];
+        lock.lock();
+        return lock;
+    }
+
+    private static void unlock(ReentrantLock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Objects;
+
+/**
+ * Occupancy of some set of graves: number of graves, their total capacity and
+ * number of bodies placed in them. This class is immutable.
+ */
+public final class Occupancy {
+
+    static final Occupancy EMPTY = new Occupancy(0, 0, 0);
+
+    private final long graves;
+    private final long capacity;
+    private final long used;
+
+    Occupancy(long graves, long capacity, long used) {
+        this.graves = graves;
+        this.capacity = capacity;
+        this.used = used;
+    }
+
+    /**
+     * Returns number of graves.
+     */
+    public long getGraves() {
+        return graves;
+    }
+
+    /**
+     * Returns total capacity of the graves.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns number of bodies placed in the graves.
+     */
+    public long getUsed() {
+        return used;
+    }
+
+    /**
+     * Returns number of bodies which can be still placed in the graves.
+     */
+    public long getFree() {
+        return capacity - used;
+    }
+
+    /**
+     * Returns ratio of used capacity, from 0 to 1. It is 0 when there are no
+     * graves.
+     */
+    public double getFillRatio() {
+        return capacity == 0 ? 0 : (double) used / capacity;
+    }
+
+    Occupancy plus(long graves, long capacity, long used) {
+        return new Occupancy(this.graves + graves, this.capacity + capacity, this.used + used);
+    }
+
+    @Override
+    public String toString() {
+        return "Occupancy{"
+                + "graves=" + graves
+                + ", capacity=" + capacity
+                + ", used=" + used
+                + '}';
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Occupancy other = (Occupancy) obj;
+        return graves == other.graves && capacity == other.capacity && used == other.used;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(graves, capacity, used);
+    }
+}
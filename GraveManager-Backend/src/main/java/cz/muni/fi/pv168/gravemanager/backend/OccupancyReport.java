@@ -0,0 +1,163 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Occupancy of the whole cemetery, of its rows, columns and square blocks,
+ * which can be used for drawing a heatmap. Only rows, columns and blocks
+ * containing some grave are included. This class is immutable.
+ *
+ * @see CemeteryStatistics#getOccupancyReport(int)
+ */
+public final class OccupancyReport {
+
+    private final int blockSize;
+    private final Occupancy total;
+    private final SortedMap<Integer, Occupancy> rows;
+    private final SortedMap<Integer, Occupancy> columns;
+    private final List<Block> blocks;
+
+    private OccupancyReport(int blockSize, Occupancy total, SortedMap<Integer, Occupancy> rows,
+                            SortedMap<Integer, Occupancy> columns, List<Block> blocks) {
+        this.blockSize = blockSize;
+        this.total = total;
+        this.rows = Collections.unmodifiableSortedMap(rows);
+        this.columns = Collections.unmodifiableSortedMap(columns);
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Returns number of rows and columns covered by single block.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns occupancy of the whole cemetery.
+     */
+    public Occupancy getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns occupancy of each row, keyed by row.
+     */
+    public SortedMap<Integer, Occupancy> getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns occupancy of each column, keyed by column.
+     */
+    public SortedMap<Integer, Occupancy> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns occupancy of blocks ordered by block row and block column.
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Occupancy of square block of graves. Block with row r and column c
+     * covers rows from r * blockSize to (r + 1) * blockSize - 1 and columns
+     * from c * blockSize to (c + 1) * blockSize - 1.
+     */
+    public static final class Block {
+
+        private final int row;
+        private final int column;
+        private final Occupancy occupancy;
+
+        private Block(int row, int column, Occupancy occupancy) {
+            this.row = row;
+            this.column = column;
+            this.occupancy = occupancy;
+        }
+
+        /**
+         * Returns row of the block.
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Returns column of the block.
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * Returns occupancy of graves in the block.
+         */
+        public Occupancy getOccupancy() {
+            return occupancy;
+        }
+
+        @Override
+        public String toString() {
+            return "Block{"
+                    + "row=" + row
+                    + ", column=" + column
+                    + ", occupancy=" + occupancy
+                    + '}';
+        }
+    }
+
+    /**
+     * Collects occupancy of graves, which can be added in any order.
+     */
+    static final class Builder {
+
+        private final int blockSize;
+        private Occupancy total = Occupancy.EMPTY;
+        private final SortedMap<Integer, Occupancy> rows = new TreeMap<>();
+        private final SortedMap<Integer, Occupancy> columns = new TreeMap<>();
+        private final Map<Long, Occupancy> blocks = new HashMap<>();
+
+        Builder(int blockSize) {
+            if (blockSize <= 0) throw new IllegalArgumentException("blockSize is not positive number");
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Adds graves placed at the same position, typically single grave.
+         *
+         * @param row row of the graves
+         * @param col column of the graves
+         * @param graves number of the graves
+         * @param capacity total capacity of the graves
+         * @param used number of bodies placed in the graves
+         */
+        void add(int row, int col, long graves, long capacity, long used) {
+            total = total.plus(graves, capacity, used);
+            rows.merge(row, new Occupancy(graves, capacity, used), Builder::sum);
+            columns.merge(col, new Occupancy(graves, capacity, used), Builder::sum);
+            long blockKey = ((long) Math.floorDiv(row, blockSize) << 32) | (Math.floorDiv(col, blockSize) & 0xFFFFFFFFL);
+            blocks.merge(blockKey, new Occupancy(graves, capacity, used), Builder::sum);
+        }
+
+        OccupancyReport build() {
+            List<Block> blockList = new ArrayList<>(blocks.size());
+            blocks.forEach((key, occupancy) -> blockList.add(new Block((int) (key >> 32), key.intValue(), occupancy)));
+            blockList.sort(Comparator.comparingInt(Block::getRow).thenComparingInt(Block::getColumn));
+            return new OccupancyReport(blockSize, total, rows, columns, blockList);
+        }
+
+        private static Occupancy sum(Occupancy a, Occupancy b) {
+            return a.plus(b.getGraves(), b.getCapacity(), b.getUsed());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Upgrades database created by older version of createTables.sql to the
+ * current schema version. The version of the schema is recorded in table
+ * SCHEMA_VERSION. Each version has its own script upgrade/upgrade-N.sql,
+ * which upgrades the schema from version N - 1 to version N and records the
+ * new version in the same transaction, so the scripts are applied in order
+ * and each of them exactly once, even when some of them fails.
+ *
+ * Databases created before the version was recorded have no SCHEMA_VERSION
+ * table; their version is detected from the columns and indexes they have.
+ */
+public class SchemaUpgrader {
+
+    private static final Logger logger = Logger.getLogger(SchemaUpgrader.class.getName());
+
+    /**
+     * Version of the schema created by createTables.sql.
+     */
+    public static final int CURRENT_VERSION = 6;
+
+    private final DataSource dataSource;
+
+    public SchemaUpgrader(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns version of the schema, which is either recorded in the database
+     * or detected from the schema.
+     *
+     * @return version of the schema
+     * @throws IllegalStateException when the database has no GRAVE table
+     * @throws ServiceFailureException when db operation fails
+     */
+    public int getVersion() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection()) {
+            Integer recorded = readRecordedVersion(conn);
+            return recorded != null ? recorded : detectVersion(conn);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when reading schema version", ex);
+        }
+    }
+
+    /**
+     * Applies all upgrade scripts newer than the version of the schema.
+     *
+     * @return number of applied scripts
+     * @throws IllegalStateException when the database has no GRAVE table or
+     * when its schema is newer than this version of application
+     * @throws ServiceFailureException when db operation fails
+     */
+    public int upgrade() throws ServiceFailureException {
+        int version;
+        try (Connection conn = dataSource.getConnection()) {
+            Integer recorded = readRecordedVersion(conn);
+            if (recorded != null) {
+                version = recorded;
+            } else {
+                version = detectVersion(conn);
+                recordVersion(conn, version);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when reading schema version", ex);
+        }
+        if (version > CURRENT_VERSION) {
+            throw new IllegalStateException("Schema version " + version + " is newer than " + CURRENT_VERSION);
+        }
+        for (int next = version + 1; next <= CURRENT_VERSION; next++) {
+            String script = "upgrade/upgrade-" + next + ".sql";
+            try (InputStream is = SchemaUpgrader.class.getResourceAsStream(script)) {
+                if (is == null) throw new IllegalStateException("Missing upgrade script " + script);
+                DBUtils.executeSqlScript(dataSource, is);
+            } catch (SQLException | IOException ex) {
+                throw new ServiceFailureException("Error when upgrading schema to version " + next, ex);
+            }
+            logger.info("Schema upgraded to version " + next);
+        }
+        return CURRENT_VERSION - version;
+    }
+
+    private static Integer readRecordedVersion(Connection conn) throws SQLException {
+        if (!hasTable(conn, "SCHEMA_VERSION")) {
+            return null;
+        }
+        try (PreparedStatement st = conn.prepareStatement("SELECT version FROM SCHEMA_VERSION");
+             ResultSet rs = st.executeQuery()) {
+            if (!rs.next()) throw new IllegalStateException("SCHEMA_VERSION table is empty");
+            return rs.getInt(1);
+        }
+    }
+
+    private static void recordVersion(Connection conn, int version) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement st = conn.prepareStatement("CREATE TABLE SCHEMA_VERSION (version INTEGER NOT NULL)")) {
+                st.executeUpdate();
+            }
+            try (PreparedStatement st = conn.prepareStatement("INSERT INTO SCHEMA_VERSION (version) VALUES (?)")) {
+                st.setInt(1, version);
+                st.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Detects version of schema without SCHEMA_VERSION table by checking the
+     * columns and indexes added by each upgrade script. The table was added
+     * in version 5, so older versions are detected only.
+     */
+    private static int detectVersion(Connection conn) throws SQLException {
+        if (!hasTable(conn, "GRAVE")) throw new IllegalStateException("Database contains no GRAVE table");
+        if (!hasColumn(conn, "GRAVE", "OCCUPIED")) {
+            return 1;
+        }
+        if (!hasIndex(conn, "GRAVE", "GRAVE_POSITION")) {
+            return 2;
+        }
+        if (!hasColumn(conn, "BODY", "NAMEKEY")) {
+            return 3;
+        }
+        if (!hasIndex(conn, "BODY", "BODY_BORN")) {
+            return 4;
+        }
+        return 5;
+    }
+
+    private static boolean hasTable(Connection conn, String table) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, conn.getSchema(), table, null)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getColumns(null, conn.getSchema(), table, column)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getIndexInfo(null, conn.getSchema(), table, false, true)) {
+            while (rs.next()) {
+                if (index.equals(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
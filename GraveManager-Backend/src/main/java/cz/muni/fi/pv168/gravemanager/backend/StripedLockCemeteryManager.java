@@ -0,0 +1,207 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class decorates another CemeteryManager and serializes modifications
+ * of the same grave inside the JVM. Each grave id is mapped to one lock from
+ * fixed array of locks, so concurrent modifications of the same grave wait
+ * for each other before they access the database, while modifications of
+ * graves mapped to different locks proceed in parallel. The waiting threads
+ * wait in the JVM before they borrow a connection, instead of holding the
+ * connection while they wait for the grave row lock in the database. The
+ * modifications lock the rows in the same order, so they do not deadlock
+ * even without this decorator.
+ *
+ * Only modifications done through the same instance are serialized. Read
+ * operations are delegated without locking. Time spent by waiting for locks
+ * is recorded and available via getters.
+ */
+public class StripedLockCemeteryManager implements CemeteryManager {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final CemeteryManager delegate;
+    private final ReentrantLock[] locks;
+
+    private final LongAdder lockCount = new LongAdder();
+    private final LongAdder contendedLockCount = new LongAdder();
+    private final LongAdder totalLockWaitNanos = new LongAdder();
+    private final AtomicLong maxLockWaitNanos = new AtomicLong();
+
+    public StripedLockCemeteryManager(CemeteryManager delegate) {
+        this(delegate, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates new manager.
+     *
+     * @param delegate manager used for all database operations
+     * @param stripes number of locks, it is rounded up to the power of two
+     */
+    public StripedLockCemeteryManager(CemeteryManager delegate, int stripes) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (stripes <= 0 || stripes > 1 << 30) throw new IllegalArgumentException("stripes is out of range");
+        this.delegate = delegate;
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public Grave findGraveWithBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        return delegate.findGraveWithBody(body);
+    }
+
+    @Override
+    public List<Body> findBodiesInGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        return delegate.findBodiesInGrave(grave);
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findAllGravesWithBodies() throws ServiceFailureException {
+        return delegate.findAllGravesWithBodies();
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findGravesWithBodies(Collection<Long> graveIds) throws ServiceFailureException {
+        return delegate.findGravesWithBodies(graveIds);
+    }
+
+    @Override
+    public List<Body> findUnburiedBodies() throws ServiceFailureException {
+        return delegate.findUnburiedBodies();
+    }
+
+    @Override
+    public List<Grave> findEmptyGraves() throws ServiceFailureException {
+        return delegate.findEmptyGraves();
+    }
+
+    @Override
+    public List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException {
+        return delegate.findGravesWithSomeFreeSpace();
+    }
+
+    @Override
+    public List<Grave> findNearestGravesWithFreeSpace(int row, int col, int k) throws ServiceFailureException {
+        return delegate.findNearestGravesWithFreeSpace(row, col, k);
+    }
+
+    @Override
+    public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        ReentrantLock lock = lock(grave);
+        try {
+            delegate.putBodyIntoGrave(body, grave);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    @Override
+    public void putBodiesIntoGrave(List<Body> bodies, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        ReentrantLock lock = lock(grave);
+        try {
+            delegate.putBodiesIntoGrave(bodies, grave);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    @Override
+    public void removeBodyFromGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        ReentrantLock lock = lock(grave);
+        try {
+            delegate.removeBodyFromGrave(body, grave);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    /**
+     * Acquires the lock for given grave.
+     *
+     * @return acquired lock or null for grave without id, which is left for
+     * the delegate to reject
+     */
+    private ReentrantLock lock(Grave grave) {
+        if (grave == null || grave.getId() == null) {
+            return null;
+        }
+        ReentrantLock lock = lockFor(grave.getId());
+        lockCount.increment();
+        if (!lock.tryLock()) {
+            contendedLockCount.increment();
+            long start = System.nanoTime();
+            lock.lock();
+            long waitNanos = System.nanoTime() - start;
+            totalLockWaitNanos.add(waitNanos);
+            maxLockWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+        return lock;
+    }
+
+    private static void unlock(ReentrantLock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    ReentrantLock lockFor(long graveId) {
+        int hash = Long.hashCode(graveId);
+        // spread the bits, so that consecutive ids use different locks
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
+    }
+
+    /**
+     * Returns number of locks used by this manager.
+     */
+    public int getStripes() {
+        return locks.length;
+    }
+
+    /**
+     * Returns number of acquired grave locks.
+     */
+    public long getLockCount() {
+        return lockCount.sum();
+    }
+
+    /**
+     * Returns number of grave locks, which were held by another thread when
+     * they were requested.
+     */
+    public long getContendedLockCount() {
+        return contendedLockCount.sum();
+    }
+
+    /**
+     * Returns total time spent by waiting for grave locks.
+     */
+    public long getTotalLockWaitNanos() {
+        return totalLockWaitNanos.sum();
+    }
+
+    /**
+     * Returns the longest time spent by waiting for grave lock.
+     */
+    public long getMaxLockWaitNanos() {
+        return maxLockWaitNanos.get();
+    }
+}
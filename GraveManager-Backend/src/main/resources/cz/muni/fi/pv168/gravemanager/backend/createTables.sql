@@ -3,9 +3,15 @@ CREATE TABLE "GRAVE" (
     "COL" INTEGER NOT NULL,
     "ROW" INTEGER NOT NULL,
     "CAPACITY" INTEGER NOT NULL,
-    "NOTE" VARCHAR(255)
+    "NOTE" VARCHAR(255),
+    "OCCUPIED" INTEGER NOT NULL DEFAULT 0,
+    "FREE" INTEGER GENERATED ALWAYS AS ("CAPACITY" - "OCCUPIED")
 );
 
+CREATE INDEX "GRAVE_OCCUPIED" ON "GRAVE" ("OCCUPIED");
+CREATE INDEX "GRAVE_FREE" ON "GRAVE" ("FREE");
+CREATE INDEX "GRAVE_POSITION" ON "GRAVE" ("ROW", "COL");
+
 CREATE TABLE "BODY" (
     "ID" BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
     "GRAVEID" BIGINT REFERENCES GRAVE (ID),
@@ -13,5 +19,18 @@ CREATE TABLE "BODY" (
     "GENDER" VARCHAR(6) NOT NULL,
     "BORN" DATE,
     "DIED" DATE,
-    "VAMPIRE" BOOLEAN NOT NULL
+    "VAMPIRE" BOOLEAN NOT NULL,
+    -- normalized name can be twice as long as the name, see BodyNameIndex
+    "NAMEKEY" VARCHAR(511) NOT NULL DEFAULT ''
 );
+
+CREATE INDEX "BODY_BORN" ON "BODY" ("BORN");
+CREATE INDEX "BODY_DIED" ON "BODY" ("DIED");
+
+-- version of this schema, databases created by older versions are upgraded
+-- by SchemaUpgrader
+CREATE TABLE "SCHEMA_VERSION" (
+    "VERSION" INTEGER NOT NULL
+);
+
+INSERT INTO "SCHEMA_VERSION" ("VERSION") VALUES (6);
@@ -1,2 +1,3 @@
+DROP TABLE "SCHEMA_VERSION";
 DROP TABLE "BODY";
 DROP TABLE "GRAVE";
\ No newline at end of file
@@ -0,0 +1,12 @@
+-- Version 2: the number of bodies placed in each grave is maintained in
+-- GRAVE instead of being counted by GROUP BY joins.
+
+ALTER TABLE "GRAVE" ADD COLUMN "OCCUPIED" INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE "GRAVE" ADD COLUMN "FREE" INTEGER GENERATED ALWAYS AS ("CAPACITY" - "OCCUPIED");
+
+UPDATE "GRAVE" SET "OCCUPIED" = (SELECT COUNT(*) FROM "BODY" WHERE "BODY"."GRAVEID" = "GRAVE"."ID");
+
+CREATE INDEX "GRAVE_OCCUPIED" ON "GRAVE" ("OCCUPIED");
+CREATE INDEX "GRAVE_FREE" ON "GRAVE" ("FREE");
+
+UPDATE "SCHEMA_VERSION" SET "VERSION" = 2;
@@ -0,0 +1,5 @@
+-- Version 3: index for searching graves by position.
+
+CREATE INDEX "GRAVE_POSITION" ON "GRAVE" ("ROW", "COL");
+
+UPDATE "SCHEMA_VERSION" SET "VERSION" = 3;
@@ -0,0 +1,11 @@
+-- Version 4: search key of body names.
+
+-- the search key is computed by the same code as used by BodyManagerImpl
+ALTER TABLE "BODY" ADD COLUMN "NAMEKEY" VARCHAR(256) NOT NULL DEFAULT '';
+CREATE FUNCTION "NORMALIZE_NAME" ("NAME" VARCHAR(255)) RETURNS VARCHAR(255)
+    PARAMETER STYLE JAVA NO SQL LANGUAGE JAVA
+    EXTERNAL NAME 'cz.muni.fi.pv168.gravemanager.backend.BodyNameIndex.normalize';
+UPDATE "BODY" SET "NAMEKEY" = ' ' || "NORMALIZE_NAME"("NAME");
+DROP FUNCTION "NORMALIZE_NAME";
+
+UPDATE "SCHEMA_VERSION" SET "VERSION" = 4;
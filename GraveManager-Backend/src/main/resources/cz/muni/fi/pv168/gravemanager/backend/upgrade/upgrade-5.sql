@@ -0,0 +1,6 @@
+-- Version 5: indexes for searching bodies by dates.
+
+CREATE INDEX "BODY_BORN" ON "BODY" ("BORN");
+CREATE INDEX "BODY_DIED" ON "BODY" ("DIED");
+
+UPDATE "SCHEMA_VERSION" SET "VERSION" = 5;
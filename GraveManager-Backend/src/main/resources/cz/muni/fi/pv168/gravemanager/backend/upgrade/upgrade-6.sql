@@ -0,0 +1,11 @@
+-- Version 6: search keys of names composed again after removing diacritics,
+-- the composed key of some names is longer than the original column.
+
+ALTER TABLE "BODY" ALTER COLUMN "NAMEKEY" SET DATA TYPE VARCHAR(511);
+CREATE FUNCTION "NORMALIZE_NAME" ("NAME" VARCHAR(255)) RETURNS VARCHAR(510)
+    PARAMETER STYLE JAVA NO SQL LANGUAGE JAVA
+    EXTERNAL NAME 'cz.muni.fi.pv168.gravemanager.backend.BodyNameIndex.normalize';
+UPDATE "BODY" SET "NAMEKEY" = ' ' || "NORMALIZE_NAME"("NAME");
+DROP FUNCTION "NORMALIZE_NAME";
+
+UPDATE "SCHEMA_VERSION" SET "VERSION" = 6;
@@ -0,0 +1,110 @@
+package cz.muni.fi.pv168.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncExecutors}.
+ */
+public class AsyncExecutorsTest {
+
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertMaxConcurrency(ExecutorService executor, int maxConcurrency) throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < maxConcurrency * 5; i++) {
+            futures.add(AsyncExecutors.runAsync(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertThat(maxRunning.get()).isEqualTo(maxConcurrency);
+    }
+
+    @Test
+    public void boundedExecutorLimitsConcurrency() throws Exception {
+        executor = AsyncExecutors.newBoundedExecutor(3);
+        assertMaxConcurrency(executor, 3);
+    }
+
+    @Test
+    public void concurrencyLimitingExecutorLimitsConcurrency() throws Exception {
+        executor = new AsyncExecutors.ConcurrencyLimitingExecutor(Executors.newCachedThreadPool(), 2);
+        assertMaxConcurrency(executor, 2);
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void virtualThreadsAreUsedWhenAvailable() throws Exception {
+        ExecutorService virtualThreadExecutor = AsyncExecutors.newVirtualThreadPerTaskExecutor();
+        boolean supported;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            supported = true;
+        } catch (NoSuchMethodException ex) {
+            supported = false;
+        }
+        if (supported) {
+            assertThat(virtualThreadExecutor).isNotNull();
+            virtualThreadExecutor.shutdown();
+        } else {
+            assertThat(virtualThreadExecutor).isNull();
+        }
+    }
+
+    @Test
+    public void exceptionIsNotWrapped() {
+        executor = AsyncExecutors.newPlatformThreadExecutor(1);
+        IllegalArgumentException failure = new IllegalArgumentException("failure");
+        CompletableFuture<Object> future = AsyncExecutors.supplyAsync(() -> {
+            throw failure;
+        }, executor);
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+        assertThat(future.exceptionally(ex -> ex).join()).isSameAs(failure);
+    }
+
+    @Test
+    public void rejectedOperationCompletesFutureExceptionally() {
+        executor = AsyncExecutors.newPlatformThreadExecutor(1);
+        executor.shutdown();
+
+        CompletableFuture<String> future = AsyncExecutors.supplyAsync(() -> "result", executor);
+
+        assertThat(future).isCompletedExceptionally();
+        assertThatThrownBy(future::join).hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithZeroConcurrency() {
+        AsyncExecutors.newBoundedExecutor(0);
+    }
+}
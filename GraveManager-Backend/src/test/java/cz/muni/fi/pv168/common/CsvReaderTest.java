@@ -0,0 +1,87 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CsvReader}.
+ */
+public class CsvReaderTest {
+
+    private static List<List<String>> read(String csv) throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(csv), 100);
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    public void readRecords() throws IOException {
+        assertThat(read("a,b,c\n1,,3\n")).containsExactly(
+                asList("a", "b", "c"),
+                asList("1", "", "3"));
+    }
+
+    @Test
+    public void lineEndings() throws IOException {
+        assertThat(read("a,b\r\nc,d\n\r\ne,f")).containsExactly(
+                asList("a", "b"),
+                asList("c", "d"),
+                asList("e", "f"));
+    }
+
+    @Test
+    public void emptyInput() throws IOException {
+        assertThat(read("")).isEmpty();
+        assertThat(read("\n\n")).isEmpty();
+    }
+
+    @Test
+    public void quotedFields() throws IOException {
+        assertThat(read("\"a,b\",\"say \"\"hi\"\"\",\"\"\n\"multi\nline\",x")).containsExactly(
+                asList("a,b", "say \"hi\"", ""),
+                asList("multi\nline", "x"));
+    }
+
+    @Test
+    public void recordLines() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a\n\"b\nc\"\n\nd"), 100);
+        reader.readRecord();
+        assertThat(reader.getRecordLine()).isEqualTo(1);
+        reader.readRecord();
+        assertThat(reader.getRecordLine()).isEqualTo(2);
+        reader.readRecord();
+        assertThat(reader.getRecordLine()).isEqualTo(5);
+        assertThat(reader.readRecord()).isNull();
+    }
+
+    @Test
+    public void unterminatedQuotedField() {
+        assertThatThrownBy(() -> read("a\n\"b,c\n"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    @Test
+    public void tooLongRecord() {
+        StringBuilder csv = new StringBuilder("\"");
+        for (int i = 0; i < 200; i++) {
+            csv.append('x');
+        }
+        assertThatThrownBy(() -> read(csv.toString()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("longer than 100");
+    }
+
+    private static List<String> asList(String... fields) {
+        return java.util.Arrays.asList(fields);
+    }
+}
@@ -0,0 +1,49 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CsvWriter}.
+ */
+public class CsvWriterTest {
+
+    private static String write(String[]... records) throws IOException {
+        StringWriter out = new StringWriter();
+        CsvWriter writer = new CsvWriter(out);
+        for (String[] record : records) {
+            writer.writeRecord(record);
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void writeRecords() throws IOException {
+        assertThat(write(new String[]{"a", "b"}, new String[]{"1", null, "3"}))
+                .isEqualTo("a,b\r\n1,,3\r\n");
+    }
+
+    @Test
+    public void quotedFields() throws IOException {
+        assertThat(write(new String[]{"a,b", "say \"hi\"", "line\nbreak", ""}))
+                .isEqualTo("\"a,b\",\"say \"\"hi\"\"\",\"line\nbreak\",\r\n");
+    }
+
+    @Test
+    public void writtenRecordsCanBeRead() throws IOException {
+        String csv = write(new String[]{"x,\"y\"", "\r\n", "z"});
+        CsvReader reader = new CsvReader(new StringReader(csv), 100);
+        assertThat(reader.readRecord()).isEqualTo(Arrays.asList("x,\"y\"", "\r\n", "z"));
+        assertThat(reader.readRecord()).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullWriter() {
+        new CsvWriter(null);
+    }
+}
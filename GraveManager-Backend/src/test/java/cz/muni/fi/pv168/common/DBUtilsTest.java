@@ -0,0 +1,60 @@
+package cz.muni.fi.pv168.common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+import org.junit.*;
+import org.mockito.InOrder;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link DBUtils}.
+ */
+public class DBUtilsTest {
+
+    private Connection conn;
+    private PreparedStatement st;
+    private ResultSet rs;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = mock(Connection.class);
+        st = mock(PreparedStatement.class);
+        rs = mock(ResultSet.class);
+        when(st.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getInt(1)).thenReturn(1, 2);
+    }
+
+    @Test
+    public void streamClosesResourcesInOrder() throws SQLException {
+        try (Stream<Integer> stream = DBUtils.stream(conn, st, r -> r.getInt(1))) {
+            assertThat(stream).containsExactly(1, 2);
+        }
+
+        InOrder inOrder = inOrder(rs, st, conn);
+        inOrder.verify(rs).close();
+        inOrder.verify(st).close();
+        inOrder.verify(conn).close();
+    }
+
+    @Test
+    public void streamClosesAllResourcesWhenClosingFails() throws SQLException {
+        SQLException rsFailure = new SQLException("result set");
+        SQLException connFailure = new SQLException("connection");
+        doThrow(rsFailure).when(rs).close();
+        doThrow(connFailure).when(conn).close();
+        Stream<Integer> stream = DBUtils.stream(conn, st, r -> r.getInt(1));
+
+        assertThatThrownBy(stream::close)
+                .isInstanceOf(ServiceFailureException.class)
+                .hasCause(rsFailure);
+        assertThat(rsFailure.getSuppressed()).containsExactly(connFailure);
+        verify(st).close();
+        verify(conn).close();
+    }
+}
@@ -0,0 +1,105 @@
+package cz.muni.fi.pv168.common;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void emptyHistogram() {
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getMean()).isZero();
+        assertThat(histogram.getMax()).isZero();
+        assertThat(histogram.getPercentile(0.99)).isZero();
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount()).isEqualTo(20);
+        assertThat(histogram.getMean()).isEqualTo(10.5);
+        assertThat(histogram.getMax()).isEqualTo(20);
+        assertThat(histogram.getPercentile(0.5)).isEqualTo(10);
+        assertThat(histogram.getPercentile(0.95)).isEqualTo(19);
+        assertThat(histogram.getPercentile(1)).isEqualTo(20);
+        assertThat(histogram.getPercentile(0)).isEqualTo(1);
+    }
+
+    @Test
+    public void percentilesOfLargeValuesAreWithinRelativeError() {
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertThat(histogram.getPercentile(0.5)).isBetween(50_000_000L, 51_600_000L);
+        assertThat(histogram.getPercentile(0.99)).isBetween(99_000_000L, 100_000_000L);
+        assertThat(histogram.getPercentile(0.999)).isBetween(99_900_000L, 100_000_000L);
+        assertThat(histogram.getMax()).isEqualTo(100_000_000L);
+    }
+
+    @Test
+    public void negativeValueIsRecordedAsZero() {
+        histogram.record(-5);
+        assertThat(histogram.getCount()).isEqualTo(1);
+        assertThat(histogram.getPercentile(1)).isZero();
+    }
+
+    @Test
+    public void reset() {
+        histogram.record(1000);
+        histogram.reset();
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getMax()).isZero();
+        assertThat(histogram.getPercentile(0.5)).isZero();
+    }
+
+    @Test
+    public void bucketsCoverAllValues() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 65, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertThat(LatencyHistogram.bucketUpperBound(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(LatencyHistogram.bucketUpperBound(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFraction() {
+        histogram.getPercentile(1.5);
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(histogram.getCount()).isEqualTo(40_000);
+        assertThat(histogram.getMax()).isEqualTo(9_999);
+    }
+}
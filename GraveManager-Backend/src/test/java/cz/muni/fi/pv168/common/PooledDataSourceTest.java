@@ -0,0 +1,169 @@
+package cz.muni.fi.pv168.common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link PooledDataSource}.
+ */
+public class PooledDataSourceTest {
+
+    private EmbeddedDataSource target;
+    private PooledDataSource pool;
+
+    @Before
+    public void setUp() throws SQLException {
+        target = new EmbeddedDataSource();
+        target.setDatabaseName("memory:pool-test");
+        target.setCreateDatabase("create");
+        try (Connection conn = target.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Item (id INTEGER NOT NULL)");
+        }
+        pool = new PooledDataSource(target, 1, 2);
+        pool.setMaxWait(100);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        pool.close();
+        try (Connection conn = target.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE Item");
+        }
+    }
+
+    @Test
+    public void physicalConnectionIsReused() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            try (Connection conn = pool.getConnection()) {
+                assertThat(conn.isValid(1)).isTrue();
+            }
+        }
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+        assertThat(pool.getBorrowCount()).isEqualTo(5);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThat(pool.getActiveCount()).isZero();
+    }
+
+    @Test
+    public void closedConnectionCanNotBeUsed() throws SQLException {
+        Connection conn = pool.getConnection();
+        conn.close();
+        conn.close();
+        assertThat(conn.isClosed()).isTrue();
+        assertThatThrownBy(() -> conn.createStatement())
+                .isInstanceOf(SQLException.class);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void concurrentCloseReturnsConnectionOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 100; i++) {
+                Connection conn = pool.getConnection();
+                CyclicBarrier barrier = new CyclicBarrier(4);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int j = 0; j < 4; j++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        conn.close();
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                assertThat(pool.getIdleCount()).isEqualTo(1);
+                assertThat(pool.getActiveCount()).isZero();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void uncommittedTransactionIsRolledBackOnReturn() throws SQLException {
+        try (Connection conn = pool.getConnection(); Statement st = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            st.executeUpdate("INSERT INTO Item (id) VALUES (1)");
+        }
+        try (Connection conn = pool.getConnection();
+             PreparedStatement st = conn.prepareStatement("SELECT COUNT(*) FROM Item");
+             ResultSet rs = st.executeQuery()) {
+            assertThat(conn.getAutoCommit()).isTrue();
+            rs.next();
+            assertThat(rs.getInt(1)).isZero();
+        }
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void exhaustedPoolTimesOut() throws SQLException {
+        pool.setLeakDetectionThreshold(1);
+        try (Connection c1 = pool.getConnection(); Connection c2 = pool.getConnection()) {
+            assertThatThrownBy(() -> pool.getConnection())
+                    .isInstanceOf(SQLException.class);
+            assertThat(pool.getTimeoutCount()).isEqualTo(1);
+            assertThat(pool.getLeakCount()).isEqualTo(2);
+            assertThat(pool.getMaxWaitNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertThat(pool.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void concurrentBorrowersNeverExceedMaxSize() throws Exception {
+        pool.setMaxWait(10_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        try (Connection conn = pool.getConnection(); Statement st = conn.createStatement()) {
+                            st.executeQuery("SELECT COUNT(*) FROM Item").close();
+                            assertThat(pool.getSize()).isLessThanOrEqualTo(2);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(pool.getBorrowCount()).isEqualTo(400);
+        assertThat(pool.getCreatedCount()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void closedPoolClosesConnections() throws SQLException {
+        Connection borrowed = pool.getConnection();
+        pool.close();
+        assertThatThrownBy(() -> pool.getConnection())
+                .isInstanceOf(SQLException.class);
+        borrowed.close();
+        assertThat(pool.getSize()).isZero();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minSizeGreaterThanMaxSize() {
+        new PooledDataSource(target, 3, 2);
+    }
+}
@@ -0,0 +1,202 @@
+package cz.muni.fi.pv168.common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link ProfilingDataSource}.
+ */
+public class ProfilingDataSourceTest {
+
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM Item WHERE id > ?";
+
+    private EmbeddedDataSource target;
+    private ProfilingDataSource ds;
+    private final List<String> slowStatements = new ArrayList<>();
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            slowStatements.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Before
+    public void setUp() throws SQLException {
+        target = new EmbeddedDataSource();
+        target.setDatabaseName("memory:profiling-test");
+        target.setCreateDatabase("create");
+        try (Connection conn = target.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Item (id INTEGER NOT NULL)");
+            st.execute("INSERT INTO Item (id) VALUES (1), (2), (3)");
+        }
+        ds = new ProfilingDataSource(target);
+        Logger.getLogger(ProfilingDataSource.SLOW_STATEMENT_LOGGER).addHandler(handler);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        Logger.getLogger(ProfilingDataSource.SLOW_STATEMENT_LOGGER).removeHandler(handler);
+        try (Connection conn = target.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE Item");
+        }
+    }
+
+    private List<Integer> findIds(Connection conn, int greaterThan) throws SQLException {
+        List<Integer> result = new ArrayList<>();
+        try (PreparedStatement st = conn.prepareStatement("SELECT id FROM Item WHERE id > ? ORDER BY id")) {
+            st.setInt(1, greaterThan);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getInt(1));
+                }
+            }
+        }
+        return result;
+    }
+
+    private ProfilingDataSource.StatementStats stats(String sql) {
+        return ds.getStatementStats().stream()
+                .filter(s -> s.getSql().equals(sql))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    @Test
+    public void queriesAreAggregatedBySql() throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            assertThat(findIds(conn, 0)).containsExactly(1, 2, 3);
+            assertThat(findIds(conn, 2)).containsExactly(3);
+        }
+        ProfilingDataSource.StatementStats stats = stats("SELECT id FROM Item WHERE id > ? ORDER BY id");
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getRows()).isEqualTo(4);
+        assertThat(stats.getErrorCount()).isZero();
+        assertThat(stats.getTotalNanos()).isPositive();
+        assertThat(stats.getLatencies().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void inlinedLiteralsHaveTheSameShape() throws SQLException {
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            st.executeQuery("SELECT id FROM Item WHERE id = 1").close();
+            st.executeQuery("select id\n  from Item where id = 22").close();
+        }
+        assertThat(stats("SELECT id FROM Item WHERE id = ?").getCount()).isEqualTo(1);
+        assertThat(stats("select id from Item where id = ?").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void updatesAndBatchesCountAffectedRows() throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement("INSERT INTO Item (id) VALUES (?)")) {
+                for (int i = 10; i < 15; i++) {
+                    st.setInt(1, i);
+                    st.addBatch();
+                }
+                st.executeBatch();
+            }
+            try (PreparedStatement st = conn.prepareStatement("DELETE FROM Item WHERE id >= ?")) {
+                st.setInt(1, 10);
+                assertThat(st.executeUpdate()).isEqualTo(5);
+            }
+        }
+        assertThat(stats("INSERT INTO Item (id) VALUES (?)").getRows()).isEqualTo(5);
+        assertThat(stats("DELETE FROM Item WHERE id >= ?").getRows()).isEqualTo(5);
+    }
+
+    @Test
+    public void commitIsTimed() throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            findIds(conn, 0);
+            conn.commit();
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+        assertThat(stats("COMMIT").getCount()).isEqualTo(1);
+        assertThat(stats("ROLLBACK").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void failedStatementIsCounted() throws SQLException {
+        try (Connection conn = ds.getConnection(); PreparedStatement st = conn.prepareStatement(COUNT_SQL)) {
+            // parameter is not set
+            assertThatThrownBy(st::executeQuery).isInstanceOf(SQLException.class);
+        }
+        assertThat(stats(COUNT_SQL).getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void slowStatementsAreLogged() throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            findIds(conn, 1);
+            assertThat(slowStatements).isEmpty();
+            ds.setSlowStatementThreshold(0);
+            findIds(conn, 1);
+        }
+        assertThat(slowStatements).hasSize(1);
+        assertThat(slowStatements.get(0))
+                .contains("rows=2")
+                .contains("parameters=1")
+                .contains("caller=ProfilingDataSourceTest.findIds")
+                .endsWith("SELECT id FROM Item WHERE id > ? ORDER BY id");
+    }
+
+    @Test
+    public void proxiesReturnEachOther() throws SQLException {
+        try (Connection conn = ds.getConnection(); PreparedStatement st = conn.prepareStatement(COUNT_SQL)) {
+            st.setInt(1, 0);
+            try (ResultSet rs = st.executeQuery()) {
+                assertThat(rs.getStatement()).isSameAs(st);
+                assertThat(st.getConnection()).isSameAs(conn);
+            }
+        }
+    }
+
+    @Test
+    public void resetRemovesStatistics() throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            findIds(conn, 0);
+        }
+        ds.reset();
+        assertThat(ds.getStatementStats()).isEmpty();
+    }
+
+    @Test
+    public void shape() {
+        assertThat(ProfilingDataSource.shape("SELECT  *\nFROM Body WHERE name = 'O''Brien' -- comment\n AND id=42"))
+                .isEqualTo("SELECT * FROM Body WHERE name = ? AND id=?");
+        assertThat(ProfilingDataSource.shape("SELECT col1, \"Weird 7\" FROM t2 /* x */ WHERE a IN (1, 2.5)"))
+                .isEqualTo("SELECT col1, \"Weird 7\" FROM t2 WHERE a IN (?, ?)");
+    }
+
+    @Test
+    public void findCaller() {
+        StackTraceElement[] stack = {
+                new StackTraceElement("cz.muni.fi.pv168.common.ProfilingDataSource$Execution", "finish", null, 1),
+                new StackTraceElement("com.sun.proxy.$Proxy5", "next", null, 1),
+                new StackTraceElement("cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl", "findEmptyGraves", null, 1),
+        };
+        assertThat(ProfilingDataSource.findCaller(stack)).isEqualTo("CemeteryManagerImpl.findEmptyGraves");
+    }
+}
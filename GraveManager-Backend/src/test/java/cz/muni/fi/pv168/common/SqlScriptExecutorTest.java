@@ -0,0 +1,129 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link SqlScriptExecutor}.
+ */
+public class SqlScriptExecutorTest {
+
+    private EmbeddedDataSource ds;
+    private SqlScriptExecutor executor;
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:script-test");
+        ds.setCreateDatabase("create");
+        executor = new SqlScriptExecutor(ds);
+        executor.execute(new StringReader("CREATE TABLE Item (id INTEGER NOT NULL, name VARCHAR(50))"));
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        executor.execute(new StringReader("DROP TABLE Item"));
+    }
+
+    private int countItems() throws SQLException {
+        try (Connection conn = ds.getConnection();
+             PreparedStatement st = conn.prepareStatement("SELECT COUNT(*) FROM Item");
+             ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void executeScript() throws SQLException, IOException {
+        List<SqlScriptExecutor.ExecutedStatement> statements = new ArrayList<>();
+        executor.setStatementListener(statements::add);
+        SqlScriptExecutor.ScriptResult result = executor.execute(new StringReader(
+                "-- seed data\n"
+                + "INSERT INTO Item VALUES (1, 'a;b');\n"
+                + "INSERT INTO Item VALUES (2, 'c'), (3, 'd');\n"
+                + "SELECT * FROM Item;\n"
+                + "UPDATE Item SET name = 'x' WHERE id > 1;"));
+
+        assertThat(statements)
+                .extracting(SqlScriptExecutor.ExecutedStatement::getLine)
+                .containsExactly(2, 3, 4, 5);
+        assertThat(statements)
+                .extracting(SqlScriptExecutor.ExecutedStatement::getUpdateCount)
+                .containsExactly(1, 2, Statement.SUCCESS_NO_INFO, 2);
+        assertThat(statements).allMatch(statement -> statement.getElapsedNanos() >= 0);
+        assertThat(result.getStatementCount()).isEqualTo(4);
+        assertThat(statements).contains(result.getSlowestStatement());
+        assertThat(result.getElapsedNanos()).isPositive();
+        assertThat(countItems()).isEqualTo(3);
+    }
+
+    @Test
+    public void statementsAreSplitIntoBatches() throws SQLException, IOException {
+        executor.setBatchSize(2);
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            script.append("INSERT INTO Item VALUES (").append(i).append(", 'item');\n");
+        }
+
+        SqlScriptExecutor.ScriptResult result = executor.execute(new StringReader(script.toString()));
+
+        assertThat(result.getStatementCount()).isEqualTo(5);
+        assertThat(countItems()).isEqualTo(5);
+    }
+
+    @Test
+    public void failedScriptIsRolledBack() throws SQLException {
+        assertThatThrownBy(() -> executor.execute(new StringReader(
+                "INSERT INTO Item VALUES (1, 'a');\n"
+                + "INSERT INTO Item VALUES (2, 'b');\n"
+                + "INSERT INTO Item VALUES (NULL, 'c');\n"
+                + "INSERT INTO Item VALUES (4, 'd');")))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("line 3");
+        assertThat(countItems()).isZero();
+    }
+
+    @Test
+    public void failedQueryIsReported() throws SQLException {
+        assertThatThrownBy(() -> executor.execute(new StringReader(
+                "INSERT INTO Item VALUES (1, 'a');\nSELECT * FROM Missing;")))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("line 2");
+        assertThat(countItems()).isZero();
+    }
+
+    @Test
+    public void unterminatedLiteralIsRolledBack() throws SQLException {
+        assertThatThrownBy(() -> executor.execute(new StringReader(
+                "INSERT INTO Item VALUES (1, 'a');\nINSERT INTO Item VALUES (2, 'b);")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(countItems()).isZero();
+    }
+
+    @Test
+    public void batchableStatements() {
+        assertThat(SqlScriptExecutor.isBatchable("INSERT INTO Item VALUES (1, 'a')")).isTrue();
+        assertThat(SqlScriptExecutor.isBatchable("create table A (id int)")).isTrue();
+        assertThat(SqlScriptExecutor.isBatchable("select * from Item")).isFalse();
+        assertThat(SqlScriptExecutor.isBatchable("VALUES 1")).isFalse();
+        assertThat(SqlScriptExecutor.isBatchable("CALL SYSCS_UTIL.SYSCS_COMPRESS_TABLE('APP', 'ITEM', 0)")).isFalse();
+        assertThat(SqlScriptExecutor.isBatchable("(SELECT 1 FROM Item)")).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBatchSize() {
+        executor.setBatchSize(0);
+    }
+}
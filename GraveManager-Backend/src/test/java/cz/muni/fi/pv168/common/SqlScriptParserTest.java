@@ -0,0 +1,90 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link SqlScriptParser}.
+ */
+public class SqlScriptParserTest {
+
+    private static List<String> parse(String script) throws IOException {
+        SqlScriptParser parser = new SqlScriptParser(new StringReader(script));
+        List<String> statements = new ArrayList<>();
+        String sql;
+        while ((sql = parser.next()) != null) {
+            statements.add(sql);
+        }
+        return statements;
+    }
+
+    @Test
+    public void splitStatements() throws IOException {
+        assertThat(parse("CREATE TABLE A (ID INT);\n\nINSERT INTO A VALUES (1) ;DROP TABLE A"))
+                .containsExactly("CREATE TABLE A (ID INT)", "INSERT INTO A VALUES (1)", "DROP TABLE A");
+    }
+
+    @Test
+    public void emptyScript() throws IOException {
+        assertThat(parse("")).isEmpty();
+        assertThat(parse(" ;\n; -- only comment\n/* and another */")).isEmpty();
+    }
+
+    @Test
+    public void semicolonInStringLiteral() throws IOException {
+        assertThat(parse("INSERT INTO A VALUES ('a;b', 'it''s; fine');SELECT 1 FROM A"))
+                .containsExactly("INSERT INTO A VALUES ('a;b', 'it''s; fine')", "SELECT 1 FROM A");
+    }
+
+    @Test
+    public void semicolonInQuotedIdentifier() throws IOException {
+        assertThat(parse("CREATE TABLE \"A;B\" (\"X\"\"Y\" INT);"))
+                .containsExactly("CREATE TABLE \"A;B\" (\"X\"\"Y\" INT)");
+    }
+
+    @Test
+    public void commentsAreRemoved() throws IOException {
+        assertThat(parse("-- header; with semicolon\nCREATE TABLE A ( -- comment;\n ID INT /* ; */);\n/* a;\n b */ DROP TABLE A;"))
+                .containsExactly("CREATE TABLE A (   ID INT  )", "DROP TABLE A");
+    }
+
+    @Test
+    public void commentMarkersInStringLiteral() throws IOException {
+        assertThat(parse("INSERT INTO A VALUES ('--not comment', '/* neither */')"))
+                .containsExactly("INSERT INTO A VALUES ('--not comment', '/* neither */')");
+    }
+
+    @Test
+    public void arithmeticOperators() throws IOException {
+        assertThat(parse("UPDATE A SET X = X - 1, Y = Y / 2"))
+                .containsExactly("UPDATE A SET X = X - 1, Y = Y / 2");
+    }
+
+    @Test
+    public void statementLines() throws IOException {
+        SqlScriptParser parser = new SqlScriptParser(new StringReader("-- header\n\nSELECT 1\nFROM A;\n/* x */ SELECT 2;"));
+        parser.next();
+        assertThat(parser.getStatementLine()).isEqualTo(3);
+        parser.next();
+        assertThat(parser.getStatementLine()).isEqualTo(5);
+        assertThat(parser.next()).isNull();
+    }
+
+    @Test
+    public void unterminatedStringLiteral() {
+        assertThatThrownBy(() -> parse("SELECT 1;\nINSERT INTO A VALUES ('abc);"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    @Test
+    public void unterminatedComment() {
+        assertThatThrownBy(() -> parse("SELECT 1; /* comment"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,178 @@
+package cz.muni.fi.pv168.common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link StatementCache} used by {@link PooledDataSource}.
+ */
+public class StatementCacheTest {
+
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM Item WHERE id > ?";
+
+    private EmbeddedDataSource target;
+    private PooledDataSource pool;
+
+    @Before
+    public void setUp() throws SQLException {
+        target = new EmbeddedDataSource();
+        target.setDatabaseName("memory:statement-cache-test");
+        target.setCreateDatabase("create");
+        try (Connection conn = target.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Item (id INTEGER NOT NULL)");
+            st.execute("INSERT INTO Item (id) VALUES (1), (2), (3)");
+        }
+        pool = new PooledDataSource(target, 1, 1);
+        pool.setStatementCacheSize(2);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        pool.close();
+        try (Connection conn = target.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE Item");
+        }
+    }
+
+    private int count(Connection conn, int greaterThan) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement(COUNT_SQL)) {
+            st.setInt(1, greaterThan);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void statementIsReused() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = pool.getConnection()) {
+                assertThat(count(conn, i)).isEqualTo(3 - i);
+            }
+        }
+        assertThat(pool.getStatementCacheMissCount()).isEqualTo(1);
+        assertThat(pool.getStatementCacheHitCount()).isEqualTo(2);
+        assertThat(pool.getStatementCacheHitRate()).isEqualTo(2.0 / 3);
+    }
+
+    @Test
+    public void parametersAreClearedOnClose() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            count(conn, 0);
+            try (PreparedStatement st = conn.prepareStatement(COUNT_SQL)) {
+                assertThatThrownBy(st::executeQuery).isInstanceOf(SQLException.class);
+            }
+        }
+    }
+
+    @Test
+    public void unclosedStatementIsReleasedWithConnection() throws SQLException {
+        PreparedStatement st;
+        ResultSet rs;
+        try (Connection conn = pool.getConnection()) {
+            st = conn.prepareStatement(COUNT_SQL);
+            st.setInt(1, 0);
+            rs = st.executeQuery();
+        }
+        assertThat(st.isClosed()).isTrue();
+        assertThat(rs.isClosed()).isTrue();
+        assertThatThrownBy(st::executeQuery).isInstanceOf(SQLException.class);
+        try (Connection conn = pool.getConnection()) {
+            assertThat(count(conn, 2)).isEqualTo(1);
+        }
+        assertThat(pool.getStatementCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void statementUsedTwiceAtOnce() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement st1 = conn.prepareStatement(COUNT_SQL);
+             PreparedStatement st2 = conn.prepareStatement(COUNT_SQL)) {
+            assertThat(st1).isNotSameAs(st2);
+            st1.setInt(1, 0);
+            st2.setInt(1, 2);
+            try (ResultSet rs1 = st1.executeQuery(); ResultSet rs2 = st2.executeQuery()) {
+                rs1.next();
+                rs2.next();
+                assertThat(rs1.getInt(1)).isEqualTo(3);
+                assertThat(rs2.getInt(1)).isEqualTo(1);
+            }
+        }
+        assertThat(pool.getStatementCacheMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsEvicted() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            conn.prepareStatement("SELECT id FROM Item").close();
+            conn.prepareStatement("SELECT COUNT(*) FROM Item").close();
+            conn.prepareStatement("SELECT id FROM Item").close();
+            conn.prepareStatement("SELECT MAX(id) FROM Item").close();
+            conn.prepareStatement("SELECT id FROM Item").close();
+            conn.prepareStatement("SELECT COUNT(*) FROM Item").close();
+        }
+        assertThat(pool.getStatementCacheHitCount()).isEqualTo(2);
+        assertThat(pool.getStatementCacheMissCount()).isEqualTo(4);
+        assertThat(pool.getStatementCacheEvictionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void generatedKeysFlagIsPartOfTheKey() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            conn.prepareStatement("INSERT INTO Item (id) VALUES (?)").close();
+            conn.prepareStatement("INSERT INTO Item (id) VALUES (?)", Statement.RETURN_GENERATED_KEYS).close();
+        }
+        assertThat(pool.getStatementCacheMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void fetchSizeIsRestored() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            int defaultFetchSize;
+            try (PreparedStatement st = conn.prepareStatement(COUNT_SQL)) {
+                defaultFetchSize = st.getFetchSize();
+                st.setFetchSize(defaultFetchSize + 10);
+            }
+            try (PreparedStatement st = conn.prepareStatement(COUNT_SQL)) {
+                assertThat(st.getFetchSize()).isEqualTo(defaultFetchSize);
+            }
+        }
+        assertThat(pool.getStatementCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void statementReturnsPooledConnection() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement st = conn.prepareStatement(COUNT_SQL)) {
+            assertThat(st.getConnection()).isSameAs(conn);
+        }
+    }
+
+    @Test
+    public void disabledCache() throws SQLException {
+        pool.setStatementCacheSize(0);
+        try (PooledDataSource uncachedPool = new PooledDataSource(target, 0, 1)) {
+            uncachedPool.setStatementCacheSize(0);
+            for (int i = 0; i < 2; i++) {
+                try (Connection conn = uncachedPool.getConnection()) {
+                    assertThat(count(conn, 0)).isEqualTo(3);
+                }
+            }
+            assertThat(uncachedPool.getStatementCacheHitCount()).isZero();
+            assertThat(uncachedPool.getStatementCacheMissCount()).isZero();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCacheSize() {
+        pool.setStatementCacheSize(-1);
+    }
+}
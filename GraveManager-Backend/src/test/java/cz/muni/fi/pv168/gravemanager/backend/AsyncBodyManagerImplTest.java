@@ -0,0 +1,72 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link AsyncBodyManagerImpl}.
+ */
+public class AsyncBodyManagerImplTest {
+
+    private BodyManager delegate;
+    private ExecutorService executor;
+    private AsyncBodyManagerImpl manager;
+
+    @Before
+    public void setUp() {
+        delegate = mock(BodyManager.class);
+        executor = AsyncExecutors.newBoundedExecutor(4);
+        manager = new AsyncBodyManagerImpl(delegate, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void operationsAreDelegated() throws Exception {
+        Body body = new BodyBuilder().id(1L).name("Joe").gender(Gender.MALE).build();
+        List<Body> bodies = Collections.singletonList(body);
+        when(delegate.getBody(1L)).thenReturn(body);
+        when(delegate.findAllBodies()).thenReturn(bodies);
+        when(delegate.findBodies(1L, 10)).thenReturn(bodies);
+        when(delegate.findBodiesByName("Jo", 10)).thenReturn(bodies);
+        BodyQuery query = new BodyQuery().vampire(true);
+        when(delegate.findBodies(query)).thenReturn(bodies);
+
+        assertThat(manager.getBody(1L).get(5, TimeUnit.SECONDS)).isSameAs(body);
+        assertThat(manager.findAllBodies().get(5, TimeUnit.SECONDS)).isSameAs(bodies);
+        assertThat(manager.findBodies(1L, 10).get(5, TimeUnit.SECONDS)).isSameAs(bodies);
+        assertThat(manager.findBodiesByName("Jo", 10).get(5, TimeUnit.SECONDS)).isSameAs(bodies);
+        assertThat(manager.findBodies(query).get(5, TimeUnit.SECONDS)).isSameAs(bodies);
+        manager.createBody(body).get(5, TimeUnit.SECONDS);
+        manager.createBodies(bodies).get(5, TimeUnit.SECONDS);
+        manager.updateBody(body).get(5, TimeUnit.SECONDS);
+        manager.deleteBody(body).get(5, TimeUnit.SECONDS);
+
+        verify(delegate).createBody(body);
+        verify(delegate).createBodies(bodies);
+        verify(delegate).updateBody(body);
+        verify(delegate).deleteBody(body);
+    }
+
+    @Test
+    public void failureCompletesFutureExceptionally() {
+        ServiceFailureException failure = new ServiceFailureException("failure");
+        when(delegate.findAllBodies()).thenThrow(failure);
+
+        assertThatThrownBy(() -> manager.findAllBodies().get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+    }
+}
@@ -0,0 +1,75 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link AsyncCemeteryManagerImpl}.
+ */
+public class AsyncCemeteryManagerImplTest {
+
+    private CemeteryManager delegate;
+    private ExecutorService executor;
+    private AsyncCemeteryManagerImpl manager;
+
+    @Before
+    public void setUp() {
+        delegate = mock(CemeteryManager.class);
+        executor = AsyncExecutors.newBoundedExecutor(4);
+        manager = new AsyncCemeteryManagerImpl(delegate, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void operationsAreDelegated() throws Exception {
+        Grave grave = new GraveBuilder().id(1L).column(1).row(2).capacity(3).build();
+        Body body = new BodyBuilder().id(1L).name("Joe").gender(Gender.MALE).build();
+        List<Grave> graves = Collections.singletonList(grave);
+        List<Body> bodies = Collections.singletonList(body);
+        when(delegate.findGraveWithBody(body)).thenReturn(grave);
+        when(delegate.findBodiesInGrave(grave)).thenReturn(bodies);
+        when(delegate.findUnburiedBodies()).thenReturn(bodies);
+        when(delegate.findEmptyGraves()).thenReturn(graves);
+        when(delegate.findGravesWithSomeFreeSpace()).thenReturn(graves);
+        when(delegate.findNearestGravesWithFreeSpace(1, 2, 3)).thenReturn(graves);
+
+        assertThat(manager.findGraveWithBody(body).get(5, TimeUnit.SECONDS)).isSameAs(grave);
+        assertThat(manager.findBodiesInGrave(grave).get(5, TimeUnit.SECONDS)).isSameAs(bodies);
+        assertThat(manager.findUnburiedBodies().get(5, TimeUnit.SECONDS)).isSameAs(bodies);
+        assertThat(manager.findEmptyGraves().get(5, TimeUnit.SECONDS)).isSameAs(graves);
+        assertThat(manager.findGravesWithSomeFreeSpace().get(5, TimeUnit.SECONDS)).isSameAs(graves);
+        assertThat(manager.findNearestGravesWithFreeSpace(1, 2, 3).get(5, TimeUnit.SECONDS)).isSameAs(graves);
+        manager.putBodyIntoGrave(body, grave).get(5, TimeUnit.SECONDS);
+        manager.putBodiesIntoGrave(bodies, grave).get(5, TimeUnit.SECONDS);
+        manager.removeBodyFromGrave(body, grave).get(5, TimeUnit.SECONDS);
+
+        verify(delegate).putBodyIntoGrave(body, grave);
+        verify(delegate).putBodiesIntoGrave(bodies, grave);
+        verify(delegate).removeBodyFromGrave(body, grave);
+    }
+
+    @Test
+    public void failureCompletesFutureExceptionally() {
+        Grave grave = new GraveBuilder().id(1L).build();
+        Body body = new BodyBuilder().id(1L).build();
+        IllegalEntityException failure = new IllegalEntityException("grave is full");
+        doThrow(failure).when(delegate).putBodyIntoGrave(body, grave);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(body, grave).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+    }
+}
@@ -0,0 +1,101 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link AsyncGraveManagerImpl}.
+ */
+public class AsyncGraveManagerImplTest {
+
+    private GraveManager delegate;
+    private ExecutorService executor;
+    private AsyncGraveManagerImpl manager;
+
+    @Before
+    public void setUp() {
+        delegate = mock(GraveManager.class);
+        executor = AsyncExecutors.newBoundedExecutor(4);
+        manager = new AsyncGraveManagerImpl(delegate, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Grave sampleGrave(long id) {
+        return new GraveBuilder().id(id).column(1).row(2).capacity(3).note("Grave " + id).build();
+    }
+
+    @Test
+    public void operationsAreDelegated() throws Exception {
+        Grave grave = sampleGrave(1);
+        List<Grave> graves = Collections.singletonList(grave);
+        when(delegate.getGrave(1L)).thenReturn(grave);
+        when(delegate.findAllGraves()).thenReturn(graves);
+        when(delegate.findGraves(null, 10)).thenReturn(graves);
+        when(delegate.findGravesInRegion(0, 5, 0, 5)).thenReturn(graves);
+        when(delegate.findGraveAt(2, 1)).thenReturn(grave);
+
+        assertThat(manager.getGrave(1L).get(5, TimeUnit.SECONDS)).isSameAs(grave);
+        assertThat(manager.findAllGraves().get(5, TimeUnit.SECONDS)).isSameAs(graves);
+        assertThat(manager.findGraves(null, 10).get(5, TimeUnit.SECONDS)).isSameAs(graves);
+        assertThat(manager.findGravesInRegion(0, 5, 0, 5).get(5, TimeUnit.SECONDS)).isSameAs(graves);
+        assertThat(manager.findGraveAt(2, 1).get(5, TimeUnit.SECONDS)).isSameAs(grave);
+        manager.createGrave(grave).get(5, TimeUnit.SECONDS);
+        manager.createGraves(graves).get(5, TimeUnit.SECONDS);
+        manager.updateGrave(grave).get(5, TimeUnit.SECONDS);
+        manager.deleteGrave(grave).get(5, TimeUnit.SECONDS);
+
+        verify(delegate).createGrave(grave);
+        verify(delegate).createGraves(graves);
+        verify(delegate).updateGrave(grave);
+        verify(delegate).deleteGrave(grave);
+    }
+
+    @Test
+    public void failureCompletesFutureExceptionally() {
+        Grave grave = sampleGrave(1);
+        ValidationException failure = new ValidationException("capacity is not positive number");
+        doThrow(failure).when(delegate).createGrave(grave);
+
+        assertThatThrownBy(() -> manager.createGrave(grave).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+    }
+
+    @Test
+    public void lookupsRunInParallel() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(4);
+        when(delegate.getGrave(anyLong())).thenAnswer(invocation -> {
+            allStarted.countDown();
+            // each lookup waits for the others, so they must run at once
+            assertThat(allStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            return sampleGrave((Long) invocation.getArguments()[0]);
+        });
+
+        List<CompletableFuture<Grave>> futures = Arrays.asList(
+                manager.getGrave(1L), manager.getGrave(2L), manager.getGrave(3L), manager.getGrave(4L));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        assertThat(futures).extracting(f -> f.join().getId()).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNullExecutor() {
+        new AsyncGraveManagerImpl(delegate, null);
+    }
+}
@@ -5,6 +5,13 @@ import cz.muni.fi.pv168.common.*;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.*;
@@ -175,6 +182,129 @@ public class BodyManagerImplTest {
                 .containsOnly(joe,catherine);
     }
 
+    @Test
+    public void streamAllBodies() {
+
+        try (Stream<Body> bodies = manager.streamAllBodies()) {
+            assertThat(bodies.count()).isZero();
+        }
+
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+
+        manager.createBody(joe);
+        manager.createBody(catherine);
+
+        manager.setFetchSize(1);
+        try (Stream<Body> bodies = manager.streamAllBodies()) {
+            assertThat(bodies.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsOnly(joe,catherine);
+        }
+    }
+
+    @Test
+    public void findBodiesByPages() {
+
+        assertThat(manager.findBodies(null, 2)).isEmpty();
+
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+        Body jane = sampleCatherineBodyBuilder().name("Jane").build();
+        manager.createBodies(Arrays.asList(joe, catherine, jane));
+
+        List<Body> firstPage = manager.findBodies(null, 2);
+        assertThat(firstPage)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(joe,catherine);
+        List<Body> secondPage = manager.findBodies(firstPage.get(1).getId(), 2);
+        assertThat(secondPage)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(jane);
+        assertThat(manager.findBodies(jane.getId(), 2)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBodiesWithZeroLimit() {
+        manager.findBodies(null, 0);
+    }
+
+    @Test
+    public void findBodiesByName() {
+        Body novak = sampleJoeBodyBuilder().name("Jan Novák").build();
+        Body dvorak = sampleJoeBodyBuilder().name("Jiří Dvořák-Nováček").build();
+        Body novotna = sampleCatherineBodyBuilder().name("Novotná").build();
+        manager.createBodies(Arrays.asList(novak, dvorak, novotna));
+
+        assertThat(manager.findBodiesByName("NOVA", 10))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(novak, dvorak);
+        assertThat(manager.findBodiesByName("nov", 10)).containsOnly(novak, dvorak, novotna);
+        assertThat(manager.findBodiesByName("jan nov", 10)).containsOnly(novak);
+        assertThat(manager.findBodiesByName("dvorak novacek", 10)).containsOnly(dvorak);
+        assertThat(manager.findBodiesByName("ovak", 10)).isEmpty();
+        assertThat(manager.findBodiesByName("nov", 2)).hasSize(2);
+
+        dvorak.setName("Jiří Dvořák");
+        manager.updateBody(dvorak);
+        assertThat(manager.findBodiesByName("nova", 10)).containsOnly(novak);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBodiesByNameWithoutLetters() {
+        manager.findBodiesByName(" - ", 10);
+    }
+
+    @Test
+    public void findBodiesByQuery() {
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+        Body jane = sampleCatherineBodyBuilder().name("Jane Doe").born(null).died(1950,MAY,1).vampire(false).build();
+        manager.createBodies(Arrays.asList(joe, catherine, jane));
+        Grave grave = new GraveBuilder().capacity(1).build();
+        new GraveManagerImpl(ds).createGrave(grave);
+        new CemeteryManagerImpl(ds).putBodyIntoGrave(catherine, grave);
+
+        assertThat(manager.findBodies(new BodyQuery()))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(joe, catherine, jane);
+        assertThat(manager.findBodies(new BodyQuery().gender(Gender.FEMALE).vampire(false)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(jane);
+        assertThat(manager.findBodies(new BodyQuery().bornBetween(LocalDate.of(1921,FEBRUARY,6), null)))
+                .containsExactly(joe, catherine);
+        assertThat(manager.findBodies(new BodyQuery().bornBetween(null, LocalDate.of(1950,JANUARY,1))))
+                .containsExactly(catherine);
+        assertThat(manager.findBodies(new BodyQuery().diedBetween(LocalDate.of(1950,MAY,1), LocalDate.of(2008,DECEMBER,11))))
+                .containsExactly(catherine, jane);
+        assertThat(manager.findBodies(new BodyQuery().namePrefix("DOE"))).containsExactly(jane);
+        assertThat(manager.findBodies(new BodyQuery().buried(true))).containsExactly(catherine);
+        assertThat(manager.findBodies(new BodyQuery().buried(false).gender(Gender.FEMALE))).containsExactly(jane);
+        assertThat(manager.findBodies(new BodyQuery().namePrefix("joe").vampire(true))).isEmpty();
+    }
+
+    @Test
+    public void queriesWithSameShapeShareSql() {
+        BodyQuery maleVampires = new BodyQuery().gender(Gender.MALE).vampire(true);
+        BodyQuery femaleHumans = new BodyQuery().vampire(false).gender(Gender.FEMALE);
+
+        assertThat(maleVampires.shape()).isEqualTo(femaleHumans.shape());
+        assertThat(BodyManagerImpl.compileQuery(maleVampires.shape()))
+                .isEqualTo("SELECT id, name, gender, born, died, vampire FROM Body "
+                        + "WHERE gender = ? AND vampire = ? ORDER BY id");
+        assertThat(new BodyQuery().buried(true).shape()).isNotEqualTo(new BodyQuery().buried(false).shape());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bodyQueryWithInvalidRange() {
+        new BodyQuery().diedBetween(LocalDate.of(2000,JANUARY,2), LocalDate.of(2000,JANUARY,1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBodiesWithNullQuery() {
+        manager.findBodies((BodyQuery) null);
+    }
+
     // Test exception with expected parameter of @Test annotation
     // it does not allow to specify exact place where the exception
     // is expected, therefor it is suitable only for simple single line tests
@@ -309,6 +439,78 @@ public class BodyManagerImplTest {
                 .isEqualToComparingFieldByField(body);
     }
 
+    //--------------------------------------------------------------------------
+    // Tests for BodyManager.createBodies(Collection) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void createBodies() {
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+        manager.createBodies(Arrays.asList(joe, catherine));
+
+        assertThat(joe.getId()).isNotNull();
+        assertThat(catherine.getId()).isNotNull().isNotEqualTo(joe.getId());
+        assertThat(manager.getBody(joe.getId()))
+                .isEqualToComparingFieldByField(joe);
+        assertThat(manager.getBody(catherine.getId()))
+                .isEqualToComparingFieldByField(catherine);
+    }
+
+    @Test
+    public void createBodiesInMultipleBatches() {
+        Body existingBody = sampleCatherineBodyBuilder().build();
+        manager.createBody(existingBody);
+
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            bodies.add(sampleJoeBodyBuilder().name("Joe " + i).build());
+        }
+        manager.createBodies(bodies);
+
+        assertThat(bodies).extracting(Body::getId).doesNotContainNull().doesNotHaveDuplicates();
+        List<Body> expected = new ArrayList<>(bodies);
+        expected.add(existingBody);
+        expected.sort(Comparator.comparing(Body::getId));
+        List<Body> actual = manager.findAllBodies();
+        actual.sort(Comparator.comparing(Body::getId));
+        assertThat(actual)
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void createEmptyCollectionOfBodies() {
+        manager.createBodies(Collections.emptyList());
+        assertThat(manager.findAllBodies()).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createNullCollectionOfBodies() {
+        manager.createBodies(null);
+    }
+
+    @Test
+    public void createBodiesWithExistingId() {
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().id(1L).build();
+        assertThatThrownBy(() -> manager.createBodies(Arrays.asList(joe, catherine)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(joe.getId()).isNull();
+        assertThat(manager.findAllBodies()).isEmpty();
+    }
+
+    @Test
+    public void createBodiesWithDiedTomorrow() {
+        LocalDate tomorrow = NOW.toLocalDate().plusDays(1);
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().died(tomorrow).build();
+        assertThatThrownBy(() -> manager.createBodies(Arrays.asList(joe, catherine)))
+                .isInstanceOf(ValidationException.class);
+        assertThat(joe.getId()).isNull();
+        assertThat(manager.findAllBodies()).isEmpty();
+    }
+
     //--------------------------------------------------------------------------
     // Tests for BodyManager.updateBody(Body) operation
     //--------------------------------------------------------------------------
@@ -558,9 +760,35 @@ public class BodyManagerImplTest {
         testExpectedServiceFailureException((bodyManager) -> bodyManager.deleteBody(body));
     }
 
+    @Test
+    public void createBodiesWithSqlExceptionThrown() throws SQLException {
+        Body body = sampleJoeBodyBuilder().build();
+        testExpectedServiceFailureException((bodyManager) -> bodyManager.createBodies(Arrays.asList(body)));
+    }
+
     @Test
     public void findAllBodiesWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((bodyManager) -> bodyManager.findAllBodies());
     }
 
+    @Test
+    public void findBodiesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((bodyManager) -> bodyManager.findBodies(null, 10));
+    }
+
+    @Test
+    public void findBodiesByNameWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((bodyManager) -> bodyManager.findBodiesByName("Joe", 10));
+    }
+
+    @Test
+    public void findBodiesByQueryWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((bodyManager) -> bodyManager.findBodies(new BodyQuery().vampire(true)));
+    }
+
+    @Test
+    public void streamAllBodiesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((bodyManager) -> bodyManager.streamAllBodies());
+    }
+
 }
@@ -0,0 +1,167 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CachingGraveManager}.
+ */
+public class CachingGraveManagerTest {
+
+    private GraveManager delegate;
+    private CachingGraveManager manager;
+
+    @Before
+    public void setUp() {
+        delegate = mock(GraveManager.class);
+        manager = new CachingGraveManager(delegate, 2);
+    }
+
+    private Grave sampleGrave(long id) {
+        return new GraveBuilder().id(id).column(1).row(2).capacity(3).note("Grave " + id).build();
+    }
+
+    @Test
+    public void getGraveIsServedFromCache() {
+        Grave grave = sampleGrave(1);
+        when(delegate.getGrave(1L)).thenReturn(grave);
+
+        assertThat(manager.getGrave(1L)).isEqualToComparingFieldByField(grave);
+        assertThat(manager.getGrave(1L))
+                .isNotSameAs(grave)
+                .isEqualToComparingFieldByField(grave);
+
+        verify(delegate, times(1)).getGrave(1L);
+        assertThat(manager.getHitCount()).isEqualTo(1);
+        assertThat(manager.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void preloadedGravesAreServedFromCache() {
+        manager.preload(java.util.Arrays.asList(sampleGrave(1), sampleGrave(2), sampleGrave(3)));
+
+        assertThat(manager.size()).isEqualTo(2);
+        assertThat(manager.getGrave(3L)).isEqualToComparingFieldByField(sampleGrave(3));
+        verify(delegate, never()).getGrave(anyLong());
+    }
+
+    @Test
+    public void nonExistingGraveIsNotCached() {
+        assertThat(manager.getGrave(1L)).isNull();
+        assertThat(manager.getGrave(1L)).isNull();
+        verify(delegate, times(2)).getGrave(1L);
+        assertThat(manager.size()).isZero();
+    }
+
+    @Test
+    public void leastRecentlyUsedGraveIsEvicted() {
+        when(delegate.getGrave(anyLong())).thenAnswer(invocation -> sampleGrave((Long) invocation.getArguments()[0]));
+
+        manager.getGrave(1L);
+        manager.getGrave(2L);
+        manager.getGrave(1L);
+        manager.getGrave(3L);
+        manager.getGrave(1L);
+        manager.getGrave(2L);
+
+        verify(delegate, times(1)).getGrave(1L);
+        verify(delegate, times(2)).getGrave(2L);
+        assertThat(manager.getEvictionCount()).isEqualTo(2);
+        assertThat(manager.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void createdGraveIsWrittenThrough() {
+        Grave grave = sampleGrave(1).copy();
+        grave.setId(null);
+        doAnswer(invocation -> {
+            ((Grave) invocation.getArguments()[0]).setId(1L);
+            return null;
+        }).when(delegate).createGrave(grave);
+
+        manager.createGrave(grave);
+
+        assertThat(manager.getGrave(1L)).isEqualToComparingFieldByField(grave);
+        verify(delegate, never()).getGrave(anyLong());
+    }
+
+    @Test
+    public void updatedGraveIsInvalidated() {
+        Grave grave = sampleGrave(1);
+        Grave updated = sampleGrave(1);
+        updated.setNote("Updated");
+        when(delegate.getGrave(1L)).thenReturn(grave.copy()).thenReturn(updated.copy());
+        manager.getGrave(1L);
+
+        manager.updateGrave(updated);
+
+        assertThat(manager.getGrave(1L)).isEqualToComparingFieldByField(updated);
+        verify(delegate, times(2)).getGrave(1L);
+    }
+
+    @Test
+    public void concurrentUpdatesDoNotLeaveStaleGrave() {
+        Grave first = sampleGrave(1);
+        first.setNote("First");
+        Grave second = sampleGrave(1);
+        second.setNote("Second");
+        // the second update is written to the database and cached while the
+        // first one is still running, so the second one is the last one
+        doAnswer(invocation -> {
+            if (((Grave) invocation.getArguments()[0]).getNote().equals("First")) {
+                manager.updateGrave(second);
+            }
+            return null;
+        }).when(delegate).updateGrave(any(Grave.class));
+        when(delegate.getGrave(1L)).thenReturn(second.copy());
+
+        manager.updateGrave(first);
+
+        assertThat(manager.getGrave(1L)).isEqualToComparingFieldByField(second);
+    }
+
+    @Test
+    public void failedUpdateInvalidatesGrave() {
+        Grave grave = sampleGrave(1);
+        when(delegate.getGrave(1L)).thenReturn(grave.copy());
+        manager.getGrave(1L);
+        doThrow(new ServiceFailureException("failure")).when(delegate).updateGrave(grave);
+
+        assertThatThrownBy(() -> manager.updateGrave(grave))
+                .isInstanceOf(ServiceFailureException.class);
+        manager.getGrave(1L);
+
+        verify(delegate, times(2)).getGrave(1L);
+    }
+
+    @Test
+    public void deletedGraveIsInvalidated() {
+        Grave grave = sampleGrave(1);
+        when(delegate.getGrave(1L)).thenReturn(grave.copy()).thenReturn(null);
+        manager.getGrave(1L);
+
+        manager.deleteGrave(grave);
+
+        assertThat(manager.getGrave(1L)).isNull();
+        assertThat(manager.size()).isZero();
+    }
+
+    @Test
+    public void modificationOfReturnedGraveDoesNotAffectCache() {
+        Grave grave = sampleGrave(1);
+        when(delegate.getGrave(1L)).thenReturn(grave.copy());
+
+        manager.getGrave(1L).setNote("Modified");
+
+        assertThat(manager.getGrave(1L)).isEqualToComparingFieldByField(grave);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithZeroSize() {
+        new CachingGraveManager(delegate, 0);
+    }
+}
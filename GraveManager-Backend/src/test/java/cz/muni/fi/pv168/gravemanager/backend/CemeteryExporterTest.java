@@ -0,0 +1,143 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.*;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CemeteryExporter}.
+ */
+public class CemeteryExporterTest {
+
+    private CemeteryExporter exporter;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private PooledDataSource ds;
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    private static PooledDataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        return new PooledDataSource(ds, 1, 4);
+    }
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = prepareDataSource();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        Clock clock = Clock.fixed(NOW.toInstant(), NOW.getZone());
+        exporter = new CemeteryExporter(ds);
+        exporter.setFetchSize(2);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, clock);
+        cemeteryManager = new CemeteryManagerImpl(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        ds.close();
+    }
+
+    private Grave[] prepareCemetery() {
+        Grave grave1 = new GraveBuilder().row(1).column(2).capacity(2).note("North, \"old\" part").build();
+        Grave grave2 = new GraveBuilder().row(3).column(4).capacity(1).note(null).build();
+        graveManager.createGraves(Arrays.asList(grave1, grave2));
+        Body vlad = new BodyBuilder().name("Vlad Tepes").gender(Gender.MALE)
+                .born(1431, Month.NOVEMBER, 10).died(1476, Month.DECEMBER, 14).vampire(true).build();
+        Body pepa = new BodyBuilder().name("Pepa z Depa").gender(Gender.FEMALE)
+                .born(null).died(null).vampire(false).build();
+        bodyManager.createBodies(Arrays.asList(vlad, pepa));
+        cemeteryManager.putBodyIntoGrave(vlad, grave1);
+        cemeteryManager.putBodyIntoGrave(pepa, grave1);
+        return new Grave[]{grave1, grave2};
+    }
+
+    private String export(CemeteryExporter.Format format, boolean gzip, long expectedRecords) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(exporter.export(out, format, gzip)).isEqualTo(expectedRecords);
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        if (gzip) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            text.write(buffer, 0, n);
+        }
+        return new String(text.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void exportCsv() throws IOException {
+        Grave[] graves = prepareCemetery();
+        Body[] bodies = cemeteryManager.findBodiesInGrave(graves[0]).stream()
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId())).toArray(Body[]::new);
+
+        assertThat(export(CemeteryExporter.Format.CSV, false, 3)).isEqualTo(
+                "graveId,row,col,capacity,note,bodyId,name,gender,born,died,vampire\r\n"
+                + graves[0].getId() + ",1,2,2,\"North, \"\"old\"\" part\"," + bodies[0].getId()
+                + ",Vlad Tepes,MALE,1431-11-10,1476-12-14,true\r\n"
+                + graves[0].getId() + ",1,2,2,\"North, \"\"old\"\" part\"," + bodies[1].getId()
+                + ",Pepa z Depa,FEMALE,,,false\r\n"
+                + graves[1].getId() + ",3,4,1,,,,,,,\r\n");
+    }
+
+    @Test
+    public void exportJsonLines() throws IOException {
+        Grave[] graves = prepareCemetery();
+        Body[] bodies = cemeteryManager.findBodiesInGrave(graves[0]).stream()
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId())).toArray(Body[]::new);
+
+        assertThat(export(CemeteryExporter.Format.JSON_LINES, false, 2)).isEqualTo(
+                "{\"id\":" + graves[0].getId() + ",\"row\":1,\"col\":2,\"capacity\":2,"
+                + "\"note\":\"North, \\\"old\\\" part\",\"bodies\":["
+                + "{\"id\":" + bodies[0].getId() + ",\"name\":\"Vlad Tepes\",\"gender\":\"MALE\","
+                + "\"born\":\"1431-11-10\",\"died\":\"1476-12-14\",\"vampire\":true},"
+                + "{\"id\":" + bodies[1].getId() + ",\"name\":\"Pepa z Depa\",\"gender\":\"FEMALE\","
+                + "\"born\":null,\"died\":null,\"vampire\":false}]}\n"
+                + "{\"id\":" + graves[1].getId() + ",\"row\":3,\"col\":4,\"capacity\":1,"
+                + "\"note\":null,\"bodies\":[]}\n");
+    }
+
+    @Test
+    public void exportGzip() throws IOException {
+        prepareCemetery();
+        String plain = export(CemeteryExporter.Format.JSON_LINES, false, 2);
+        assertThat(export(CemeteryExporter.Format.JSON_LINES, true, 2)).isEqualTo(plain);
+    }
+
+    @Test
+    public void exportEmptyCemetery() throws IOException {
+        assertThat(export(CemeteryExporter.Format.CSV, true, 0))
+                .isEqualTo("graveId,row,col,capacity,note,bodyId,name,gender,born,died,vampire\r\n");
+        assertThat(export(CemeteryExporter.Format.JSON_LINES, false, 0)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exportWithNullFormat() throws IOException {
+        exporter.export(new ByteArrayOutputStream(), null, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeFetchSize() {
+        exporter.setFetchSize(-1);
+    }
+}
@@ -0,0 +1,245 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CemeteryImporter}.
+ */
+public class CemeteryImporterTest {
+
+    private CemeteryImporter importer;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private PooledDataSource ds;
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    private static PooledDataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        return new PooledDataSource(ds, 1, 4);
+    }
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = prepareDataSource();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        Clock clock = Clock.fixed(NOW.toInstant(), NOW.getZone());
+        importer = new CemeteryImporter(ds, clock);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, clock);
+        cemeteryManager = new CemeteryManagerImpl(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        ds.close();
+    }
+
+    private static List<Integer> rejectedLines(CemeteryImporter.ImportResult result) {
+        List<Integer> lines = new ArrayList<>();
+        result.getRejects().forEach(reject -> lines.add(reject.getLine()));
+        return lines;
+    }
+
+    @Test
+    public void importGraves() throws IOException {
+        CemeteryImporter.ImportResult result = importer.importGraves(new StringReader(
+                "row,col,capacity,note\n"
+                + "1,2,3,\"Family grave, north\"\n"
+                + "2,3,1,\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(2);
+        assertThat(result.getRejects()).isEmpty();
+        assertThat(graveManager.findAllGraves())
+                .extracting(Grave::getRow, Grave::getColumn, Grave::getCapacity, Grave::getNote)
+                .containsExactly(tuple(1, 2, 3, "Family grave, north"), tuple(2, 3, 1, null));
+    }
+
+    @Test
+    public void importGravesWithColumnsInDifferentOrder() throws IOException {
+        CemeteryImporter.ImportResult result = importer.importGraves(new StringReader(
+                "Note, Capacity, Col, Row\n"
+                + "Grave,3,2,1\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(1);
+        assertThat(graveManager.findAllGraves())
+                .extracting(Grave::getRow, Grave::getColumn, Grave::getCapacity, Grave::getNote)
+                .containsExactly(tuple(1, 2, 3, "Grave"));
+    }
+
+    @Test
+    public void invalidGravesAreRejected() throws IOException {
+        importer.setBatchSize(2);
+        CemeteryImporter.ImportResult result = importer.importGraves(new StringReader(
+                "row,col,capacity,note\n"
+                + "1,1,1,\n"
+                + "-1,1,1,\n"
+                + "1,x,1,\n"
+                + "1,1,0,\n"
+                + "1,1\n"
+                + ",1,1,\n"
+                + "2,2,2,\n"
+                + "3,3,3,\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(3);
+        assertThat(result.getRejects())
+                .extracting(CemeteryImporter.Reject::getLine, CemeteryImporter.Reject::getReason)
+                .containsExactly(
+                        tuple(3, "row is negative number"),
+                        tuple(4, "col is not a number: x"),
+                        tuple(5, "capacity is not positive number"),
+                        tuple(6, "expected 4 fields, found 2"),
+                        tuple(7, "row is empty"));
+        assertThat(graveManager.findAllGraves()).extracting(Grave::getRow).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void onlyFirstRejectsAreKept() throws IOException {
+        importer.setBatchSize(2);
+        importer.setMaxRejects(2);
+        CemeteryImporter.ImportResult result = importer.importGraves(new StringReader(
+                "row,col,capacity,note\n"
+                + "1,1,0,\n"
+                + "2,2,2,\n"
+                + "1,x,1,\n"
+                + "-1,1,1,\n"
+                + "1,1\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(1);
+        assertThat(result.getRejectedCount()).isEqualTo(4);
+        assertThat(rejectedLines(result)).containsExactly(2, 4);
+    }
+
+    @Test
+    public void importBodies() throws IOException {
+        CemeteryImporter.ImportResult result = importer.importBodies(new StringReader(
+                "name,gender,born,died,vampire\n"
+                + "Vlad Tepes,male,1431-11-10,1476-12-14,true\n"
+                + "Pepa z Depa,FEMALE,,,\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(2);
+        assertThat(result.getRejects()).isEmpty();
+        assertThat(bodyManager.findAllBodies())
+                .extracting(Body::getName, Body::getGender, Body::getBorn, Body::getDied, Body::isVampire)
+                .containsExactly(
+                        tuple("Vlad Tepes", Gender.MALE, LocalDate.of(1431, 11, 10), LocalDate.of(1476, 12, 14), true),
+                        tuple("Pepa z Depa", Gender.FEMALE, null, null, false));
+    }
+
+    @Test
+    public void invalidBodiesAreRejected() throws IOException {
+        CemeteryImporter.ImportResult result = importer.importBodies(new StringReader(
+                "name,gender,born,died,vampire\n"
+                + ",MALE,,,\n"
+                + "A,ALIEN,,,\n"
+                + "B,MALE,1900-13-01,,\n"
+                + "C,MALE,1950-01-01,1900-01-01,\n"
+                + "D,MALE,2020-01-01,,\n"
+                + "E,MALE,,,maybe\n"
+                + "F,MALE,,,\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(1);
+        assertThat(result.getRejects())
+                .extracting(CemeteryImporter.Reject::getLine, CemeteryImporter.Reject::getReason)
+                .containsExactly(
+                        tuple(2, "name is null"),
+                        tuple(3, "gender is not a gender: ALIEN"),
+                        tuple(4, "born is not a date: 1900-13-01"),
+                        tuple(5, "died is before born"),
+                        tuple(6, "born is in future"),
+                        tuple(7, "vampire is not a boolean: maybe"));
+        assertThat(bodyManager.findAllBodies()).extracting(Body::getName).containsExactly("F");
+    }
+
+    @Test
+    public void importBurials() throws IOException {
+        Grave grave1 = new GraveBuilder().row(1).column(1).capacity(2).build();
+        Grave grave2 = new GraveBuilder().row(1).column(2).capacity(1).build();
+        graveManager.createGraves(java.util.Arrays.asList(grave1, grave2));
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.MALE).build());
+        }
+        bodyManager.createBodies(bodies);
+        importer.setBatchSize(3);
+
+        CemeteryImporter.ImportResult result = importer.importBurials(new StringReader(
+                "bodyId,graveId\n"
+                + bodies.get(0).getId() + "," + grave1.getId() + "\n"
+                + bodies.get(1).getId() + "," + grave2.getId() + "\n"
+                + bodies.get(2).getId() + "," + grave2.getId() + "\n"
+                + bodies.get(0).getId() + "," + grave1.getId() + "\n"
+                + "-1," + grave1.getId() + "\n"
+                + bodies.get(3).getId() + ",-1\n"
+                + bodies.get(4).getId() + "," + grave1.getId() + "\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(3);
+        assertThat(result.getRejects())
+                .extracting(CemeteryImporter.Reject::getLine, CemeteryImporter.Reject::getReason)
+                .containsExactly(
+                        tuple(4, "grave does not exist or has no free space"),
+                        tuple(5, "body does not exist or it is already placed in some grave"),
+                        tuple(6, "body does not exist or it is already placed in some grave"),
+                        tuple(7, "grave does not exist or has no free space"));
+        assertThat(cemeteryManager.findBodiesInGrave(grave1)).extracting(Body::getId)
+                .containsOnly(bodies.get(0).getId(), bodies.get(4).getId());
+        assertThat(cemeteryManager.findBodiesInGrave(grave2)).extracting(Body::getId)
+                .containsOnly(bodies.get(1).getId());
+        // occupancy counters are consistent with buried bodies
+        assertThat(cemeteryManager.findGravesWithSomeFreeSpace()).isEmpty();
+        assertThat(cemeteryManager.findUnburiedBodies()).extracting(Body::getId)
+                .containsOnly(bodies.get(2).getId(), bodies.get(3).getId());
+    }
+
+    @Test
+    public void spaceOfRejectedBurialIsReused() throws IOException {
+        Grave grave = new GraveBuilder().row(1).column(1).capacity(1).build();
+        graveManager.createGrave(grave);
+        Body body = new BodyBuilder().name("Body").gender(Gender.MALE).build();
+        bodyManager.createBody(body);
+
+        CemeteryImporter.ImportResult result = importer.importBurials(new StringReader(
+                "bodyId,graveId\n"
+                + "-1," + grave.getId() + "\n"
+                + body.getId() + "," + grave.getId() + "\n"));
+
+        assertThat(result.getImportedCount()).isEqualTo(1);
+        assertThat(rejectedLines(result)).containsExactly(2);
+        assertThat(cemeteryManager.findBodiesInGrave(grave)).extracting(Body::getId).containsExactly(body.getId());
+        assertThat(cemeteryManager.findGravesWithSomeFreeSpace()).isEmpty();
+    }
+
+    @Test
+    public void missingColumn() {
+        assertThatThrownBy(() -> importer.importGraves(new StringReader("row,col,note\n1,1,\n")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("capacity");
+    }
+
+    @Test
+    public void missingHeader() {
+        assertThatThrownBy(() -> importer.importBodies(new StringReader("")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBatchSize() {
+        importer.setBatchSize(0);
+    }
+}
@@ -5,6 +5,11 @@ import cz.muni.fi.pv168.common.*;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import javax.sql.DataSource;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.*;
@@ -170,6 +175,84 @@ public class CemeteryManagerImplTest {
         manager.findBodiesInGrave(graveWithNullId);
     }
 
+    @Test
+    public void findAllGravesWithBodies() {
+
+        manager.putBodyIntoGrave(b2, g3);
+        manager.putBodyIntoGrave(b3, g2);
+        manager.putBodyIntoGrave(b4, g3);
+        manager.putBodyIntoGrave(b5, g2);
+
+        Map<Grave, List<Body>> result = manager.findAllGravesWithBodies();
+
+        assertThat(result.keySet())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g2, g3);
+        assertThat(result.get(g1)).isEmpty();
+        assertThat(result.get(g2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b3, b5);
+        assertThat(result.get(g3))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b2, b4);
+    }
+
+    @Test
+    public void findGravesWithBodies() {
+
+        manager.putBodyIntoGrave(b1, g1);
+        manager.putBodyIntoGrave(b3, g2);
+        manager.putBodyIntoGrave(b5, g2);
+
+        Map<Grave, List<Body>> result = manager.findGravesWithBodies(
+                Arrays.asList(g2.getId(), graveNotInDB.getId(), g1.getId(), g2.getId()));
+
+        assertThat(result.keySet())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g2);
+        assertThat(result.get(g1))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b1);
+        assertThat(result.get(g2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b3, b5);
+        assertThat(manager.findGravesWithBodies(Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    public void findGravesWithBodiesForManyIds() {
+
+        manager.putBodyIntoGrave(b1, g3);
+
+        // ids are split into more queries
+        List<Long> ids = new ArrayList<>();
+        for (long id = g3.getId() + 1; id < g3.getId() + 1200; id++) {
+            ids.add(id);
+        }
+        ids.add(g3.getId());
+        ids.add(g1.getId());
+
+        Map<Grave, List<Body>> result = manager.findGravesWithBodies(ids);
+
+        assertThat(result.keySet())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g3);
+        assertThat(result.get(g1)).isEmpty();
+        assertThat(result.get(g3))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findGravesWithBodiesForNullIds() {
+        manager.findGravesWithBodies(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findGravesWithBodiesForNullId() {
+        manager.findGravesWithBodies(Arrays.asList(g1.getId(), null));
+    }
+
     @Test
     public void findUnburiedBodies() {
 
@@ -216,6 +299,100 @@ public class CemeteryManagerImplTest {
                 .containsOnly(g2,g3);
     }
 
+    @Test
+    public void findGravesWithSomeFreeSpaceAfterRemovingBody() {
+
+        manager.putBodyIntoGrave(b1, g1);
+        manager.putBodyIntoGrave(b2, g2);
+        manager.putBodyIntoGrave(b3, g2);
+
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g3);
+
+        manager.removeBodyFromGrave(b1, g1);
+        bodyManager.deleteBody(b3);
+
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g1,g2,g3);
+        assertThat(manager.findEmptyGraves())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g1,g3);
+
+        manager.putBodiesIntoGrave(Arrays.asList(b4, b5), g3);
+        manager.putBodyIntoGrave(b1, g1);
+
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g2,g3);
+    }
+
+    @Test
+    public void findNearestGravesWithFreeSpace() {
+
+        assertThat(manager.findNearestGravesWithFreeSpace(2, 1, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1,g3);
+        assertThat(manager.findNearestGravesWithFreeSpace(9, 9, 5))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g2,g3,g1);
+
+        manager.putBodyIntoGrave(b1, g1);
+
+        assertThat(manager.findNearestGravesWithFreeSpace(2, 1, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g3,g2);
+    }
+
+    @Test
+    public void findNearestGravesWithFreeSpaceFarAway() {
+
+        Grave farGrave = new GraveBuilder().column(5000).row(3000).capacity(1).build();
+        graveManager.createGrave(farGrave);
+        manager.putBodiesIntoGrave(Arrays.asList(b1, b2, b3), g3);
+
+        assertThat(manager.findNearestGravesWithFreeSpace(3100, 4900, 1))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(farGrave);
+        assertThat(manager.findNearestGravesWithFreeSpace(Integer.MAX_VALUE, Integer.MAX_VALUE, 5))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(farGrave,g2,g1);
+    }
+
+    @Test
+    public void findNearestGravesWithFreeSpaceWhenAllGravesAreFull() {
+        Body b6 = new BodyBuilder().name("Body 6").gender(Gender.FEMALE).build();
+        bodyManager.createBody(b6);
+
+        manager.putBodyIntoGrave(b1, g1);
+        manager.putBodiesIntoGrave(Arrays.asList(b2, b3), g2);
+        manager.putBodiesIntoGrave(Arrays.asList(b4, b5, b6), g3);
+
+        assertThat(manager.findNearestGravesWithFreeSpace(2, 1, 3)).isEmpty();
+    }
+
+    @Test
+    public void findNearestGravesWithFreeSpaceStopsAtGridBounds() {
+        ProfilingDataSource profilingDs = new ProfilingDataSource(ds);
+        CemeteryManagerImpl profiledManager = new CemeteryManagerImpl(profilingDs);
+
+        // there are only three graves with free space, so the search window
+        // grows until it covers rows 2 - 9 and columns 1 - 8
+        assertThat(profiledManager.findNearestGravesWithFreeSpace(2, 1, 5))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1,g3,g2);
+        // one query for the bounds and windows with radius 1, 2, 4 and 7
+        assertThat(profilingDs.getStatementStats())
+                .extracting(ProfilingDataSource.StatementStats::getCount)
+                .containsOnly(1L, 4L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findZeroNearestGravesWithFreeSpace() {
+        manager.findNearestGravesWithFreeSpace(1, 1, 0);
+    }
+
     //--------------------------------------------------------------------------
     // Tests for CemeteryManager.putBodyIntoGrave(Body,Grave) operation
     //--------------------------------------------------------------------------
@@ -347,6 +524,104 @@ public class CemeteryManagerImplTest {
         manager.putBodyIntoGrave(b2, graveNotInDB);
     }
 
+    //--------------------------------------------------------------------------
+    // Tests for CemeteryManager.putBodiesIntoGrave(List,Grave) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void putBodiesIntoGrave() {
+
+        manager.putBodiesIntoGrave(Arrays.asList(b1, b3), g3);
+        manager.putBodiesIntoGrave(Arrays.asList(b2, b4), g2);
+
+        assertThat(manager.findBodiesInGrave(g1))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g2))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2,b4);
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b3);
+    }
+
+    @Test
+    public void putNoBodiesIntoGrave() {
+        manager.putBodiesIntoGrave(Collections.emptyList(), g1);
+        assertThat(manager.findBodiesInGrave(g1)).isEmpty();
+    }
+
+    @Test
+    public void putBodiesIntoGraveWithoutEnoughSpace() {
+
+        manager.putBodyIntoGrave(b1, g3);
+
+        assertThatThrownBy(() -> manager.putBodiesIntoGrave(Arrays.asList(b2, b3, b4), g3))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // verify that failure was atomic and no data was changed
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1);
+        assertThat(manager.findUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2,b3,b4,b5);
+    }
+
+    @Test
+    public void putBodiesIntoGraveWithBuriedBody() {
+
+        manager.putBodyIntoGrave(b1, g1);
+
+        assertThatThrownBy(() -> manager.putBodiesIntoGrave(Arrays.asList(b2, b1), g3))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // verify that failure was atomic and no data was changed
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1);
+        assertThat(manager.findBodiesInGrave(g3))
+                .isEmpty();
+    }
+
+    @Test
+    public void putSameBodyIntoGraveTwice() {
+        assertThatThrownBy(() -> manager.putBodiesIntoGrave(Arrays.asList(b2, b2), g3))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findBodiesInGrave(g3)).isEmpty();
+    }
+
+    @Test
+    public void putBodiesNotInDBIntoGrave() {
+        assertThatThrownBy(() -> manager.putBodiesIntoGrave(Arrays.asList(b2, bodyNotInDB), g3))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findBodiesInGrave(g3)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putNullBodiesIntoGrave() {
+        manager.putBodiesIntoGrave(null, g2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putBodiesContainingNullIntoGrave() {
+        manager.putBodiesIntoGrave(Arrays.asList(b1, null), g2);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void putBodiesWithNullIdIntoGrave() {
+        manager.putBodiesIntoGrave(Arrays.asList(b1, bodyWithNullId), g2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putBodiesIntoNullGrave() {
+        manager.putBodiesIntoGrave(Arrays.asList(b1, b2), null);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void putBodiesIntoGraveNotInDB() {
+        manager.putBodiesIntoGrave(Arrays.asList(b1, b2), graveNotInDB);
+    }
+
     //--------------------------------------------------------------------------
     // Tests for CemeteryManager.removeBodyFromGrave(Body,Grave) operation
     //--------------------------------------------------------------------------
@@ -506,6 +781,11 @@ public class CemeteryManagerImplTest {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findGravesWithSomeFreeSpace());
     }
 
+    @Test
+    public void findNearestGravesWithFreeSpaceWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findNearestGravesWithFreeSpace(1, 1, 1));
+    }
+
     @Test
     public void findUnburiedBodiesWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findUnburiedBodies());
@@ -516,6 +796,11 @@ public class CemeteryManagerImplTest {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.putBodyIntoGrave(b1, g1));
     }
 
+    @Test
+    public void putBodiesIntoGraveWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.putBodiesIntoGrave(Arrays.asList(b1, b2), g2));
+    }
+
     @Test
     public void removeBodyIntoGraveWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.removeBodyFromGrave(b1, g1));
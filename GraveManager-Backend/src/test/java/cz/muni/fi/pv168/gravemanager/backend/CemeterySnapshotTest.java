@@ -0,0 +1,155 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.*;
+import java.util.Arrays;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CemeterySnapshot}.
+ */
+public class CemeterySnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CemeterySnapshot snapshot;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private PooledDataSource ds;
+    private Path file;
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    private static PooledDataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        return new PooledDataSource(ds, 1, 4);
+    }
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = prepareDataSource();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        snapshot = new CemeterySnapshot(ds);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.fixed(NOW.toInstant(), NOW.getZone()));
+        cemeteryManager = new CemeteryManagerImpl(ds);
+        file = folder.getRoot().toPath().resolve("cemetery.snapshot");
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        ds.close();
+    }
+
+    @Test
+    public void saveAndRead() throws IOException {
+        Grave grave1 = new GraveBuilder().row(1).column(2).capacity(2).note("Žluťoučký kůň").build();
+        Grave grave2 = new GraveBuilder().row(3).column(4).capacity(1).note(null).build();
+        graveManager.createGraves(Arrays.asList(grave1, grave2));
+        Body vlad = new BodyBuilder().name("Vlad Tepes").gender(Gender.MALE)
+                .born(1431, Month.NOVEMBER, 10).died(1476, Month.DECEMBER, 14).vampire(true).build();
+        Body pepa = new BodyBuilder().name("Pepa z Depa").gender(Gender.FEMALE)
+                .born(null).died(null).vampire(false).build();
+        bodyManager.createBodies(Arrays.asList(vlad, pepa));
+        cemeteryManager.putBodyIntoGrave(vlad, grave1);
+
+        snapshot.save(file);
+        CemeterySnapshot.Contents contents = CemeterySnapshot.read(file);
+
+        assertThat(contents.getGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(grave1, grave2);
+        assertThat(contents.getBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(vlad, pepa);
+        assertThat(contents.getGraveId(vlad)).isEqualTo(grave1.getId());
+        assertThat(contents.getGraveId(pepa)).isNull();
+        assertThat(contents.getGraveHighWaterId()).isEqualTo(grave2.getId());
+        assertThat(contents.getBodyHighWaterId()).isEqualTo(pepa.getId());
+    }
+
+    @Test
+    public void loadFetchesNewerRows() throws IOException {
+        Grave grave1 = new GraveBuilder().row(1).column(1).capacity(2).build();
+        graveManager.createGrave(grave1);
+        Body body1 = new BodyBuilder().name("Body 1").gender(Gender.MALE).build();
+        bodyManager.createBody(body1);
+        snapshot.save(file);
+
+        Grave grave2 = new GraveBuilder().row(2).column(2).capacity(1).build();
+        graveManager.createGrave(grave2);
+        Body body2 = new BodyBuilder().name("Body 2").gender(Gender.FEMALE).build();
+        bodyManager.createBody(body2);
+        cemeteryManager.putBodyIntoGrave(body2, grave2);
+
+        CemeterySnapshot.Contents contents = snapshot.load(file);
+
+        assertThat(contents.getGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(grave1, grave2);
+        assertThat(contents.getBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(body1, body2);
+        assertThat(contents.getGraveId(body2)).isEqualTo(grave2.getId());
+        assertThat(contents.getGraveHighWaterId()).isEqualTo(grave2.getId());
+        assertThat(contents.getBodyHighWaterId()).isEqualTo(body2.getId());
+    }
+
+    @Test
+    public void warmIndexAndCache() throws IOException {
+        Grave grave = new GraveBuilder().row(5).column(6).capacity(1).build();
+        graveManager.createGrave(grave);
+        snapshot.save(file);
+        CemeterySnapshot.Contents contents = snapshot.load(file);
+
+        GridIndexedGraveManager indexed = new GridIndexedGraveManager(
+                graveManager, new GraveGridIndex(), contents.getGraves());
+        CachingGraveManager caching = new CachingGraveManager(indexed, 10);
+        caching.preload(contents.getGraves());
+
+        assertThat(caching.findGraveAt(5, 6)).isEqualToComparingFieldByField(grave);
+        assertThat(caching.getGrave(grave.getId())).isEqualToComparingFieldByField(grave);
+        assertThat(caching.getMissCount()).isZero();
+    }
+
+    @Test
+    public void saveReplacesExistingSnapshot() throws IOException {
+        snapshot.save(file);
+        graveManager.createGrave(new GraveBuilder().build());
+        snapshot.save(file);
+
+        assertThat(CemeterySnapshot.read(file).getGraves()).hasSize(1);
+        assertThat(folder.getRoot().list()).containsExactly("cemetery.snapshot");
+    }
+
+    @Test
+    public void readInvalidFile() throws IOException {
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThatThrownBy(() -> CemeterySnapshot.read(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void readTruncatedFile() throws IOException {
+        graveManager.createGrave(new GraveBuilder().note("Some note").build());
+        snapshot.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThatThrownBy(() -> CemeterySnapshot.read(file)).isInstanceOf(IOException.class);
+    }
+}
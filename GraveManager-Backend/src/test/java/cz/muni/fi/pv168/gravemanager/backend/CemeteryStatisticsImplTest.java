@@ -0,0 +1,127 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.*;
+import java.util.Arrays;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CemeteryStatisticsImpl}.
+ */
+public class CemeteryStatisticsImplTest {
+
+    private CemeteryStatisticsImpl statistics;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private PooledDataSource ds;
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    private static PooledDataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        return new PooledDataSource(ds, 1, 4);
+    }
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = prepareDataSource();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        statistics = new CemeteryStatisticsImpl(ds);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.fixed(NOW.toInstant(), NOW.getZone()));
+        cemeteryManager = new CemeteryManagerImpl(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        ds.close();
+    }
+
+    private Grave newGrave(int row, int column, int capacity) {
+        return new GraveBuilder().row(row).column(column).capacity(capacity).build();
+    }
+
+    private void bury(Grave grave, int count) {
+        for (int i = 0; i < count; i++) {
+            Body body = new BodyBuilder().name("Body").gender(Gender.MALE).build();
+            bodyManager.createBody(body);
+            cemeteryManager.putBodyIntoGrave(body, grave);
+        }
+    }
+
+    @Test
+    public void emptyCemetery() {
+        assertThat(statistics.getTotalOccupancy()).isEqualTo(new Occupancy(0, 0, 0));
+        assertThat(statistics.getTotalOccupancy().getFillRatio()).isZero();
+
+        OccupancyReport report = statistics.getOccupancyReport(10);
+        assertThat(report.getTotal()).isEqualTo(new Occupancy(0, 0, 0));
+        assertThat(report.getRows()).isEmpty();
+        assertThat(report.getColumns()).isEmpty();
+        assertThat(report.getBlocks()).isEmpty();
+    }
+
+    @Test
+    public void occupancyReport() {
+        Grave g1 = newGrave(0, 0, 4);
+        Grave g2 = newGrave(0, 5, 2);
+        Grave g3 = newGrave(3, 5, 1);
+        Grave g4 = newGrave(9, 5, 3);
+        // two graves at the same position
+        Grave g5 = newGrave(3, 5, 2);
+        graveManager.createGraves(Arrays.asList(g1, g2, g3, g4, g5));
+        bury(g1, 1);
+        bury(g2, 2);
+        bury(g3, 1);
+
+        assertThat(statistics.getTotalOccupancy()).isEqualTo(new Occupancy(5, 12, 4));
+        assertThat(statistics.getTotalOccupancy().getFillRatio()).isEqualTo(4.0 / 12);
+        assertThat(statistics.getTotalOccupancy().getFree()).isEqualTo(8);
+
+        OccupancyReport report = statistics.getOccupancyReport(4);
+        assertThat(report.getBlockSize()).isEqualTo(4);
+        assertThat(report.getTotal()).isEqualTo(new Occupancy(5, 12, 4));
+        assertThat(report.getRows()).containsExactly(
+                entry(0, new Occupancy(2, 6, 3)),
+                entry(3, new Occupancy(2, 3, 1)),
+                entry(9, new Occupancy(1, 3, 0)));
+        assertThat(report.getColumns()).containsExactly(
+                entry(0, new Occupancy(1, 4, 1)),
+                entry(5, new Occupancy(4, 8, 3)));
+        assertThat(report.getBlocks())
+                .extracting(OccupancyReport.Block::getRow, OccupancyReport.Block::getColumn,
+                        OccupancyReport.Block::getOccupancy)
+                .containsExactly(
+                        tuple(0, 0, new Occupancy(1, 4, 1)),
+                        tuple(0, 1, new Occupancy(3, 5, 3)),
+                        tuple(2, 1, new Occupancy(1, 3, 0)));
+    }
+
+    @Test
+    public void statisticsFollowRemovals() {
+        Grave grave = newGrave(1, 1, 2);
+        graveManager.createGrave(grave);
+        bury(grave, 2);
+        Body body = cemeteryManager.findBodiesInGrave(grave).get(0);
+        cemeteryManager.removeBodyFromGrave(body, grave);
+
+        assertThat(statistics.getOccupancyReport(1).getRows())
+                .containsExactly(entry(1, new Occupancy(1, 2, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reportWithZeroBlockSize() {
+        statistics.getOccupancyReport(0);
+    }
+}
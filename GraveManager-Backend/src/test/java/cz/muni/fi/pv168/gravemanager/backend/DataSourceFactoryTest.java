@@ -0,0 +1,33 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link DataSourceFactory}.
+ */
+public class DataSourceFactoryTest {
+
+    @Test
+    public void connectionsArePooled() throws SQLException {
+        try (PooledDataSource ds = DataSourceFactory.createDerbyDataSource("memory:factory-test", 2)) {
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = ds.getConnection()) {
+                    assertThat(conn.isValid(1)).isTrue();
+                }
+            }
+            assertThat(ds.getBorrowCount()).isEqualTo(3);
+            assertThat(ds.getCreatedCount()).isEqualTo(1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithZeroConnections() {
+        DataSourceFactory.createDerbyDataSource("memory:factory-test", 0);
+    }
+}
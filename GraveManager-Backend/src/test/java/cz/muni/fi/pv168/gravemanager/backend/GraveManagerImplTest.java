@@ -4,6 +4,12 @@ import cz.muni.fi.pv168.common.*;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.*;
@@ -159,6 +165,91 @@ public class GraveManagerImplTest {
                 .containsOnly(g1,g2);
     }
 
+    @Test
+    public void streamAllGraves() {
+
+        try (Stream<Grave> graves = manager.streamAllGraves()) {
+            assertThat(graves.count()).isZero();
+        }
+
+        Grave g1 = sampleSmallGraveBuilder().build();
+        Grave g2 = sampleBigGraveBuilder().build();
+
+        manager.createGrave(g1);
+        manager.createGrave(g2);
+
+        manager.setFetchSize(1);
+        try (Stream<Grave> graves = manager.streamAllGraves()) {
+            assertThat(graves.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsOnly(g1,g2);
+        }
+    }
+
+    @Test
+    public void findGravesByPages() {
+
+        assertThat(manager.findGraves(null, 2)).isEmpty();
+
+        Grave g1 = sampleSmallGraveBuilder().build();
+        Grave g2 = sampleBigGraveBuilder().build();
+        Grave g3 = sampleSmallGraveBuilder().note("Another Grave").build();
+        manager.createGraves(Arrays.asList(g1, g2, g3));
+
+        List<Grave> firstPage = manager.findGraves(null, 2);
+        assertThat(firstPage)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1,g2);
+        List<Grave> secondPage = manager.findGraves(firstPage.get(1).getId(), 2);
+        assertThat(secondPage)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g3);
+        assertThat(manager.findGraves(g3.getId(), 2)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findGravesWithZeroLimit() {
+        manager.findGraves(null, 0);
+    }
+
+    @Test
+    public void findGravesInRegion() {
+        Grave g1 = sampleSmallGraveBuilder().row(1).column(1).build();
+        Grave g2 = sampleSmallGraveBuilder().row(1).column(5).build();
+        Grave g3 = sampleBigGraveBuilder().row(3).column(2).build();
+        Grave g4 = sampleBigGraveBuilder().row(8).column(2).build();
+        manager.createGraves(Arrays.asList(g4, g3, g2, g1));
+
+        assertThat(manager.findGravesInRegion(1, 3, 1, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1,g3);
+        assertThat(manager.findGravesInRegion(0, 10, 0, 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1,g2,g3,g4);
+        assertThat(manager.findGravesInRegion(4, 7, 0, 10)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findGravesInRegionWithInvertedRows() {
+        manager.findGravesInRegion(3, 1, 0, 10);
+    }
+
+    @Test
+    public void findGraveAt() {
+        Grave g1 = sampleSmallGraveBuilder().row(1).column(1).build();
+        Grave g2 = sampleBigGraveBuilder().row(1).column(2).build();
+        manager.createGraves(Arrays.asList(g1, g2));
+
+        assertThat(manager.findGraveAt(1, 2))
+                .isEqualToComparingFieldByField(g2);
+        assertThat(manager.findGraveAt(2, 1)).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setNegativeFetchSize() {
+        manager.setFetchSize(-1);
+    }
+
     // Test exception with expected parameter of @Test annotation
     // it does not allow to specify exact place where the exception
     // is expected, therefor it is suitable only for simple single line tests
@@ -235,6 +326,82 @@ public class GraveManagerImplTest {
                 .isEqualToComparingFieldByField(grave);
     }
 
+    //--------------------------------------------------------------------------
+    // Tests for GraveManager.createGraves(Collection) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void createGraves() {
+        Grave g1 = sampleSmallGraveBuilder().build();
+        Grave g2 = sampleBigGraveBuilder().build();
+        manager.createGraves(Arrays.asList(g1, g2));
+
+        assertThat(g1.getId()).isNotNull();
+        assertThat(g2.getId()).isNotNull().isNotEqualTo(g1.getId());
+        assertThat(manager.getGrave(g1.getId()))
+                .isEqualToComparingFieldByField(g1);
+        assertThat(manager.getGrave(g2.getId()))
+                .isEqualToComparingFieldByField(g2);
+    }
+
+    @Test
+    public void createGravesInMultipleBatches() {
+        Grave existingGrave = sampleBigGraveBuilder().build();
+        manager.createGrave(existingGrave);
+
+        List<Grave> graves = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            graves.add(sampleSmallGraveBuilder().row(i).note("Grave " + i).build());
+        }
+        manager.createGraves(graves);
+
+        assertThat(graves).extracting(Grave::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(manager.findAllGraves())
+                .hasSize(1201)
+                .usingFieldByFieldElementComparator()
+                .containsAll(graves)
+                .contains(existingGrave);
+    }
+
+    @Test
+    public void createEmptyCollectionOfGraves() {
+        manager.createGraves(Collections.emptyList());
+        assertThat(manager.findAllGraves()).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createNullCollectionOfGraves() {
+        manager.createGraves(null);
+    }
+
+    @Test
+    public void createGravesContainingNull() {
+        Grave grave = sampleSmallGraveBuilder().build();
+        assertThatThrownBy(() -> manager.createGraves(Arrays.asList(grave, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(manager.findAllGraves()).isEmpty();
+    }
+
+    @Test
+    public void createGravesWithExistingId() {
+        Grave grave = sampleSmallGraveBuilder().build();
+        Grave graveWithId = sampleBigGraveBuilder().id(1L).build();
+        assertThatThrownBy(() -> manager.createGraves(Arrays.asList(grave, graveWithId)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(grave.getId()).isNull();
+        assertThat(manager.findAllGraves()).isEmpty();
+    }
+
+    @Test
+    public void createGravesWithInvalidGrave() {
+        Grave grave = sampleSmallGraveBuilder().build();
+        Grave invalidGrave = sampleBigGraveBuilder().capacity(0).build();
+        assertThatThrownBy(() -> manager.createGraves(Arrays.asList(grave, invalidGrave)))
+                .isInstanceOf(ValidationException.class);
+        assertThat(grave.getId()).isNull();
+        assertThat(manager.findAllGraves()).isEmpty();
+    }
+
     //--------------------------------------------------------------------------
     // Tests for GraveManager.updateGrave(Grave) operation
     //--------------------------------------------------------------------------
@@ -490,9 +657,35 @@ public class GraveManagerImplTest {
         testExpectedServiceFailureException((graveManager) -> graveManager.deleteGrave(grave));
     }
 
+    @Test
+    public void createGravesWithSqlExceptionThrown() throws SQLException {
+        Grave grave = sampleSmallGraveBuilder().build();
+        testExpectedServiceFailureException((graveManager) -> graveManager.createGraves(Arrays.asList(grave)));
+    }
+
     @Test
     public void findAllGravesWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((graveManager) -> graveManager.findAllGraves());
     }
 
+    @Test
+    public void findGravesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((graveManager) -> graveManager.findGraves(null, 10));
+    }
+
+    @Test
+    public void findGravesInRegionWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((graveManager) -> graveManager.findGravesInRegion(0, 10, 0, 10));
+    }
+
+    @Test
+    public void findGraveAtWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((graveManager) -> graveManager.findGraveAt(1, 1));
+    }
+
+    @Test
+    public void streamAllGravesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((graveManager) -> graveManager.streamAllGraves());
+    }
+
 }
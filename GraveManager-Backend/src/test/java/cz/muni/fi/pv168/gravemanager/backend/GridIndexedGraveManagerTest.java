@@ -0,0 +1,111 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link GridIndexedGraveManager}.
+ */
+public class GridIndexedGraveManagerTest {
+
+    private GraveManagerImpl graveManagerImpl;
+    private DataSource ds;
+
+    private static DataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        return ds;
+    }
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = prepareDataSource();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        graveManagerImpl = new GraveManagerImpl(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    private Grave newGrave(int row, int column) {
+        return new GraveBuilder().row(row).column(column).capacity(2).note("Grave " + row + "/" + column).build();
+    }
+
+    @Test
+    public void loadExistingGraves() {
+        Grave g1 = newGrave(1, 1);
+        Grave g2 = newGrave(40, 40);
+        graveManagerImpl.createGraves(Arrays.asList(g1, g2));
+
+        GridIndexedGraveManager manager = new GridIndexedGraveManager(graveManagerImpl);
+
+        assertThat(manager.findGravesInRegion(0, 100, 0, 100))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1,g2);
+        assertThat(manager.findGraveAt(40, 40))
+                .isEqualToComparingFieldByField(g2);
+    }
+
+    @Test
+    public void indexFollowsModifications() {
+        GridIndexedGraveManager manager = new GridIndexedGraveManager(graveManagerImpl, new GraveGridIndex(4));
+        Grave g1 = newGrave(1, 1);
+        Grave g2 = newGrave(2, 3);
+        Grave g3 = newGrave(17, 9);
+        manager.createGrave(g1);
+        manager.createGraves(Arrays.asList(g2, g3));
+
+        g2.setRow(30);
+        manager.updateGrave(g2);
+        manager.deleteGrave(g1);
+
+        assertThat(manager.findGraveAt(1, 1)).isNull();
+        assertThat(manager.findGraveAt(2, 3)).isNull();
+        assertThat(manager.findGraveAt(30, 3))
+                .isEqualToComparingFieldByField(g2);
+        assertThat(manager.findGravesInRegion(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g3,g2);
+        assertThat(manager.findGravesInRegion(10, 20, 5, 9))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g3);
+    }
+
+    @Test
+    public void returnedGravesAreCopies() {
+        GridIndexedGraveManager manager = new GridIndexedGraveManager(graveManagerImpl);
+        Grave grave = newGrave(1, 1);
+        manager.createGrave(grave);
+
+        grave.setRow(5);
+        manager.findGraveAt(1, 1).setRow(6);
+
+        assertThat(manager.findGraveAt(1, 1)).isNotNull();
+        assertThat(manager.findGravesInRegion(5, 6, 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void failedModificationDoesNotChangeIndex() {
+        GridIndexedGraveManager manager = new GridIndexedGraveManager(graveManagerImpl);
+        Grave grave = newGrave(1, 1);
+        manager.createGrave(grave);
+
+        grave.setCapacity(0);
+        grave.setRow(2);
+        assertThatThrownBy(() -> manager.updateGrave(grave))
+                .isInstanceOf(ValidationException.class);
+        assertThat(manager.findGraveAt(1, 1)).isNotNull();
+        assertThat(manager.findGraveAt(2, 1)).isNull();
+    }
+}
@@ -0,0 +1,205 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link GuardedCemeteryManager}.
+ */
+public class GuardedCemeteryManagerTest {
+
+    private GuardedCemeteryManager manager;
+    private BodyManagerImpl bodyManager;
+    private GraveManagerImpl graveManager;
+    private PooledDataSource ds;
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    private static PooledDataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        return new PooledDataSource(ds, 1, 8);
+    }
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = prepareDataSource();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        manager = new GuardedCemeteryManager(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.fixed(NOW.toInstant(), NOW.getZone()));
+        graveManager = new GraveManagerImpl(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        ds.close();
+    }
+
+    private Grave createGrave(int capacity) {
+        Grave grave = new GraveBuilder().column(1).row(2).capacity(capacity).note("Grave").build();
+        graveManager.createGrave(grave);
+        return grave;
+    }
+
+    private List<Body> createBodies(int count) {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.MALE).build());
+        }
+        bodyManager.createBodies(bodies);
+        return bodies;
+    }
+
+    @Test
+    public void putBodyIntoGrave() {
+        Grave grave = createGrave(2);
+        List<Body> bodies = createBodies(2);
+
+        manager.putBodyIntoGrave(bodies.get(0), grave);
+
+        assertThat(manager.findBodiesInGrave(grave))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(bodies.get(0));
+        assertThat(manager.findGravesWithSomeFreeSpace()).extracting(Grave::getId).containsOnly(grave.getId());
+
+        manager.putBodyIntoGrave(bodies.get(1), grave);
+
+        assertThat(manager.findBodiesInGrave(grave)).hasSize(2);
+        assertThat(manager.findGravesWithSomeFreeSpace()).isEmpty();
+    }
+
+    @Test
+    public void putBodyIntoFullGrave() {
+        Grave grave = createGrave(1);
+        List<Body> bodies = createBodies(2);
+        manager.putBodyIntoGrave(bodies.get(0), grave);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(bodies.get(1), grave))
+                .isInstanceOf(IllegalEntityException.class)
+                .hasMessageContaining("has not enough free space");
+        assertThat(manager.findGraveWithBody(bodies.get(1))).isNull();
+    }
+
+    @Test
+    public void putBodyIntoGraveNotInDb() {
+        Grave grave = createGrave(1);
+        Body body = createBodies(1).get(0);
+        Grave graveNotInDb = new GraveBuilder().id(grave.getId() + 100).build();
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(body, graveNotInDb))
+                .isInstanceOf(IllegalEntityException.class)
+                .hasMessageContaining("does not exist");
+    }
+
+    @Test
+    public void putBuriedBodyKeepsOccupancy() {
+        Grave grave1 = createGrave(1);
+        Grave grave2 = createGrave(1);
+        Body body = createBodies(1).get(0);
+        manager.putBodyIntoGrave(body, grave1);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(body, grave2))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // reservation of space in grave2 has been rolled back
+        assertThat(manager.findEmptyGraves()).extracting(Grave::getId).containsOnly(grave2.getId());
+    }
+
+    @Test
+    public void putBodiesIntoGraveWithoutEnoughSpace() {
+        Grave grave = createGrave(2);
+        List<Body> bodies = createBodies(3);
+
+        assertThatThrownBy(() -> manager.putBodiesIntoGrave(bodies, grave))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findBodiesInGrave(grave)).isEmpty();
+
+        manager.putBodiesIntoGrave(bodies.subList(0, 2), grave);
+        assertThat(manager.findBodiesInGrave(grave)).hasSize(2);
+    }
+
+    @Test
+    public void concurrentBurialsDoNotOversubscribeGrave() throws Exception {
+        int capacity = 5;
+        int threads = 8;
+        Grave grave = createGrave(capacity);
+        List<Body> bodies = createBodies(threads * 4);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Body body : bodies) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        manager.putBodyIntoGrave(body, grave);
+                        return true;
+                    } catch (IllegalEntityException ex) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int buried = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    buried++;
+                }
+            }
+            assertThat(buried).isEqualTo(capacity);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(manager.findBodiesInGrave(grave)).hasSize(capacity);
+        assertThat(manager.findGravesWithSomeFreeSpace()).isEmpty();
+    }
+
+    @Test
+    public void transientFailures() {
+        assertThat(GuardedCemeteryManager.isTransient(new SQLException("deadlock", "40001"))).isTrue();
+        assertThat(GuardedCemeteryManager.isTransient(new SQLException("lock timeout", "40XL1"))).isTrue();
+        assertThat(GuardedCemeteryManager.isTransient(new SQLException("constraint", "23505"))).isFalse();
+
+        SQLException chained = new SQLException("failure", "XJ001");
+        chained.setNextException(new SQLException("deadlock", "40001"));
+        assertThat(GuardedCemeteryManager.isTransient(chained)).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithZeroAttempts() {
+        new GuardedCemeteryManager(ds, 0);
+    }
+
+    @Test
+    public void removeAndPutAgain() {
+        Grave grave = createGrave(1);
+        List<Body> bodies = createBodies(2);
+        manager.putBodiesIntoGrave(Arrays.asList(bodies.get(0)), grave);
+        manager.removeBodyFromGrave(bodies.get(0), grave);
+
+        manager.putBodyIntoGrave(bodies.get(1), grave);
+
+        assertThat(manager.findBodiesInGrave(grave))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(bodies.get(1));
+    }
+}
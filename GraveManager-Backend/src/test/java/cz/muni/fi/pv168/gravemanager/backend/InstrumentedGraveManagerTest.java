@@ -0,0 +1,93 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import org.junit.*;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link InstrumentedGraveManager}.
+ */
+public class InstrumentedGraveManagerTest {
+
+    private GraveManager delegate;
+    private InstrumentedGraveManager manager;
+
+    @Before
+    public void setUp() {
+        delegate = mock(GraveManager.class);
+        manager = new InstrumentedGraveManager(delegate);
+    }
+
+    @Test
+    public void successfulCallsAreCounted() {
+        Grave grave = new GraveBuilder().id(1L).build();
+        when(delegate.getGrave(1L)).thenReturn(grave);
+
+        assertThat(manager.getGrave(1L)).isSameAs(grave);
+        assertThat(manager.getGrave(1L)).isSameAs(grave);
+
+        MethodMetrics metrics = manager.getMetrics().method("getGrave");
+        assertThat(metrics.getCalls()).isEqualTo(2);
+        assertThat(metrics.getLatencies().getCount()).isEqualTo(2);
+        assertThat(metrics.getServiceFailures() + metrics.getValidationErrors()
+                + metrics.getIllegalEntityErrors() + metrics.getOtherErrors()).isZero();
+        assertThat(manager.getMetrics().method("findAllGraves").getCalls()).isZero();
+    }
+
+    @Test
+    public void errorsAreCountedByType() {
+        Grave grave = new GraveBuilder().build();
+        doThrow(new ValidationException("invalid")).doThrow(new IllegalEntityException("illegal"))
+                .doThrow(new ServiceFailureException("failure")).doThrow(new IllegalArgumentException())
+                .doNothing()
+                .when(delegate).createGrave(grave);
+
+        assertThatThrownBy(() -> manager.createGrave(grave)).isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> manager.createGrave(grave)).isInstanceOf(IllegalEntityException.class);
+        assertThatThrownBy(() -> manager.createGrave(grave)).isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> manager.createGrave(grave)).isInstanceOf(IllegalArgumentException.class);
+        manager.createGrave(grave);
+
+        MethodMetrics metrics = manager.getMetrics().method("createGrave");
+        assertThat(metrics.getCalls()).isEqualTo(5);
+        assertThat(metrics.getValidationErrors()).isEqualTo(1);
+        assertThat(metrics.getIllegalEntityErrors()).isEqualTo(1);
+        assertThat(metrics.getServiceFailures()).isEqualTo(1);
+        assertThat(metrics.getOtherErrors()).isEqualTo(1);
+
+        manager.getMetrics().reset();
+        assertThat(metrics.getCalls()).isZero();
+        assertThat(metrics.getValidationErrors()).isZero();
+    }
+
+    @Test
+    public void metricsArePublishedAsMBeans() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        when(delegate.findGraveAt(1, 2)).thenReturn(null);
+        manager.findGraveAt(1, 2);
+
+        manager.getMetrics().registerMBeans(server);
+        ObjectName name = new ObjectName("cz.muni.fi.pv168:type=GraveManager,method=findGraveAt");
+        assertThat(server.getAttribute(name, "Calls")).isEqualTo(1L);
+        assertThat(server.queryNames(new ObjectName("cz.muni.fi.pv168:type=GraveManager,*"), null))
+                .hasSize(manager.getMetrics().getMethods().size());
+
+        server.invoke(name, "reset", null, null);
+        assertThat(server.getAttribute(name, "Calls")).isEqualTo(0L);
+
+        InstrumentedGraveManager other = new InstrumentedGraveManager(delegate);
+        assertThatThrownBy(() -> other.getMetrics().registerMBeans(server))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(server.isRegistered(name)).isTrue();
+
+        manager.getMetrics().unregisterMBeans(server);
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+}
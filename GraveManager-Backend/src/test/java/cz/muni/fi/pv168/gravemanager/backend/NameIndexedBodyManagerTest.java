@@ -0,0 +1,225 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.*;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link NameIndexedBodyManager} and {@link BodyNameIndex}.
+ */
+public class NameIndexedBodyManagerTest {
+
+    private BodyManagerImpl bodyManagerImpl;
+    private PooledDataSource ds;
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    private static PooledDataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        return new PooledDataSource(ds, 1, 4);
+    }
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        ds = prepareDataSource();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        bodyManagerImpl = new BodyManagerImpl(ds, Clock.fixed(NOW.toInstant(), NOW.getZone()));
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        ds.close();
+    }
+
+    private Body newBody(String name) {
+        return new BodyBuilder().name(name).gender(Gender.MALE).build();
+    }
+
+    @Test
+    public void normalize() {
+        assertThat(BodyNameIndex.normalize("Novák-Dvořák, Jiří")).isEqualTo("novak dvorak jiri");
+        assertThat(BodyNameIndex.normalize("  ŽLUŤOUČKÝ   kůň 2. ")).isEqualTo("zlutoucky kun 2");
+        assertThat(BodyNameIndex.normalize(" - ")).isEmpty();
+        assertThat(BodyNameIndex.normalize("김민준 (金敏俊)")).isEqualTo("김민준 金敏俊");
+    }
+
+    @Test
+    public void longNonLatinName() {
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 255) {
+            name.append("한");
+        }
+        Body body = newBody(name.toString());
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl);
+        manager.createBody(body);
+
+        assertThat(BodyNameIndex.normalize(body.getName())).hasSize(255);
+        assertThat(bodyManagerImpl.findBodiesByName("한한", 10)).containsExactly(body);
+        assertThat(manager.findBodiesByName("한한", 10)).containsExactly(body);
+    }
+
+    @Test
+    public void loadExistingBodies() {
+        Body novak = newBody("Jan Novák");
+        Body svoboda = newBody("Petr Svoboda");
+        bodyManagerImpl.createBodies(Arrays.asList(novak, svoboda));
+
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl);
+
+        assertThat(manager.findBodiesByName("novak", 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(novak);
+        assertThat(manager.findBodiesByName("PETR", 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(svoboda);
+    }
+
+    @Test
+    public void indexFollowsModifications() {
+        BodyNameIndex index = new BodyNameIndex();
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl, index);
+        Body b1 = newBody("Jan Novák");
+        Body b2 = newBody("Jana Nováková");
+        Body b3 = newBody("Josef Dvořák");
+        manager.createBody(b1);
+        manager.createBodies(Arrays.asList(b2, b3));
+
+        b3.setName("Josef Novotný");
+        manager.updateBody(b3);
+        manager.deleteBody(b1);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(manager.findBodiesByName("nov", 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b2, b3);
+        assertThat(manager.findBodiesByName("dvorak", 10)).isEmpty();
+        assertThat(manager.findBodiesByName("jan", 10)).containsExactly(b2);
+    }
+
+    @Test
+    public void resultsAreOrderedAndLimited() {
+        Body b1 = newBody("Novák Novák");
+        Body b2 = newBody("Jan Novotný");
+        Body b3 = newBody("Nováček");
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl);
+        manager.createBodies(Arrays.asList(b1, b2, b3));
+
+        // each body is returned once, even if more of its words match, and
+        // it is ordered by the name from the first matching word
+        assertThat(manager.findBodiesByName("nov", 10)).containsExactly(b3, b1, b2);
+        assertThat(manager.findBodiesByName("nov", 2)).containsExactly(b3, b1);
+        assertThat(manager.findBodiesByName("jan nov", 10)).containsExactly(b2);
+        assertThat(bodyManagerImpl.findBodiesByName("nov", 10)).containsExactly(b3, b1, b2);
+        assertThat(bodyManagerImpl.findBodiesByName("nov", 2)).containsExactly(b3, b1);
+    }
+
+    @Test
+    public void sameNamesAreOrderedById() {
+        Body[] bodies = new Body[12];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = newBody("Jan Novák");
+        }
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl);
+        manager.createBodies(Arrays.asList(bodies));
+
+        assertThat(manager.findBodiesByName("novak", 11)).containsExactly(Arrays.copyOf(bodies, 11));
+        assertThat(bodyManagerImpl.findBodiesByName("novak", 11)).containsExactly(Arrays.copyOf(bodies, 11));
+    }
+
+    @Test
+    public void indexAgreesWithDatabase() {
+        bodyManagerImpl.createBodies(Arrays.asList(newBody("Jan Novák"), newBody("Jiří Dvořák-Nováček"),
+                newBody("Anna Nováková"), newBody("Šárka Černá"), newBody("Nováková Anna"),
+                newBody("Petr Dvořák Novák"), newBody("Anna Anna Nováčková")));
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl);
+
+        for (String prefix : Arrays.asList("nov", "Novák", "dvorak nov", "sarka", "CERNA", "an", "x")) {
+            for (int limit : new int[] {1, 2, 10}) {
+                assertThat(manager.findBodiesByName(prefix, limit))
+                        .as(prefix + " " + limit)
+                        .containsExactlyElementsOf(bodyManagerImpl.findBodiesByName(prefix, limit));
+            }
+        }
+    }
+
+    @Test
+    public void returnedBodiesAreCopies() {
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl);
+        Body body = newBody("Jan Novák");
+        manager.createBody(body);
+
+        body.setName("Petr");
+        manager.findBodiesByName("jan", 1).get(0).setName("Petr");
+
+        assertThat(manager.findBodiesByName("jan", 1))
+                .extracting(Body::getName)
+                .containsExactly("Jan Novák");
+    }
+
+    @Test
+    public void failedModificationDoesNotChangeIndex() {
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(bodyManagerImpl);
+        Body body = newBody("Jan Novák");
+        manager.createBody(body);
+
+        body.setName("Petr");
+        body.setGender(null);
+        assertThatThrownBy(() -> manager.updateBody(body))
+                .isInstanceOf(ValidationException.class);
+        assertThat(manager.findBodiesByName("jan", 10)).containsExactly(body);
+        assertThat(manager.findBodiesByName("petr", 10)).isEmpty();
+    }
+
+    @Test
+    public void concurrentUpdatesAreIndexedInOrder() throws InterruptedException {
+        BodyManager delegate = mock(BodyManager.class);
+        when(delegate.streamAllBodies()).thenReturn(Stream.empty());
+        NameIndexedBodyManager manager = new NameIndexedBodyManager(delegate);
+        Body first = new BodyBuilder().id(1L).name("First").gender(Gender.MALE).build();
+        Body second = new BodyBuilder().id(1L).name("Second").gender(Gender.MALE).build();
+        CountDownLatch firstWriting = new CountDownLatch(1);
+        CountDownLatch firstWritten = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (((Body) invocation.getArguments()[0]).getName().equals("First")) {
+                firstWriting.countDown();
+                firstWritten.await();
+            }
+            return null;
+        }).when(delegate).updateBody(any(Body.class));
+
+        Thread firstUpdate = new Thread(() -> manager.updateBody(first));
+        firstUpdate.start();
+        firstWriting.await();
+        Thread secondUpdate = new Thread(() -> manager.updateBody(second));
+        secondUpdate.start();
+        // the second update has to wait until the first one is indexed
+        while (secondUpdate.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        firstWritten.countDown();
+        firstUpdate.join();
+        secondUpdate.join();
+
+        assertThat(manager.findBodiesByName("first", 10)).isEmpty();
+        assertThat(manager.findBodiesByName("second", 10)).extracting(Body::getName).containsExactly("Second");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findWithZeroLimit() {
+        new BodyNameIndex().findByName("jan", 0);
+    }
+}
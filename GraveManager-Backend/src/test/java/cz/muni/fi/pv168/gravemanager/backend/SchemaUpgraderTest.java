@@ -0,0 +1,159 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link SchemaUpgrader}.
+ */
+public class SchemaUpgraderTest {
+
+    // createTables.sql of the first release
+    private static final String[] BASELINE_SCHEMA = {
+        "CREATE TABLE GRAVE (ID BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY, "
+                + "COL INTEGER NOT NULL, ROW INTEGER NOT NULL, CAPACITY INTEGER NOT NULL, NOTE VARCHAR(255))",
+        "CREATE TABLE BODY (ID BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY, "
+                + "GRAVEID BIGINT REFERENCES GRAVE (ID), NAME VARCHAR(255) NOT NULL, GENDER VARCHAR(6) NOT NULL, "
+                + "BORN DATE, DIED DATE, VAMPIRE BOOLEAN NOT NULL)",
+    };
+
+    // changes of createTables.sql of the release with version 2
+    private static final String[] VERSION_2_CHANGES = {
+        "ALTER TABLE GRAVE ADD COLUMN OCCUPIED INTEGER NOT NULL DEFAULT 0",
+        "ALTER TABLE GRAVE ADD COLUMN FREE INTEGER GENERATED ALWAYS AS (CAPACITY - OCCUPIED)",
+        "CREATE INDEX GRAVE_OCCUPIED ON GRAVE (OCCUPIED)",
+        "CREATE INDEX GRAVE_FREE ON GRAVE (FREE)",
+    };
+
+    // normalized name of this length overflowed the name key before version 6
+    private static final String LONG_HANGUL_NAME = String.join("", Collections.nCopies(255, "한"));
+
+    private EmbeddedDataSource ds;
+    private SchemaUpgrader upgrader;
+
+    @Before
+    public void setUp() {
+        // each test starts with empty database
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:schema-upgrade-test");
+        ds.setCreateDatabase("create");
+        upgrader = new SchemaUpgrader(ds);
+    }
+
+    @After
+    public void tearDown() {
+        EmbeddedDataSource dropDs = new EmbeddedDataSource();
+        dropDs.setDatabaseName("memory:schema-upgrade-test");
+        dropDs.setConnectionAttributes("drop=true");
+        try {
+            dropDs.getConnection().close();
+        } catch (SQLException ex) {
+            // Derby reports successfully dropped database by exception
+        }
+    }
+
+    private void execute(String... statements) throws SQLException {
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            for (String sql : statements) {
+                st.executeUpdate(sql);
+            }
+        }
+    }
+
+    private void insertBaselineData() throws SQLException {
+        execute("INSERT INTO GRAVE (COL, ROW, CAPACITY, NOTE) VALUES (1, 1, 3, 'Grave 1'), (2, 1, 1, 'Grave 2')",
+                "INSERT INTO BODY (GRAVEID, NAME, GENDER, VAMPIRE) "
+                        + "SELECT ID, 'Jiří Novák', 'MALE', FALSE FROM GRAVE WHERE NOTE = 'Grave 1'",
+                "INSERT INTO BODY (GRAVEID, NAME, GENDER, VAMPIRE) "
+                        + "SELECT ID, 'Věra Dvořáková', 'FEMALE', FALSE FROM GRAVE WHERE NOTE = 'Grave 1'",
+                "INSERT INTO BODY (NAME, GENDER, VAMPIRE) VALUES ('Unburied Body', 'MALE', TRUE)",
+                "INSERT INTO BODY (NAME, GENDER, VAMPIRE) VALUES ('" + LONG_HANGUL_NAME + "', 'FEMALE', FALSE)");
+    }
+
+    private void assertUpgradedData() throws SQLException {
+        try (Connection conn = ds.getConnection();
+             PreparedStatement st = conn.prepareStatement("SELECT NOTE, OCCUPIED, FREE FROM GRAVE ORDER BY NOTE");
+             ResultSet rs = st.executeQuery()) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt("OCCUPIED")).isEqualTo(2);
+            assertThat(rs.getInt("FREE")).isEqualTo(1);
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt("OCCUPIED")).isZero();
+            assertThat(rs.getInt("FREE")).isEqualTo(1);
+            assertThat(rs.next()).isFalse();
+        }
+        BodyManager bodyManager = new BodyManagerImpl(ds, Clock.systemDefaultZone());
+        List<Body> found = bodyManager.findBodiesByName("dvorak", 10);
+        assertThat(found).extracting(Body::getName).containsExactly("Věra Dvořáková");
+        assertThat(bodyManager.findBodiesByName("한한", 10)).extracting(Body::getName).containsExactly(LONG_HANGUL_NAME);
+        CemeteryManager cemeteryManager = new CemeteryManagerImpl(ds);
+        assertThat(cemeteryManager.findEmptyGraves()).extracting(Grave::getNote).containsExactly("Grave 2");
+    }
+
+    @Test
+    public void upgradeBaselineSchema() throws SQLException {
+        execute(BASELINE_SCHEMA);
+        insertBaselineData();
+        assertThat(upgrader.getVersion()).isEqualTo(1);
+
+        assertThat(upgrader.upgrade()).isEqualTo(SchemaUpgrader.CURRENT_VERSION - 1);
+
+        assertThat(upgrader.getVersion()).isEqualTo(SchemaUpgrader.CURRENT_VERSION);
+        assertUpgradedData();
+        assertThat(upgrader.upgrade()).isZero();
+    }
+
+    @Test
+    public void upgradeSchemaWithoutRecordedVersion() throws SQLException {
+        execute(BASELINE_SCHEMA);
+        insertBaselineData();
+        execute(VERSION_2_CHANGES);
+        execute("UPDATE GRAVE SET OCCUPIED = 2 WHERE NOTE = 'Grave 1'");
+        assertThat(upgrader.getVersion()).isEqualTo(2);
+
+        assertThat(upgrader.upgrade()).isEqualTo(SchemaUpgrader.CURRENT_VERSION - 2);
+
+        assertThat(upgrader.getVersion()).isEqualTo(SchemaUpgrader.CURRENT_VERSION);
+        assertUpgradedData();
+    }
+
+    @Test
+    public void upgradeRecomposesNameKeys() throws SQLException, IOException {
+        execute(BASELINE_SCHEMA);
+        insertBaselineData();
+        execute("CREATE TABLE SCHEMA_VERSION (VERSION INTEGER NOT NULL)", "INSERT INTO SCHEMA_VERSION VALUES (1)");
+        for (int version = 2; version <= 5; version++) {
+            DBUtils.executeSqlScript(ds, SchemaUpgrader.class.getResourceAsStream("upgrade/upgrade-" + version + ".sql"));
+        }
+        // version 5 stored decomposed name keys
+        execute("UPDATE BODY SET NAMEKEY = ' " + Normalizer.normalize("김민준", Normalizer.Form.NFD)
+                + "', NAME = '김민준' WHERE NAME = 'Unburied Body'");
+
+        assertThat(upgrader.upgrade()).isEqualTo(1);
+
+        assertThat(new BodyManagerImpl(ds, Clock.systemDefaultZone()).findBodiesByName("김민", 10))
+                .extracting(Body::getName)
+                .containsExactly("김민준");
+    }
+
+    @Test
+    public void currentSchemaIsNotUpgraded() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+        assertThat(upgrader.getVersion()).isEqualTo(SchemaUpgrader.CURRENT_VERSION);
+        assertThat(upgrader.upgrade()).isZero();
+    }
+}
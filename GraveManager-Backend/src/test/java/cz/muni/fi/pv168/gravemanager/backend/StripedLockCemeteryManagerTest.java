@@ -0,0 +1,226 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link StripedLockCemeteryManager}.
+ */
+public class StripedLockCemeteryManagerTest {
+
+    private static final int THREADS = 8;
+
+    private CemeteryManager delegate;
+    private StripedLockCemeteryManager manager;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        delegate = mock(CemeteryManager.class);
+        manager = new StripedLockCemeteryManager(delegate, 16);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Grave grave(long id) {
+        return new GraveBuilder().id(id).capacity(THREADS).build();
+    }
+
+    private Body body(long id) {
+        return new BodyBuilder().id(id).name("Body " + id).gender(Gender.MALE).build();
+    }
+
+    @Test
+    public void operationsAreDelegated() {
+        Grave grave = grave(1);
+        Body body = body(1);
+        List<Body> bodies = Collections.singletonList(body);
+        when(delegate.findGraveWithBody(body)).thenReturn(grave);
+
+        manager.putBodyIntoGrave(body, grave);
+        manager.putBodiesIntoGrave(bodies, grave);
+        manager.removeBodyFromGrave(body, grave);
+
+        assertThat(manager.findGraveWithBody(body)).isSameAs(grave);
+        verify(delegate).putBodyIntoGrave(body, grave);
+        verify(delegate).putBodiesIntoGrave(bodies, grave);
+        verify(delegate).removeBodyFromGrave(body, grave);
+        assertThat(manager.getLockCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void graveWithoutIdIsPassedToDelegate() {
+        Body body = body(1);
+        Grave graveWithNullId = new GraveBuilder().id(null).build();
+        doThrow(new IllegalEntityException("grave id is null")).when(delegate).putBodyIntoGrave(body, graveWithNullId);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(body, graveWithNullId))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.getLockCount()).isZero();
+    }
+
+    @Test
+    public void lockIsReleasedWhenDelegateFails() throws Exception {
+        Grave grave = grave(1);
+        Body body = body(1);
+        doThrow(new ServiceFailureException("failure")).when(delegate).putBodyIntoGrave(body, grave);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(body, grave))
+                .isInstanceOf(ServiceFailureException.class);
+
+        executor.submit(() -> manager.removeBodyFromGrave(body, grave)).get(5, TimeUnit.SECONDS);
+        verify(delegate).removeBodyFromGrave(body, grave);
+    }
+
+    @Test
+    public void operationsOnSameGraveAreSerialized() throws Exception {
+        Grave grave = grave(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(1);
+            running.decrementAndGet();
+            return null;
+        }).when(delegate).putBodyIntoGrave(any(Body.class), eq(grave));
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS * 10; i++) {
+            Body body = body(i);
+            futures.add(executor.submit(() -> manager.putBodyIntoGrave(body, grave)));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(manager.getContendedLockCount()).isPositive();
+        assertThat(manager.getTotalLockWaitNanos()).isPositive();
+        assertThat(manager.getMaxLockWaitNanos()).isPositive();
+    }
+
+    @Test
+    public void operationsOnDifferentStripesRunInParallel() throws Exception {
+        Grave grave1 = grave(1);
+        long otherId = 2;
+        while (manager.lockFor(otherId) == manager.lockFor(1)) {
+            otherId++;
+        }
+        Grave grave2 = grave(otherId);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return null;
+        }).when(delegate).putBodyIntoGrave(any(Body.class), eq(grave1));
+
+        Future<?> first = executor.submit(() -> manager.putBodyIntoGrave(body(1), grave1));
+        assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.submit(() -> manager.putBodyIntoGrave(body(2), grave2)).get(5, TimeUnit.SECONDS);
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertThat(manager.getContendedLockCount()).isZero();
+    }
+
+    @Test
+    public void stripesAreRoundedToPowerOfTwo() {
+        assertThat(new StripedLockCemeteryManager(delegate, 10).getStripes()).isEqualTo(16);
+        assertThat(new StripedLockCemeteryManager(delegate, 1).getStripes()).isEqualTo(1);
+        assertThat(new StripedLockCemeteryManager(delegate).getStripes()).isEqualTo(64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithZeroStripes() {
+        new StripedLockCemeteryManager(delegate, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createWithNullDelegate() {
+        new StripedLockCemeteryManager(null);
+    }
+
+    //--------------------------------------------------------------------------
+    // Stress test with database
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void concurrentBurialsIntoSameGrave() throws Exception {
+        // this checks that the decorator keeps the occupancy consistent, the
+        // same workload does not time out in Derby without striping either
+        EmbeddedDataSource embeddedDs = new EmbeddedDataSource();
+        embeddedDs.setDatabaseName("memory:striped-lock-test");
+        embeddedDs.setCreateDatabase("create");
+        try (PooledDataSource ds = new PooledDataSource(embeddedDs, 1, THREADS)) {
+            DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
+            try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+                st.execute("CALL SYSCS_UTIL.SYSCS_SET_DATABASE_PROPERTY('derby.locks.waitTimeout', '1')");
+            }
+            try {
+                runStressTest(ds);
+            } finally {
+                DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+            }
+        }
+    }
+
+    private void runStressTest(PooledDataSource ds) throws Exception {
+        ZonedDateTime now = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 0).atZone(ZoneId.of("UTC"));
+        BodyManagerImpl bodyManager = new BodyManagerImpl(ds, Clock.fixed(now.toInstant(), now.getZone()));
+        GraveManagerImpl graveManager = new GraveManagerImpl(ds);
+        StripedLockCemeteryManager stripedManager = new StripedLockCemeteryManager(new CemeteryManagerImpl(ds));
+
+        Grave grave = new GraveBuilder().row(1).column(1).capacity(THREADS / 2).build();
+        graveManager.createGrave(grave);
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.MALE).build());
+        }
+        bodyManager.createBodies(bodies);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Body body : bodies) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    try {
+                        stripedManager.putBodyIntoGrave(body, grave);
+                    } catch (IllegalEntityException ex) {
+                        // the grave is full, try again
+                        continue;
+                    }
+                    stripedManager.removeBodyFromGrave(body, grave);
+                }
+                return null;
+            }));
+        }
+        // ServiceFailureException, e.g. caused by lock timeout, would fail the test here
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        assertThat(stripedManager.findBodiesInGrave(grave)).isEmpty();
+        assertThat(stripedManager.findEmptyGraves()).extracting(Grave::getId).containsOnly(grave.getId());
+    }
+}